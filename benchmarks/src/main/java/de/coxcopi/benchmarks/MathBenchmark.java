@@ -0,0 +1,124 @@
+package de.coxcopi.benchmarks;
+
+import de.coxcopi.util.math.Matrix4;
+import de.coxcopi.util.math.Vector3;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the Matrix4 and Vector3 operations used every frame. Allocating variants are
+ * measured next to their destination-parameter counterparts; compare the gc.alloc.rate.norm
+ * values of the GC profiler.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MathBenchmark {
+
+    private Matrix4 a;
+    private Matrix4 b;
+    private final Matrix4 dest = new Matrix4();
+    private Vector3 u;
+    private Vector3 v;
+    private final Vector3 vectorDest = new Vector3();
+    private final Vector3 up = Vector3.UP();
+
+    @Setup
+    public void setup() {
+        a = Matrix4.transform();
+        a.rotateX(0.3);
+        a.rotateY(1.2);
+        a.translate(new Vector3(1, 2, 3));
+        a.scale(new Vector3(2, 1, 0.5));
+        b = Matrix4.transform();
+        b.rotateZ(0.7);
+        b.translate(new Vector3(-4, 0.5, 2));
+        u = new Vector3(0.3, -1.2, 2.5);
+        v = new Vector3(1.7, 0.4, -0.9);
+    }
+
+    @Benchmark
+    public Matrix4 matrixMultiply() {
+        return Matrix4.multiply(a, b, dest);
+    }
+
+    @Benchmark
+    public Matrix4 matrixMultiplied() {
+        return a.multiplied(b);
+    }
+
+    @Benchmark
+    public Vector3 matrixMultiplyVector() {
+        return a.multiply(u, vectorDest);
+    }
+
+    @Benchmark
+    public Vector3 matrixMultiplyVectorAllocating() {
+        return a.multiply(u);
+    }
+
+    @Benchmark
+    public boolean matrixInvert() {
+        dest.set(a);
+        return dest.invert();
+    }
+
+    @Benchmark
+    public boolean matrixInvertAffine() {
+        dest.set(a);
+        return dest.invertAffine();
+    }
+
+    @Benchmark
+    public Matrix4 matrixNormalMatrix() {
+        return a.getNormalMatrix(dest);
+    }
+
+    @Benchmark
+    public Matrix4 matrixLookAt() {
+        return Matrix4.lookAtNew(u, v, up, dest);
+    }
+
+    @Benchmark
+    public Matrix4 matrixLookAtAllocating() {
+        return Matrix4.lookAtNew(u, v, up);
+    }
+
+    @Benchmark
+    public Vector3 vectorCross() {
+        return u.cross(v, vectorDest);
+    }
+
+    @Benchmark
+    public Vector3 vectorCrossAllocating() {
+        return u.cross(v);
+    }
+
+    @Benchmark
+    public Vector3 vectorNormalized() {
+        return u.normalized(vectorDest);
+    }
+
+    @Benchmark
+    public Vector3 vectorNormalizedAllocating() {
+        return u.normalized();
+    }
+
+    @Benchmark
+    public double vectorDot() {
+        return u.dot(v);
+    }
+}
@@ -0,0 +1,69 @@
+package de.coxcopi.benchmarks;
+
+import de.coxcopi.mesh.MeshData;
+import de.coxcopi.mesh.MeshParser;
+import de.coxcopi.mesh.ObjParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks parsing generated OBJ files (CPU side only, no buffers are uploaded).
+ * The largest inputs need a large heap, see the fork settings.
+ * <p>
+ * NOTE: parseOBJ is not 10x faster than parseOBJLegacy yet. Hand-timed on a single core (not with
+ * JMH), it took 577 ms vs 2548 ms for 1000000 faces (4.4x) and 12.6 ms vs 70.1 ms for 10000 faces
+ * (5.6x). Parsing alone (parseSequential) is about 10x faster than legacy; most of the remaining time
+ * is welding in VertexWelder, which is bound by its hash map lookups (about 250 ms for 1000000 faces).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx12g"})
+public class MeshParserBenchmark {
+
+    @Param({"10000", "100000", "1000000", "10000000"})
+    public int faces;
+
+    private Path path;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        path = ObjGenerator.getGrid(faces);
+    }
+
+    @Benchmark
+    public MeshData parseOBJ() {
+        return MeshParser.parseOBJData(path);
+    }
+
+    @Benchmark
+    public ObjParser.ObjData parseSequential() throws IOException {
+        return ObjParser.parse(path, false);
+    }
+
+    @Benchmark
+    public ObjParser.ObjData parseParallel() throws IOException {
+        return ObjParser.parse(path, true);
+    }
+
+    @Benchmark
+    public MeshData parseOBJLegacy() {
+        return MeshParser.parseOBJDataLegacy(path);
+    }
+}
@@ -0,0 +1,94 @@
+package de.coxcopi.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+/**
+ * Generates OBJ files of a given size for the parser benchmarks. The meshes are triangulated
+ * height fields with per-vertex normals, written the same way Blender exports smooth-shaded
+ * meshes (v, vn and f lines using the v//vn syntax).
+ * <p>
+ * Generated files are kept in the system's temp directory and reused by later runs.
+ */
+public final class ObjGenerator {
+
+    private static final Path DIRECTORY = Paths.get(System.getProperty("java.io.tmpdir"), "coxcopi-benchmarks");
+
+    private ObjGenerator() {
+    }
+
+    /**
+     * Returns the path of a generated OBJ file with the given amount of faces, generating it if needed.
+     * @param faces The amount of triangles.
+     * @return The path of the file.
+     */
+    public static Path getGrid(int faces) throws IOException {
+        final Path path = DIRECTORY.resolve("grid_" + faces + ".obj");
+        if (!Files.exists(path)) {
+            Files.createDirectories(DIRECTORY);
+            final Path temp = Files.createTempFile(DIRECTORY, "grid_" + faces, ".tmp");
+            writeGrid(temp, faces);
+            Files.move(temp, path, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        }
+        return path;
+    }
+
+    /**
+     * Writes a height field with the given amount of faces.
+     * @param path The file to write to.
+     * @param faces The amount of triangles.
+     */
+    public static void writeGrid(Path path, int faces) throws IOException {
+        final int quads = (faces + 1) / 2;
+        final int columns = (int) Math.ceil(Math.sqrt(quads));
+        final int rows = (quads + columns - 1) / columns;
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write("o Grid\n");
+            for (int z = 0; z <= rows; z++) {
+                for (int x = 0; x <= columns; x++) {
+                    final double px = (double) x / columns * 2.0 - 1.0;
+                    final double pz = (double) z / rows * 2.0 - 1.0;
+                    final double py = 0.1 * Math.sin(px * 8.0) * Math.cos(pz * 8.0);
+                    writer.write(String.format(Locale.ROOT, "v %.6f %.6f %.6f\n", px, py, pz));
+                }
+            }
+            for (int z = 0; z <= rows; z++) {
+                for (int x = 0; x <= columns; x++) {
+                    final double px = (double) x / columns * 2.0 - 1.0;
+                    final double pz = (double) z / rows * 2.0 - 1.0;
+                    // Normal of the height field from its partial derivatives
+                    final double dx = 0.8 * Math.cos(px * 8.0) * Math.cos(pz * 8.0);
+                    final double dz = -0.8 * Math.sin(px * 8.0) * Math.sin(pz * 8.0);
+                    final double length = Math.sqrt(dx * dx + 1 + dz * dz);
+                    writer.write(String.format(Locale.ROOT, "vn %.4f %.4f %.4f\n", -dx / length, 1 / length, -dz / length));
+                }
+            }
+            writer.write("s 1\n");
+            int written = 0;
+            for (int z = 0; z < rows && written < faces; z++) {
+                for (int x = 0; x < columns && written < faces; x++) {
+                    // OBJ indices start at 1
+                    final int i0 = z * (columns + 1) + x + 1;
+                    final int i1 = i0 + 1;
+                    final int i2 = i0 + columns + 1;
+                    final int i3 = i2 + 1;
+                    writeFace(writer, i0, i2, i1);
+                    written++;
+                    if (written < faces) {
+                        writeFace(writer, i1, i2, i3);
+                        written++;
+                    }
+                }
+            }
+        }
+    }
+
+    private static void writeFace(BufferedWriter writer, int a, int b, int c) throws IOException {
+        writer.write("f " + a + "//" + a + " " + b + "//" + b + " " + c + "//" + c + "\n");
+    }
+}
@@ -0,0 +1,88 @@
+package de.coxcopi.benchmarks;
+
+import de.coxcopi.material.Material;
+import de.coxcopi.material.shader.Shader;
+import de.coxcopi.mesh.Mesh;
+import de.coxcopi.render.Renderer;
+import de.coxcopi.util.math.Transform;
+import de.coxcopi.util.math.Vector3;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the per-mesh loop of Renderer.renderTick() up to the first GL call: updating the
+ * mesh transforms and frustum culling the render queue. The meshes are scattered around the
+ * camera, so most of them are outside its frustum, as in a typical scene.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderQueueBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int meshes;
+
+    /**
+     * "matrix": meshes with plain transform matrices.
+     * "component": meshes driven by TRS transform components that change every frame.
+     */
+    @Param({"matrix", "component"})
+    public String transforms;
+
+    private Renderer renderer;
+    private Transform[] components;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        renderer = new Renderer();
+        // No GL context is available, so the meshes get no vao and no shader.
+        final Material material = new Material((Shader) null);
+        final Random random = new Random(42);
+        final boolean useComponents = transforms.equals("component");
+        components = new Transform[useComponents ? meshes : 0];
+        for (int i = 0; i < meshes; i++) {
+            final Mesh mesh = new Mesh(0, 36, material);
+            mesh.setBounds(new Vector3(), Math.sqrt(3));
+            final Vector3 position = new Vector3(
+                    (random.nextDouble() * 2 - 1) * 100,
+                    (random.nextDouble() * 2 - 1) * 100,
+                    (random.nextDouble() * 2 - 1) * 100
+            );
+            if (useComponents) {
+                final Transform transform = new Transform();
+                transform.setTranslation(position);
+                mesh.setTransformComponent(transform);
+                components[i] = transform;
+            } else {
+                mesh.transform.translate(position);
+            }
+            renderer.addToRenderQueue(mesh);
+        }
+        Renderer.camera.update();
+    }
+
+    @Benchmark
+    public int cullRenderQueue() {
+        for (Transform component : components) {
+            component.rotateY(0.01);
+        }
+        renderer.cullRenderQueue();
+        return renderer.getVisibleMeshes().size();
+    }
+}
@@ -0,0 +1,80 @@
+package de.coxcopi.benchmarks;
+
+import de.coxcopi.material.shader.ShaderParser;
+import de.coxcopi.material.shader.ShaderProgramSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks reading and splitting shader files (CPU side of ShaderParser.parseShaderFile(),
+ * compiling requires a GL context). Besides the engine's default shader, larger shaders are
+ * generated by repeating the default shader's functions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShaderParserBenchmark {
+
+    /**
+     * How many times the default shader's bodies are repeated, 1 being the default shader itself.
+     */
+    @Param({"1", "10", "100"})
+    public int repetitions;
+
+    private Path path;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        final String source;
+        try (InputStream stream = ShaderParser.class.getClassLoader().getResourceAsStream("shaders/default.glsl")) {
+            if (stream == null) {
+                throw new IllegalStateException("shaders/default.glsl not found on the classpath.");
+            }
+            source = new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        final StringBuilder builder = new StringBuilder();
+        for (String section : source.split("(?=#shader)")) {
+            if (section.isBlank()) {
+                continue;
+            }
+            final int body = section.indexOf('\n') + 1;
+            builder.append(section, 0, body);
+            for (int i = 0; i < repetitions; i++) {
+                builder.append(section, body, section.length()).append('\n');
+            }
+        }
+        path = Files.createTempFile("shader_" + repetitions, ".glsl");
+        Files.writeString(path, builder.toString(), StandardCharsets.UTF_8);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    @Benchmark
+    public ShaderProgramSource parseShaderSource() {
+        return ShaderParser.parseShaderSource(path);
+    }
+}
@@ -6,6 +6,7 @@ import de.coxcopi.material.Material;
 import de.coxcopi.mesh.Mesh;
 import de.coxcopi.mesh.MeshBuilder;
 import de.coxcopi.mesh.MeshParser;
+import de.coxcopi.util.math.Transform;
 import de.coxcopi.util.math.Vector3;
 
 public class Test {
@@ -37,7 +38,8 @@ public class Test {
 
         mesh.material = new Material();
 
-        mesh.transform.scale(2);
+        final Transform transform = new Transform();
+        transform.setScale(2);
 
         //renderer.addToRenderQueue(quad);
         //renderer.addToRenderQueue(cube);
@@ -45,6 +47,13 @@ public class Test {
         //Mesh sphere = MeshBuilder.createPrimitiveSphere(12, 6, 1);
         //sphere.transform.scale(1.3);
         //Mesh otherSphere = MeshBuilder.createPrimitiveOtherSphere(0, 1);
-        Engine.instance(new Model(mesh));
+        Model model = new Model(mesh) {
+            @Override
+            public void update(double delta) {
+                transform.rotateY(0.01);
+            }
+        };
+        model.setTransformComponent(transform);
+        Engine.instance(model);
     }
 }
@@ -1,7 +1,9 @@
 package de.coxcopi.engine;
 
 import de.coxcopi.mesh.Mesh;
+import de.coxcopi.render.TransformStore;
 import de.coxcopi.util.math.Matrix4;
+import de.coxcopi.util.math.Transform;
 
 public class Model implements Updatable {
     /**
@@ -13,6 +15,10 @@ public class Model implements Updatable {
      * The models global transform.
      */
     public Matrix4 transform = new Matrix4();
+    /**
+     * Optional TRS transform component driving the models transform, see setTransformComponent().
+     */
+    private Transform transformComponent = null;
     /**
      * If true, the models does not receive calls to the update() method.
      */
@@ -30,6 +36,41 @@ public class Model implements Updatable {
         this.transform = transform;
     }
 
+    /**
+     * Lets the models transform be driven by a TRS transform component. The models transform
+     * is replaced by the component's matrix, and the component is passed on to the models mesh.
+     * @param transformComponent The transform component.
+     */
+    public void setTransformComponent(Transform transformComponent) {
+        this.transformComponent = transformComponent;
+        this.transform = transformComponent.getMatrix();
+        if (mesh != null) {
+            mesh.setTransformComponent(transformComponent);
+        }
+    }
+
+    public Transform getTransformComponent() {
+        return transformComponent;
+    }
+
+    /**
+     * Lets the models transform be a view onto a slot of a transform store, see
+     * Mesh.setTransformSlot(). The slot is passed on to the models mesh, whose transform
+     * the model then shares. Without a mesh, the models transform is a copy of the slot's
+     * current world matrix.
+     * @param store The transform store.
+     * @param handle The handle of the slot.
+     */
+    public void setTransformSlot(TransformStore store, int handle) {
+        transformComponent = null;
+        if (mesh != null) {
+            mesh.setTransformSlot(store, handle);
+            transform = mesh.transform;
+        } else {
+            transform = store.getWorld(handle, new Matrix4());
+        }
+    }
+
     @Override
     public void init() {}
 
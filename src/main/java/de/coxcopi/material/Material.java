@@ -1,7 +1,13 @@
 package de.coxcopi.material;
 
 import de.coxcopi.material.shader.Shader;
+import de.coxcopi.material.shader.ShaderCompiler;
+import de.coxcopi.material.shader.ShaderFuture;
+import de.coxcopi.material.shader.ShaderFeature;
 import de.coxcopi.material.shader.ShaderParser;
+import de.coxcopi.material.shader.ShaderRegistry;
+import de.coxcopi.material.shader.ShaderVariantKey;
+import de.coxcopi.render.Renderer;
 import de.coxcopi.util.Color;
 
 public class Material {
@@ -10,17 +16,174 @@ public class Material {
     public Color diffuse = new Color(0.780392, 0.568627, 0.113725);
     public Color specular = new Color(0.992157, 0.941176, 0.807843);
     public double shininess = 27.8974;
-    public final Shader shader;
+    /**
+     * The shader used for drawing. While the material's actual shader is still compiling, this
+     * is the fallback shader, see getShader().
+     */
+    public Shader shader;
+    /**
+     * The shader that is still compiling, or null.
+     */
+    private ShaderFuture pendingShader = null;
+    /**
+     * The variant the shader was picked from, or null if the shader was given directly.
+     */
+    private ShaderVariantKey variantKey = null;
+    /**
+     * True if the material holds a reference to the shader in the ShaderRegistry that has to be
+     * released by free(). Always true for variants and the default shader.
+     */
+    private boolean sharedShader = false;
+    /**
+     * The material's slot in the renderer's MaterialBuffer, or -1 if none has been allocated yet.
+     */
+    private int bufferSlot = -1;
 
+    /**
+     * Constructs a new material using the default shader. The program is shared with all other
+     * materials using the default shader (see ShaderRegistry).
+     */
     public Material() {
-        this.shader = ShaderParser.getDefaultShader();
+        this.shader = ShaderRegistry.acquire(ShaderParser.DEFAULT_SHADER);
+        if (shader == null) {
+            throw new IllegalStateException("The default shader could not be loaded.");
+        }
+        this.sharedShader = true;
+    }
+
+    /**
+     * Constructs a new material using the given shader. If the shader is managed by the ShaderRegistry
+     * (e.g. a variant from ShaderParser.getVariant()), the material holds a reference to it until free().
+     * @param shader The shader.
+     */
+    public Material(Shader shader) {
+        this.shader = shader;
+        this.sharedShader = ShaderRegistry.retain(shader);
+    }
+
+    /**
+     * Constructs a new material using a shader that is still compiling. Until it is done, the
+     * material is drawn with the fallback shader (see ShaderCompiler.getFallbackShader()), and if
+     * it fails, the material keeps using the fallback shader.
+     * @param shader The compiling shader.
+     */
+    public Material(ShaderFuture shader) {
+        this.pendingShader = shader;
+        this.shader = shader.getShaderOr(ShaderCompiler.getFallbackShader());
+    }
+
+    /**
+     * Constructs a new material using a variant of a shader, see ShaderParser.getVariant().
+     * @param variantKey The variant.
+     */
+    public Material(ShaderVariantKey variantKey) {
+        setVariant(variantKey);
+    }
+
+    /**
+     * Switches to the given shader variant. The material holds a reference to the variant, so that
+     * the variant cache doesn't evict it while the material uses it.
+     * @param variantKey The variant.
+     */
+    public void setVariant(ShaderVariantKey variantKey) {
+        final Shader variant = ShaderParser.getVariant(variantKey);
+        if (variant == null) {
+            throw new IllegalStateException("Shader variant " + variantKey + " could not be loaded.");
+        }
+        // Retained before the previous shader is released, in case it is the same variant
+        ShaderRegistry.retain(variant);
+        releaseShader();
+        this.variantKey = variantKey;
+        this.pendingShader = null;
+        this.shader = variant;
+        this.sharedShader = true;
+    }
+
+    public ShaderVariantKey getVariant() {
+        return variantKey;
+    }
+
+    /**
+     * Returns the features of the default shader this material needs with its current properties.
+     * E.g. a material with a black specular color doesn't need specular highlights.
+     * @return The feature set, see ShaderFeature.
+     */
+    public long getRequiredFeatures() {
+        long features = 0;
+        if (!isBlack(diffuse)) {
+            features |= ShaderFeature.DIFFUSE.bit();
+        }
+        if (!isBlack(specular)) {
+            features |= ShaderFeature.SPECULAR.bit();
+        }
+        return features;
+    }
+
+    /**
+     * Switches to the cheapest variant of the default shader that has all features the material
+     * needs (see getRequiredFeatures()). Should be called again after changing the material's colors.
+     */
+    public void useCheapestVariant() {
+        setVariant(new ShaderVariantKey(ShaderParser.DEFAULT_SHADER, getRequiredFeatures()));
+    }
+
+    /**
+     * Returns the shader to draw the material with. Switches from the fallback shader to the
+     * material's actual shader as soon as it has finished compiling.
+     * @return The shader.
+     */
+    public Shader getShader() {
+        if (pendingShader != null && pendingShader.getState() != ShaderFuture.State.PENDING) {
+            if (pendingShader.isDone()) {
+                shader = pendingShader.getShader();
+            }
+            pendingShader = null;
+        }
+        return shader;
+    }
+
+    /**
+     * Releases the material's reference to a shared shader, so that its program can be deleted once
+     * no material uses it anymore. The material must not be used afterwards.
+     */
+    public void free() {
+        releaseShader();
+        if (bufferSlot != -1) {
+            Renderer.materialBuffer.free(bufferSlot);
+            bufferSlot = -1;
+        }
+        shader = null;
+        pendingShader = null;
+        variantKey = null;
+    }
+
+    /**
+     * Returns the material's slot in the renderer's MaterialBuffer, allocating it on the first call.
+     * @return The slot's index.
+     */
+    public int getBufferSlot() {
+        if (bufferSlot == -1) {
+            bufferSlot = Renderer.materialBuffer.allocate();
+        }
+        return bufferSlot;
+    }
+
+    private void releaseShader() {
+        if (sharedShader) {
+            ShaderRegistry.release(shader);
+            sharedShader = false;
+        }
+    }
+
+    private static boolean isBlack(Color color) {
+        return color.r == 0 && color.g == 0 && color.b == 0;
     }
 
     public void bind() {
-        shader.bind();
+        getShader().bind();
     }
 
     public void unbind() {
-        shader.unbind();
+        getShader().unbind();
     }
 }
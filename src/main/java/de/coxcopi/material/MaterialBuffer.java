@@ -0,0 +1,218 @@
+package de.coxcopi.material;
+
+import de.coxcopi.render.GLStateCache;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL43;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Shader storage buffer holding the parameters of all materials, one slot per material. Draws only
+ * pass the index of their material's slot (see Shader.setMaterialIndex()), so switching materials
+ * doesn't cause any uniform uploads, and meshes with different materials can share a draw call.
+ * <p>
+ * Slots are written on the CPU by update(), which only touches a slot if the material's values
+ * have changed, and the changed range is uploaded with a single call by upload() once per frame.
+ * Shaders access the buffer through the following block (std430 layout, 48 bytes per material),
+ * which ShaderParser assigns to the binding point automatically:
+ * <pre>
+ * struct MaterialData {
+ *     vec3 ambient;
+ *     float shininess;
+ *     vec3 diffuse;
+ *     vec3 specular;
+ * };
+ * layout(std430) readonly buffer MaterialBuffer {
+ *     MaterialData materials[];
+ * };
+ * </pre>
+ */
+public class MaterialBuffer {
+
+    public static final String BLOCK_NAME = "MaterialBuffer";
+    public static final int BINDING = 1;
+    public static final int FLOATS_PER_MATERIAL = 12;
+    public static final int BYTES_PER_MATERIAL = FLOATS_PER_MATERIAL * Float.BYTES;
+
+    // std430 offsets inside a slot, in floats
+    private static final int AMBIENT_OFFSET = 0;
+    private static final int SHININESS_OFFSET = 3;
+    private static final int DIFFUSE_OFFSET = 4;
+    private static final int SPECULAR_OFFSET = 8;
+
+    private FloatBuffer data;
+    private int capacity;
+    /**
+     * Amount of slots that have ever been handed out. Every slot is below this value.
+     */
+    private int size = 0;
+    private int[] freeSlots;
+    private int freeCount = 0;
+    /**
+     * The GL buffer, 0 until the first upload.
+     */
+    private int bufferID = 0;
+    /**
+     * Capacity of the GL buffer in slots. If it is smaller than capacity, the buffer is reallocated.
+     */
+    private int bufferCapacity = 0;
+    // Range of slots changed since the last upload (dirtyEnd exclusive)
+    private int dirtyStart = Integer.MAX_VALUE;
+    private int dirtyEnd = 0;
+    private int slotsUploaded = 0;
+
+    /**
+     * Constructs a new buffer. The GL buffer is created by the first call to upload().
+     * @param initialCapacity The amount of slots to reserve memory for. The buffer grows when needed.
+     */
+    public MaterialBuffer(int initialCapacity) {
+        capacity = Math.max(1, initialCapacity);
+        data = MemoryUtil.memCallocFloat(capacity * FLOATS_PER_MATERIAL);
+        freeSlots = new int[capacity];
+    }
+
+    /**
+     * Allocates a new slot. Its values are set by the next call to update().
+     * @return The slot's index.
+     */
+    public int allocate() {
+        final int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (size == capacity) {
+                grow(capacity * 2);
+            }
+            slot = size++;
+        }
+        // NaN never equals anything, so the next update() writes the slot
+        data.put(slot * FLOATS_PER_MATERIAL + SHININESS_OFFSET, Float.NaN);
+        return slot;
+    }
+
+    /**
+     * Frees a slot. Its index may be handed out again by a later call to allocate().
+     * @param slot The slot's index.
+     */
+    public void free(int slot) {
+        if (slot < 0 || slot >= size) {
+            throw new IllegalArgumentException("Invalid material slot: " + slot + ".");
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    /**
+     * Writes a material's values into its slot, if they differ from the slot's current values.
+     * Does not issue any GL calls.
+     * @param material The material.
+     * @return True if the slot has changed.
+     */
+    public boolean update(Material material) {
+        final int slot = material.getBufferSlot();
+        final int o = slot * FLOATS_PER_MATERIAL;
+        final float shininess = (float) material.shininess;
+        if (data.get(o + SHININESS_OFFSET) == shininess
+                && equals(o + AMBIENT_OFFSET, material.ambient.r, material.ambient.g, material.ambient.b)
+                && equals(o + DIFFUSE_OFFSET, material.diffuse.r, material.diffuse.g, material.diffuse.b)
+                && equals(o + SPECULAR_OFFSET, material.specular.r, material.specular.g, material.specular.b)) {
+            return false;
+        }
+        put(o + AMBIENT_OFFSET, material.ambient.r, material.ambient.g, material.ambient.b);
+        data.put(o + SHININESS_OFFSET, shininess);
+        put(o + DIFFUSE_OFFSET, material.diffuse.r, material.diffuse.g, material.diffuse.b);
+        put(o + SPECULAR_OFFSET, material.specular.r, material.specular.g, material.specular.b);
+        dirtyStart = Math.min(dirtyStart, slot);
+        dirtyEnd = Math.max(dirtyEnd, slot + 1);
+        return true;
+    }
+
+    /**
+     * Uploads all slots changed since the last call with a single glBufferSubData call (or
+     * glBufferData, if the buffer had to grow) and binds the buffer to the binding point.
+     * Requires a GL 4.3 context.
+     */
+    public void upload() {
+        slotsUploaded = 0;
+        if (bufferID == 0) {
+            bufferID = GL15.glGenBuffers();
+            GLStateCache.bindBufferBase(GL43.GL_SHADER_STORAGE_BUFFER, BINDING, bufferID);
+        }
+        if (bufferCapacity < capacity) {
+            // Reallocate and upload everything, the binding point keeps referencing the buffer
+            GLStateCache.bindBuffer(GL43.GL_SHADER_STORAGE_BUFFER, bufferID);
+            GL15.glBufferData(GL43.GL_SHADER_STORAGE_BUFFER, data, GL15.GL_DYNAMIC_DRAW);
+            GLStateCache.bindBuffer(GL43.GL_SHADER_STORAGE_BUFFER, 0);
+            bufferCapacity = capacity;
+            slotsUploaded = size;
+        } else if (dirtyStart < dirtyEnd) {
+            final FloatBuffer range = data.slice(dirtyStart * FLOATS_PER_MATERIAL, (dirtyEnd - dirtyStart) * FLOATS_PER_MATERIAL);
+            GLStateCache.bindBuffer(GL43.GL_SHADER_STORAGE_BUFFER, bufferID);
+            GL15.glBufferSubData(GL43.GL_SHADER_STORAGE_BUFFER, (long) dirtyStart * BYTES_PER_MATERIAL, range);
+            GLStateCache.bindBuffer(GL43.GL_SHADER_STORAGE_BUFFER, 0);
+            slotsUploaded = dirtyEnd - dirtyStart;
+        }
+        dirtyStart = Integer.MAX_VALUE;
+        dirtyEnd = 0;
+    }
+
+    /**
+     * @return The amount of slots uploaded by the last call to upload().
+     */
+    public int getSlotsUploaded() {
+        return slotsUploaded;
+    }
+
+    /**
+     * @return True if the current context supports shader storage buffers.
+     */
+    public static boolean isSupported() {
+        return GL.getCapabilities().OpenGL43;
+    }
+
+    /**
+     * Assigns the MaterialBuffer block of a linked program to the binding point, if the program declares it.
+     * @param programID The program.
+     * @return True if the program declares the block.
+     */
+    public static boolean bindBlock(int programID) {
+        if (!isSupported()) {
+            return false;
+        }
+        final int blockIndex = GL43.glGetProgramResourceIndex(programID, GL43.GL_SHADER_STORAGE_BLOCK, BLOCK_NAME);
+        if (blockIndex == GL43.GL_INVALID_INDEX) {
+            return false;
+        }
+        GL43.glShaderStorageBlockBinding(programID, blockIndex, BINDING);
+        return true;
+    }
+
+    /**
+     * Frees the buffer's memory. The buffer must not be used afterwards.
+     */
+    public void destroy() {
+        if (bufferID != 0) {
+            GLStateCache.deleteBuffer(bufferID);
+        }
+        MemoryUtil.memFree(data);
+        data = null;
+    }
+
+    private boolean equals(int o, double r, double g, double b) {
+        return data.get(o) == (float) r && data.get(o + 1) == (float) g && data.get(o + 2) == (float) b;
+    }
+
+    private void put(int o, double r, double g, double b) {
+        data.put(o, (float) r);
+        data.put(o + 1, (float) g);
+        data.put(o + 2, (float) b);
+    }
+
+    private void grow(int newCapacity) {
+        data = MemoryUtil.memRealloc(data, newCapacity * FLOATS_PER_MATERIAL);
+        freeSlots = Arrays.copyOf(freeSlots, newCapacity);
+        capacity = newCapacity;
+    }
+}
@@ -1,25 +1,212 @@
 package de.coxcopi.material.shader;
 
 import de.coxcopi.material.Material;
+import de.coxcopi.material.MaterialBuffer;
+import de.coxcopi.render.Camera;
 import de.coxcopi.render.Environment;
+import de.coxcopi.render.FrameUniforms;
+import de.coxcopi.render.GLStateCache;
 import de.coxcopi.util.Color;
 import de.coxcopi.util.math.Matrix4;
+import de.coxcopi.util.math.Matrix4f;
 import de.coxcopi.util.math.Vector3;
-import org.lwjgl.opengl.GL20;
+import de.coxcopi.util.math.Vector3f;
+
+import java.util.HashMap;
 
 public class Shader {
     final ShaderProgramSource source;
     final int programID;
+    /**
+     * The program's active uniforms and attributes, queried once after linking.
+     */
+    final ShaderReflection reflection;
+    /**
+     * Uniform handles handed out by getUniform(), by name.
+     */
+    private final HashMap<String, Uniform> uniforms = new HashMap<>();
+    // Handles of the uniforms set by setLightingUniforms(), resolved once.
+    private final Uniform environmentAmbient;
+    private final Uniform materialAmbient;
+    private final Uniform materialDiffuse;
+    private final Uniform materialSpecular;
+    private final Uniform materialShininess;
+    private final Uniform viewPosition;
+    private final Uniform materialIndex;
+    // Handles of the matrix uniforms, which shaders declare at fixed locations. Handles of
+    // locations the program doesn't use (e.g. because it reads the camera from the FrameData block) are inactive.
+    private final Uniform modelMatrixUniform;
+    private final Uniform viewMatrixUniform;
+    private final Uniform projectionMatrixUniform;
+    private final Uniform normalMatrixUniform;
+    /**
+     * True if the program reads the camera and environment from the FrameData uniform block.
+     */
+    private final boolean usesFrameData;
+    /**
+     * True if the program reads material parameters from the MaterialBuffer storage block.
+     */
+    private final boolean usesMaterialBuffer;
+    /**
+     * Version of the camera whose matrices were last uploaded, see setCameraUniforms().
+     */
+    private long uploadedCameraVersion = -1;
+    private Camera uploadedCamera = null;
+    private boolean deleted = false;
 
     public Shader(ShaderProgramSource source, int programID) {
+        this(source, programID, ShaderReflection.reflect(programID));
+    }
+
+    /**
+     * Constructs a new shader.
+     * @param source The shader's source.
+     * @param programID The linked program.
+     * @param reflection The program's reflection, see ShaderReflection.reflect().
+     */
+    public Shader(ShaderProgramSource source, int programID, ShaderReflection reflection) {
         this.source = source;
         this.programID = programID;
+        this.reflection = reflection;
+        this.environmentAmbient = getUniform("environment.ambient");
+        this.materialAmbient = getUniform("material.ambient");
+        this.materialDiffuse = getUniform("material.diffuse");
+        this.materialSpecular = getUniform("material.specular");
+        this.materialShininess = getUniform("material.shininess");
+        this.viewPosition = getUniform("viewPosition");
+        this.materialIndex = getUniform("materialIndex");
+        this.modelMatrixUniform = getUniformAt("modelMatrix", 2);
+        this.viewMatrixUniform = getUniformAt("viewMatrix", 3);
+        this.projectionMatrixUniform = getUniformAt("projectionMatrix", 4);
+        this.normalMatrixUniform = getUniformAt("normalMatrix", 5);
+        this.usesFrameData = reflection.hasUniformBlock(FrameUniforms.BLOCK_NAME);
+        this.usesMaterialBuffer = reflection.hasStorageBlock(MaterialBuffer.BLOCK_NAME);
+    }
+
+    /**
+     * Returns a handle to the uniform with the given name. Handles are resolved once and cached,
+     * so setting values through them involves no lookup. Never returns null; if the program has no
+     * such uniform, setting values through the handle does nothing.
+     * @param name The uniform's name, e.g. "material.diffuse".
+     * @return The uniform's handle.
+     */
+    public Uniform getUniform(String name) {
+        Uniform uniform = uniforms.get(name);
+        if (uniform == null) {
+            uniform = new Uniform(name, reflection.getUniform(name));
+            uniforms.put(name, uniform);
+        }
+        return uniform;
+    }
+
+    private Uniform getUniformAt(String name, int location) {
+        final ShaderReflection.Variable variable = reflection.getUniformAt(location);
+        return new Uniform(name, variable == null ? -1 : location, variable == null ? 0 : variable.type);
+    }
+
+    public ShaderReflection getReflection() {
+        return reflection;
+    }
+
+    /**
+     * @return True if the program reads the camera and environment from the FrameData uniform block
+     * (see FrameUniforms), in which case setCameraUniforms() and the environment and view position
+     * parts of setLightingUniforms() are not needed.
+     */
+    public boolean usesFrameData() {
+        return usesFrameData;
+    }
+
+    /**
+     * @return True if the program reads material parameters from the MaterialBuffer storage block,
+     * in which case setMaterialIndex() should be used instead of setMaterialUniforms().
+     */
+    public boolean usesMaterialBuffer() {
+        return usesMaterialBuffer;
+    }
+
+    /**
+     * Sets the index of the material's slot in the MaterialBuffer (see Material.getBufferSlot()).
+     * @param index The slot's index.
+     */
+    public void setMaterialIndex(int index) {
+        materialIndex.set(index);
+    }
+
+    /**
+     * Uploads the material's colors and shininess.
+     * @param material The material.
+     */
+    public void setMaterialUniforms(Material material) {
+        materialAmbient.set(material.ambient, false);
+        materialDiffuse.set(material.diffuse, false);
+        materialSpecular.set(material.specular, false);
+        materialShininess.set(material.shininess);
     }
 
     public void setDefaultMatrixUniforms(Matrix4 modelMatrix, Matrix4 viewMatrix, Matrix4 projectionMatrix) {
-        GL20.glUniformMatrix4fv(2, false, modelMatrix.toUniformFloatArray());
-        GL20.glUniformMatrix4fv(3, false, viewMatrix.toUniformFloatArray());
-        GL20.glUniformMatrix4fv(4, false, projectionMatrix.toUniformFloatArray());
+        modelMatrixUniform.set(modelMatrix, false);
+        viewMatrixUniform.set(viewMatrix, false);
+        projectionMatrixUniform.set(projectionMatrix, false);
+    }
+
+    /**
+     * Uploads the model, view and projection matrices. View and projection are expected to already be
+     * converted to single precision (see Camera), so only the model matrix has to be converted.
+     * The upload does not allocate on the heap.
+     */
+    public void setDefaultMatrixUniforms(Matrix4 modelMatrix, Matrix4f viewMatrix, Matrix4f projectionMatrix) {
+        modelMatrixUniform.set(modelMatrix, false);
+        viewMatrixUniform.set(viewMatrix, false);
+        projectionMatrixUniform.set(projectionMatrix, false);
+    }
+
+    /**
+     * Uploads the model, normal, view and projection matrices. The normal matrix is expected to be
+     * precomputed on the CPU (see Mesh.getNormalMatrix()), so the shader doesn't have to invert the
+     * model matrix for every vertex. Only its upper 3x3 part is uploaded.
+     */
+    public void setDefaultMatrixUniforms(Matrix4 modelMatrix, Matrix4 normalMatrix, Matrix4f viewMatrix, Matrix4f projectionMatrix) {
+        setDefaultMatrixUniforms(modelMatrix, viewMatrix, projectionMatrix);
+        normalMatrixUniform.set3x3(normalMatrix);
+    }
+
+    /**
+     * Uploads the model and normal matrices. Only the upper 3x3 part of the normal matrix is uploaded.
+     */
+    public void setModelUniforms(Matrix4 modelMatrix, Matrix4 normalMatrix) {
+        modelMatrixUniform.set(modelMatrix, false);
+        normalMatrixUniform.set3x3(normalMatrix);
+    }
+
+    /**
+     * Uploads the camera's view and projection matrices. If this shader has already received the
+     * camera's current version, the matrices aren't even compared against the uniforms' shadow copies.
+     * NOTE: The shader must be bound.
+     */
+    public void setCameraUniforms(Camera camera) {
+        if (camera == uploadedCamera && camera.getVersion() == uploadedCameraVersion) {
+            return;
+        }
+        viewMatrixUniform.set(camera.viewMatrixf, false);
+        projectionMatrixUniform.set(camera.projectionMatrixf, false);
+        uploadedCamera = camera;
+        uploadedCameraVersion = camera.getVersion();
+    }
+
+    /**
+     * Forgets the shadow copies of all uniform values, so that the next values are uploaded
+     * regardless. Needed if the program's uniforms were modified without going through this shader.
+     */
+    public void invalidateUniforms() {
+        for (Uniform uniform : uniforms.values()) {
+            uniform.invalidate();
+        }
+        modelMatrixUniform.invalidate();
+        viewMatrixUniform.invalidate();
+        projectionMatrixUniform.invalidate();
+        normalMatrixUniform.invalidate();
+        uploadedCamera = null;
     }
 
     /*
@@ -31,72 +218,92 @@ public class Shader {
 
     public void setLightingUniforms(Environment environment, Material material, Vector3 viewPosition) {
         // TODO: Expand (?)
-        setUniform("environment.ambient", environment.getBackgroundColor(), false);
-        setUniform("material.ambient", material.ambient, false);
-        setUniform("material.diffuse", material.diffuse, false);
-        setUniform("material.specular", material.specular, false);
-        setUniform("material.shininess", material.shininess);
+        environmentAmbient.set(environment.getBackgroundColor(), false);
+        materialAmbient.set(material.ambient, false);
+        materialDiffuse.set(material.diffuse, false);
+        materialSpecular.set(material.specular, false);
+        materialShininess.set(material.shininess);
 
-        setUniform("viewPosition", viewPosition);
+        this.viewPosition.set(viewPosition);
+    }
+
+    public void setLightingUniforms(Environment environment, Material material, Vector3f viewPosition) {
+        final Color ambient = environment.ambientLightColor;
+        final double intensity = environment.ambientLightIntensity;
+        environmentAmbient.set((float) (ambient.r * intensity), (float) (ambient.g * intensity), (float) (ambient.b * intensity));
+        materialAmbient.set(material.ambient, false);
+        materialDiffuse.set(material.diffuse, false);
+        materialSpecular.set(material.specular, false);
+        materialShininess.set(material.shininess);
+
+        this.viewPosition.set(viewPosition);
     }
 
     public void setUniform(String uniform, double value) {
-        setUniform(uniform, (float) value);
+        getUniform(uniform).set(value);
     }
 
     public void setUniform(String uniform, float value) {
-        final int location = getUniformLocation(uniform);
-        if (location == -1) {
-            return;
-        }
-        GL20.glUniform1f(location, value);
+        getUniform(uniform).set(value);
     }
 
     public void setUniform(String uniform, int value) {
-        final int location = getUniformLocation(uniform);
-        if (location == -1) {
-            return;
-        }
-        GL20.glUniform1i(location, value);
+        getUniform(uniform).set(value);
     }
 
     public void setUniform(String uniform, Matrix4 value, boolean transpose) {
-        final int location = getUniformLocation(uniform);
-        if (location == -1) {
-            return;
-        }
-        GL20.glUniformMatrix4fv(location, transpose, value.toUniformFloatArray());
+        getUniform(uniform).set(value, transpose);
+    }
+
+    public void setUniform(String uniform, Matrix4f value, boolean transpose) {
+        getUniform(uniform).set(value, transpose);
     }
 
     public void setUniform(String uniform, Vector3 value) {
-        final int location = getUniformLocation(uniform);
-        if (location == -1) {
-            return;
-        }
-        GL20.glUniform3fv(location, value.toFloatArray());
+        getUniform(uniform).set(value);
+    }
+
+    public void setUniform(String uniform, Vector3f value) {
+        getUniform(uniform).set(value);
+    }
+
+    public void setUniform(String uniform, float x, float y, float z) {
+        getUniform(uniform).set(x, y, z);
     }
 
     public void setUniform(String uniform, Color value, boolean useAlpha) {
-        final int location = getUniformLocation(uniform);
-        if (location == -1) {
-            return;
-        }
-        if (useAlpha) {
-            GL20.glUniform4fv(location, value.toUniformFloatArray());
-        } else {
-            GL20.glUniform3fv(location, value.toUniformFloatArrayNoAlpha());
-        }
+        getUniform(uniform).set(value, useAlpha);
     }
 
-    private int getUniformLocation(String uniform) {
-        return GL20.glGetUniformLocation(programID, uniform);
+    /**
+     * Returns the location of a uniform from the program's reflection, without querying GL.
+     * @param uniform The uniform's name.
+     * @return The location, or -1 if the program has no such uniform.
+     */
+    public int getUniformLocation(String uniform) {
+        return reflection.getUniformLocation(uniform);
     }
 
     public void bind() {
-        GL20.glUseProgram(programID);
+        GLStateCache.useProgram(programID);
+    }
+
+    /**
+     * Deletes the program. The shader must not be bound afterwards.
+     */
+    public void delete() {
+        if (deleted) {
+            return;
+        }
+        GLStateCache.deleteProgram(programID);
+        deleted = true;
+    }
+
+    public boolean isDeleted() {
+        return deleted;
     }
 
     public void unbind() {
-        GL20.glUseProgram(0);
+        GLStateCache.useProgram(0);
     }
 }
@@ -0,0 +1,264 @@
+package de.coxcopi.material.shader;
+
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL41;
+import org.lwjgl.opengl.GLCapabilities;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.zip.CRC32;
+
+/**
+ * On-disk cache of linked shader programs (see glGetProgramBinary()), so that programs whose
+ * source hasn't changed don't have to be compiled and linked again on the next launch.
+ * <p>
+ * Entries are keyed by a SHA-256 hash of the program's source and the GL vendor, renderer and
+ * version strings, since binaries are only valid for the driver that produced them. Entries that
+ * can't be read, are corrupted or are rejected by the driver are deleted, and the program is
+ * compiled from source instead.
+ * <p>
+ * File layout (little endian): magic, file version, binary format, binary length, CRC32 of the binary, binary.
+ */
+public class ShaderCache {
+
+    private static final int MAGIC = 0x42535843; // "CXSB"
+    private static final int FILE_VERSION = 1;
+    private static final int HEADER_SIZE = 5 * Integer.BYTES;
+    private static final String FILE_SUFFIX = ".bin";
+
+    private static Path directory = Paths.get("cache", "shaders");
+    private static boolean enabled = true;
+    /**
+     * The GL vendor, renderer and version strings, queried once. Null until the first use.
+     */
+    private static String driver = null;
+    private static int hits = 0;
+    private static int misses = 0;
+
+    /**
+     * Sets the directory cache entries are stored in. Defaults to cache/shaders inside the working directory.
+     */
+    public static void setDirectory(Path directory) {
+        ShaderCache.directory = directory;
+    }
+
+    public static Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Enables or disables the cache. While disabled, every program is compiled from source.
+     */
+    public static void setEnabled(boolean enabled) {
+        ShaderCache.enabled = enabled;
+    }
+
+    /**
+     * @return True if the cache is enabled and the current context supports program binaries.
+     * NOTE: Requires a current GL context.
+     */
+    public static boolean isAvailable() {
+        if (!enabled) {
+            return false;
+        }
+        final GLCapabilities capabilities = GL.getCapabilities();
+        if (!capabilities.OpenGL41 && !capabilities.GL_ARB_get_program_binary) {
+            return false;
+        }
+        return GL11.glGetInteger(GL41.GL_NUM_PROGRAM_BINARY_FORMATS) > 0;
+    }
+
+    /**
+     * @return The amount of programs loaded from the cache since the last call to resetCounters().
+     */
+    public static int getHits() {
+        return hits;
+    }
+
+    /**
+     * @return The amount of programs that were not found in the cache (or whose entry was invalid)
+     * since the last call to resetCounters().
+     */
+    public static int getMisses() {
+        return misses;
+    }
+
+    public static void resetCounters() {
+        hits = 0;
+        misses = 0;
+    }
+
+    /**
+     * Computes the cache key of a program.
+     * @param source The program's (preprocessed) source.
+     * @return The key, a hex encoded SHA-256 hash.
+     */
+    public static String getKey(ShaderProgramSource source) {
+        if (driver == null) {
+            driver = GL11.glGetString(GL11.GL_VENDOR) + "\n"
+                    + GL11.glGetString(GL11.GL_RENDERER) + "\n"
+                    + GL11.glGetString(GL11.GL_VERSION);
+        }
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(driver.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(source.vertexSource.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(source.fragmentSource.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Creates a program from the cache entry with the given key.
+     * @param key The program's key, see getKey().
+     * @return The linked program, or 0 if there is no valid entry for the key.
+     */
+    public static int load(String key) {
+        final Path path = getPath(key);
+        if (!Files.isRegularFile(path)) {
+            misses++;
+            return 0;
+        }
+        final byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(path);
+        } catch (IOException e) {
+            System.out.println("Failed to read shader cache entry " + path + ": " + e.getMessage());
+            misses++;
+            return 0;
+        }
+        final ByteBuffer header = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        if (bytes.length < HEADER_SIZE || header.getInt(0) != MAGIC || header.getInt(4) != FILE_VERSION
+                || header.getInt(12) != bytes.length - HEADER_SIZE) {
+            System.out.println("Discarding invalid shader cache entry " + path + ".");
+            delete(path);
+            misses++;
+            return 0;
+        }
+        final int format = header.getInt(8);
+        final CRC32 crc = new CRC32();
+        crc.update(bytes, HEADER_SIZE, bytes.length - HEADER_SIZE);
+        if ((int) crc.getValue() != header.getInt(16)) {
+            System.out.println("Discarding corrupted shader cache entry " + path + ".");
+            delete(path);
+            misses++;
+            return 0;
+        }
+
+        final ByteBuffer binary = MemoryUtil.memAlloc(bytes.length - HEADER_SIZE);
+        final int programID = GL20.glCreateProgram();
+        try {
+            binary.put(bytes, HEADER_SIZE, bytes.length - HEADER_SIZE).flip();
+            GL41.glProgramBinary(programID, format, binary);
+        } finally {
+            MemoryUtil.memFree(binary);
+        }
+        if (GL20.glGetProgrami(programID, GL20.GL_LINK_STATUS) == GL11.GL_FALSE) {
+            // E.g. after a driver update that didn't change the version string
+            GL20.glDeleteProgram(programID);
+            delete(path);
+            misses++;
+            return 0;
+        }
+        hits++;
+        return programID;
+    }
+
+    /**
+     * Stores the binary of a linked program under the given key. Failures are logged and otherwise ignored.
+     * <p>
+     * NOTE: The program should have been linked with GL_PROGRAM_BINARY_RETRIEVABLE_HINT set, see prepare().
+     * @param key The program's key, see getKey().
+     * @param programID The linked program.
+     */
+    public static void store(String key, int programID) {
+        final int length = GL20.glGetProgrami(programID, GL41.GL_PROGRAM_BINARY_LENGTH);
+        if (length <= 0) {
+            return;
+        }
+        final ByteBuffer binary = MemoryUtil.memAlloc(length);
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            final IntBuffer written = stack.mallocInt(1);
+            final IntBuffer format = stack.mallocInt(1);
+            GL41.glGetProgramBinary(programID, written, format, binary);
+            final int size = written.get(0);
+            if (size <= 0) {
+                return;
+            }
+            final byte[] bytes = new byte[HEADER_SIZE + size];
+            binary.get(0, bytes, HEADER_SIZE, size);
+            final CRC32 crc = new CRC32();
+            crc.update(bytes, HEADER_SIZE, size);
+            ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN)
+                    .putInt(MAGIC)
+                    .putInt(FILE_VERSION)
+                    .putInt(format.get(0))
+                    .putInt(size)
+                    .putInt((int) crc.getValue());
+
+            // Write to a temporary file first, so that a crash can't leave a truncated entry behind
+            final Path path = getPath(key);
+            Files.createDirectories(directory);
+            final Path temp = Files.createTempFile(directory, key, ".tmp");
+            Files.write(temp, bytes);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("Failed to write shader cache entry " + key + ": " + e.getMessage());
+        } finally {
+            MemoryUtil.memFree(binary);
+        }
+    }
+
+    /**
+     * Marks a program's binary as retrievable. Must be called before the program is linked.
+     * @param programID The program.
+     */
+    public static void prepare(int programID) {
+        GL41.glProgramParameteri(programID, GL41.GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL11.GL_TRUE);
+    }
+
+    /**
+     * Deletes all cache entries.
+     */
+    public static void clear() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (var files = Files.list(directory)) {
+            files.filter(path -> path.toString().endsWith(FILE_SUFFIX)).forEach(ShaderCache::delete);
+        } catch (IOException e) {
+            System.out.println("Failed to clear shader cache: " + e.getMessage());
+        }
+    }
+
+    private static Path getPath(String key) {
+        return directory.resolve(key + FILE_SUFFIX);
+    }
+
+    private static void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            System.out.println("Failed to delete shader cache entry " + path + ": " + e.getMessage());
+        }
+    }
+}
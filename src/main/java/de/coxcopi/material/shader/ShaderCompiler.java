@@ -0,0 +1,205 @@
+package de.coxcopi.material.shader;
+
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GLCapabilities;
+import org.lwjgl.opengl.KHRParallelShaderCompile;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.lwjgl.opengl.GL11.GL_FALSE;
+
+/**
+ * Compiles shader programs without waiting for the driver on the render thread.
+ * <p>
+ * submit() hands the sources to the driver and links the program right away, without querying any
+ * status. poll(), called once per frame by the renderer, completes the programs the driver has finished.
+ * With GL_KHR_parallel_shader_compile (or the ARB variant) the driver compiles on its own threads and
+ * completion is checked with GL_COMPLETION_STATUS_KHR, which never blocks. Without the extension
+ * querying a program's status blocks until it is linked, so at most maxBlockingLinksPerPoll programs
+ * are completed per frame to spread the cost over several frames.
+ * <p>
+ * Programs found in the ShaderCache are loaded from their binary and are done immediately.
+ * Until a program is done, getFallbackShader() can be used in its place.
+ * NOTE: All methods must be called on the thread owning the GL context.
+ */
+public class ShaderCompiler {
+
+    private static final String FALLBACK_SHADER = "fallback.glsl";
+
+    private static final ArrayList<ShaderFuture> pending = new ArrayList<>();
+    private static boolean initialized = false;
+    private static boolean parallelCompile = false;
+    private static int maxBlockingLinksPerPoll = 1;
+    private static Shader fallbackShader = null;
+
+    /**
+     * Queues a program for compilation.
+     * @param source The program's (preprocessed) source.
+     * @return A handle that is completed by poll() once the program is linked.
+     */
+    public static ShaderFuture submit(ShaderProgramSource source) {
+        init();
+        final boolean useCache = ShaderCache.isAvailable();
+        final ShaderFuture future = new ShaderFuture(source, useCache ? ShaderCache.getKey(source) : null);
+        if (useCache) {
+            final int cachedProgram = ShaderCache.load(future.cacheKey);
+            if (cachedProgram != 0) {
+                ShaderParser.bindBlocks(cachedProgram);
+                future.complete(new Shader(source, cachedProgram, ShaderReflection.reflect(cachedProgram)));
+                return future;
+            }
+        }
+
+        future.vertexShader = GL20.glCreateShader(GL20.GL_VERTEX_SHADER);
+        GL20.glShaderSource(future.vertexShader, source.vertexSource);
+        GL20.glCompileShader(future.vertexShader);
+        future.fragmentShader = GL20.glCreateShader(GL20.GL_FRAGMENT_SHADER);
+        GL20.glShaderSource(future.fragmentShader, source.fragmentSource);
+        GL20.glCompileShader(future.fragmentShader);
+
+        future.programID = GL20.glCreateProgram();
+        GL20.glAttachShader(future.programID, future.vertexShader);
+        GL20.glAttachShader(future.programID, future.fragmentShader);
+        if (useCache) {
+            ShaderCache.prepare(future.programID);
+        }
+        // Linking doesn't have to wait for the compilation, the driver queues it
+        GL20.glLinkProgram(future.programID);
+        pending.add(future);
+        return future;
+    }
+
+    /**
+     * Queues several programs for compilation. Submitting all programs before polling lets the
+     * driver compile them in parallel.
+     * @param sources The programs' sources.
+     * @return The handles, in the same order.
+     */
+    public static List<ShaderFuture> submitAll(List<ShaderProgramSource> sources) {
+        final ArrayList<ShaderFuture> futures = new ArrayList<>(sources.size());
+        for (ShaderProgramSource source : sources) {
+            futures.add(submit(source));
+        }
+        return futures;
+    }
+
+    /**
+     * Completes the programs the driver has finished linking. Should be called once per frame.
+     * @return The amount of programs still pending.
+     */
+    public static int poll() {
+        int blockingLinks = 0;
+        for (int i = 0; i < pending.size(); i++) {
+            final ShaderFuture future = pending.get(i);
+            if (parallelCompile) {
+                if (GL20.glGetProgrami(future.programID, KHRParallelShaderCompile.GL_COMPLETION_STATUS_KHR) == GL_FALSE) {
+                    continue;
+                }
+            } else if (blockingLinks++ >= maxBlockingLinksPerPoll) {
+                break;
+            }
+            finish(future);
+            pending.remove(i--);
+        }
+        return pending.size();
+    }
+
+    /**
+     * Blocks until all pending programs are linked and completes them.
+     */
+    public static void finishAll() {
+        for (ShaderFuture future : pending) {
+            finish(future);
+        }
+        pending.clear();
+    }
+
+    /**
+     * @return The amount of programs that have been submitted but aren't completed yet.
+     */
+    public static int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * @return True if the driver compiles shaders on its own threads (GL_KHR_parallel_shader_compile).
+     */
+    public static boolean isParallelCompileSupported() {
+        init();
+        return parallelCompile;
+    }
+
+    /**
+     * Sets how many programs poll() completes per call if the driver doesn't support polling for
+     * completion (every completion may block while the driver compiles). Defaults to 1.
+     */
+    public static void setMaxBlockingLinksPerPoll(int maxBlockingLinksPerPoll) {
+        ShaderCompiler.maxBlockingLinksPerPoll = Math.max(1, maxBlockingLinksPerPoll);
+    }
+
+    /**
+     * Returns a minimal shader that can be used while the actual shader of a material is compiling.
+     * It reads the camera from the FrameData block and draws the material's diffuse color unlit.
+     * It is compiled synchronously on the first call.
+     */
+    public static Shader getFallbackShader() {
+        if (fallbackShader == null) {
+            fallbackShader = ShaderParser.parseShaderFile(FALLBACK_SHADER);
+            if (fallbackShader == null) {
+                throw new IllegalStateException("The fallback shader could not be loaded.");
+            }
+        }
+        return fallbackShader;
+    }
+
+    private static void init() {
+        if (initialized) {
+            return;
+        }
+        final GLCapabilities capabilities = GL.getCapabilities();
+        if (capabilities.GL_KHR_parallel_shader_compile) {
+            // 0xFFFFFFFF lets the driver pick the amount of threads
+            KHRParallelShaderCompile.glMaxShaderCompilerThreadsKHR(0xFFFFFFFF);
+        }
+        // GL_COMPLETION_STATUS_ARB has the same value as the KHR constant
+        parallelCompile = capabilities.GL_KHR_parallel_shader_compile || capabilities.GL_ARB_parallel_shader_compile;
+        initialized = true;
+    }
+
+    /**
+     * Checks the link status of a program (blocking if it isn't linked yet) and completes its handle.
+     */
+    private static void finish(ShaderFuture future) {
+        final int programID = future.programID;
+        final boolean linked = GL20.glGetProgrami(programID, GL20.GL_LINK_STATUS) != GL_FALSE;
+        if (!linked) {
+            logCompileErrors(future.vertexShader, "vertex");
+            logCompileErrors(future.fragmentShader, "fragment");
+            System.out.println("Failed to link shader program:");
+            System.out.println(GL20.glGetProgramInfoLog(programID));
+        }
+        GL20.glDetachShader(programID, future.vertexShader);
+        GL20.glDetachShader(programID, future.fragmentShader);
+        GL20.glDeleteShader(future.vertexShader);
+        GL20.glDeleteShader(future.fragmentShader);
+        if (!linked) {
+            GL20.glDeleteProgram(programID);
+            future.fail();
+            return;
+        }
+        ShaderParser.bindBlocks(programID);
+        if (future.cacheKey != null) {
+            ShaderCache.store(future.cacheKey, programID);
+        }
+        future.complete(new Shader(future.source, programID, ShaderReflection.reflect(programID)));
+    }
+
+    private static void logCompileErrors(int shader, String type) {
+        if (GL20.glGetShaderi(shader, GL20.GL_COMPILE_STATUS) == GL_FALSE) {
+            System.out.println("Failed to compile " + type + " shader:");
+            System.out.println(GL20.glGetShaderInfoLog(shader));
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package de.coxcopi.material.shader;
+
+/**
+ * Optional features of a shader, which can be enabled per variant (see ShaderVariantKey).
+ * Every feature is exposed to the shader as a define named FEATURE_ followed by the feature's name.
+ */
+public enum ShaderFeature {
+    /**
+     * Diffuse lighting.
+     */
+    DIFFUSE,
+    /**
+     * Specular highlights.
+     */
+    SPECULAR;
+
+    /**
+     * @return The feature's bit in a feature set.
+     */
+    public long bit() {
+        return 1L << ordinal();
+    }
+
+    /**
+     * @return The name of the define enabling the feature in the shader.
+     */
+    public String getDefine() {
+        return "FEATURE_" + name();
+    }
+
+    /**
+     * @return A feature set containing the given features.
+     */
+    public static long setOf(ShaderFeature... features) {
+        long set = 0;
+        for (ShaderFeature feature : features) {
+            set |= feature.bit();
+        }
+        return set;
+    }
+
+    /**
+     * @return A feature set containing all features.
+     */
+    public static long all() {
+        return (1L << values().length) - 1;
+    }
+}
@@ -0,0 +1,79 @@
+package de.coxcopi.material.shader;
+
+/**
+ * Handle to a shader program that is being compiled asynchronously, see ShaderCompiler.
+ * The handle is completed by ShaderCompiler.poll() once the driver has finished linking the program.
+ */
+public class ShaderFuture {
+
+    public enum State {
+        /**
+         * The program is being compiled and linked.
+         */
+        PENDING,
+        /**
+         * The program has been linked successfully, getShader() returns it.
+         */
+        DONE,
+        /**
+         * Compiling or linking failed. The error has been logged.
+         */
+        FAILED
+    }
+
+    final ShaderProgramSource source;
+    /**
+     * Key of the program in the ShaderCache, or null if the cache is not used.
+     */
+    final String cacheKey;
+    int programID;
+    int vertexShader;
+    int fragmentShader;
+    private State state = State.PENDING;
+    private Shader shader = null;
+
+    ShaderFuture(ShaderProgramSource source, String cacheKey) {
+        this.source = source;
+        this.cacheKey = cacheKey;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public boolean isDone() {
+        return state == State.DONE;
+    }
+
+    public boolean isFailed() {
+        return state == State.FAILED;
+    }
+
+    /**
+     * @return The shader, or null if it isn't done yet (or failed).
+     */
+    public Shader getShader() {
+        return shader;
+    }
+
+    /**
+     * @param fallback The shader to use while this one isn't ready.
+     * @return The shader if it is done, otherwise the fallback.
+     */
+    public Shader getShaderOr(Shader fallback) {
+        return shader != null ? shader : fallback;
+    }
+
+    public ShaderProgramSource getSource() {
+        return source;
+    }
+
+    void complete(Shader shader) {
+        this.shader = shader;
+        this.state = State.DONE;
+    }
+
+    void fail() {
+        this.state = State.FAILED;
+    }
+}
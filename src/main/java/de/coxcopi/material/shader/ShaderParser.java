@@ -1,24 +1,27 @@
 package de.coxcopi.material.shader;
 
+import de.coxcopi.material.MaterialBuffer;
+import de.coxcopi.render.FrameUniforms;
 import org.lwjgl.opengl.GL20;
 
-import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.List;
+import java.util.Collections;
+import java.util.Map;
 
 import static org.lwjgl.opengl.GL11.GL_FALSE;
 
 public class ShaderParser {
     final static String DEFAULT_SHADER_PATH = "shaders/";
+    public static final String DEFAULT_SHADER = "default.glsl";
+    private static final ShaderPreprocessor preprocessor = new ShaderPreprocessor();
+    private static final ShaderVariantCache variantCache = new ShaderVariantCache(32);
 
     public static Shader getDefaultShader() {
-        return parseShaderFile("default.glsl");
+        return parseShaderFile(DEFAULT_SHADER);
     }
 
     /**
@@ -31,6 +34,93 @@ public class ShaderParser {
      * @return A shader object containing the source of both shader types and a valid shaderProgram id.
      */
     public static Shader parseShaderFile(String name) {
+        return parseShaderFile(name, Collections.emptyMap());
+    }
+
+    /**
+     * Loads a shader file, expanding its includes (see ShaderPreprocessor), and parses it as a Shader object.
+     * @param name The name of the shader file. Including the '.glsl' suffix in the name is optional.
+     * @param defines Macros to define in every stage of the shader (name to value, the value may be empty).
+     * @return A shader object containing the source of both shader types and a valid shaderProgram id,
+     * or null if the file could not be found or the shader failed to compile or link.
+     */
+    public static Shader parseShaderFile(String name, Map<String, String> defines) {
+        final ShaderProgramSource source = preprocessSource(name, defines);
+        if (source == null) {
+            return null;
+        }
+        return createShader(source);
+    }
+
+    /**
+     * Loads a shader file and expands its includes, without compiling anything. Can be called on any thread.
+     * @param name The name of the shader file. Including the '.glsl' suffix in the name is optional.
+     * @param defines Macros to define in every stage of the shader (name to value, the value may be empty).
+     * @return The shader's source, or null if the file could not be found.
+     */
+    public static ShaderProgramSource preprocessSource(String name, Map<String, String> defines) {
+        return preprocessor.process(name + (name.endsWith(".glsl") ? "" : ".glsl"), defines);
+    }
+
+    /**
+     * Compiles and links a new program from the given source.
+     * @return The shader, or null if the program could not be compiled or linked.
+     */
+    static Shader createShader(ShaderProgramSource source) {
+        final int programID = createShaderProgram(source);
+        if (programID == 0) {
+            return null;
+        }
+        return new Shader(source, programID, ShaderReflection.reflect(programID));
+    }
+
+    /**
+     * Loads a shader file like parseShaderFile(), but compiles it asynchronously (see ShaderCompiler).
+     * @param name The name of the shader file. Including the '.glsl' suffix in the name is optional.
+     * @param defines Macros to define in every stage of the shader (name to value, the value may be empty).
+     * @return A handle that is completed once the program is linked, or null if the file could not be found.
+     */
+    public static ShaderFuture parseShaderFileAsync(String name, Map<String, String> defines) {
+        final ShaderProgramSource source = preprocessSource(name, defines);
+        if (source == null) {
+            return null;
+        }
+        return ShaderCompiler.submit(source);
+    }
+
+    public static ShaderFuture parseShaderFileAsync(String name) {
+        return parseShaderFileAsync(name, Collections.emptyMap());
+    }
+
+    /**
+     * Returns the compiled program of a shader variant. Variants are kept in a bounded cache, see getVariantCache().
+     * Callers that keep using the shader must hold a reference to it (see ShaderRegistry.retain()), otherwise
+     * it may be evicted and deleted. Materials do so automatically.
+     * @param key The variant.
+     * @return The shader, or null if the shader file could not be found.
+     */
+    public static Shader getVariant(ShaderVariantKey key) {
+        return variantCache.get(key);
+    }
+
+    public static ShaderVariantCache getVariantCache() {
+        return variantCache;
+    }
+
+    /**
+     * @return The preprocessor used by parseShaderFile(), which caches the shader files it has read.
+     */
+    public static ShaderPreprocessor getPreprocessor() {
+        return preprocessor;
+    }
+
+    /**
+     * Resolves the path of a shader file inside the resources/shaders/ directory.
+     * NOTE: Only works if the resources are not packaged in a jar.
+     * @param name The name of the shader file. Including the '.glsl' suffix in the name is optional.
+     * @return The path, or null if the file could not be found.
+     */
+    public static Path getShaderPath(String name) {
         Path path;
         try {
             ClassLoader classLoader = ShaderParser.class.getClassLoader();
@@ -47,59 +137,83 @@ public class ShaderParser {
             // TODO: Error message (Invalid uri syntax / Internal Parse Error)
             return null;
         }
-        enum ShaderType {
-            NONE,
-            VERTEX,
-            FRAGMENT
-        }
-        ShaderType type = ShaderType.NONE;
-        try {
-            final List<String> sourceLines = Files.readAllLines(path, StandardCharsets.UTF_8);
-            String vertexSource = "";
-            String fragmentSource = "";
-            for (String line : sourceLines) {
-                if (line.contains("#shader")) {
-                    if (line.contains("fragment")) {
-                        type = ShaderType.FRAGMENT;
-                    }
-                    else if (line.contains("vertex")) {
-                        type = ShaderType.VERTEX;
-                    }
-                }
-                else {
-                    if (type == ShaderType.FRAGMENT) {
-                        fragmentSource += line + "\n";
-                    } else if (type == ShaderType.VERTEX) {
-                        vertexSource += line + "\n";
-                    }
-                }
+        return path;
+    }
+
+    /**
+     * Reads a shader file and splits it into its vertex and fragment source, without compiling
+     * anything. Includes are resolved relative to the file's directory. Nothing is cached between
+     * calls. Used e.g. by benchmarks.
+     * @param path The path of the shader file.
+     * @return The shader sources, or null if the file could not be read.
+     */
+    public static ShaderProgramSource parseShaderSource(Path path) {
+        final Path directory = path.toAbsolutePath().getParent();
+        return new ShaderPreprocessor(directory).process(path.getFileName().toString());
+    }
+
+    /**
+     * Creates a linked program from the given source. If the shader cache holds a binary of the
+     * program for the current driver, it is loaded instead of compiling the source (see ShaderCache).
+     * @return The program, or 0 if a stage failed to compile or the program failed to link (the errors
+     * are logged and nothing is left behind).
+     */
+    private static int createShaderProgram(ShaderProgramSource source) {
+        final boolean useCache = ShaderCache.isAvailable();
+        final String key = useCache ? ShaderCache.getKey(source) : null;
+        if (useCache) {
+            final int cachedProgram = ShaderCache.load(key);
+            if (cachedProgram != 0) {
+                bindBlocks(cachedProgram);
+                return cachedProgram;
             }
-            final int programID = createShaderProgram(vertexSource, fragmentSource);
-            final ShaderProgramSource source = new ShaderProgramSource(vertexSource, fragmentSource);
-            return new Shader(source, programID);
-        } catch (IOException e) {
-            System.out.println("Error loading shader file at " + path + ":");
-            e.printStackTrace();
-            return null;
         }
-    }
 
-    private static int createShaderProgram(String vertexSource, String fragmentSource) {
-        final int shaderProgram = GL20.glCreateProgram();
-        final int vs = compileShader(GL20.GL_VERTEX_SHADER, vertexSource);
-        final int fs = compileShader(GL20.GL_FRAGMENT_SHADER, fragmentSource);
+        final int vs = compileShader(GL20.GL_VERTEX_SHADER, source.vertexSource);
+        if (vs == 0) {
+            return 0;
+        }
+        final int fs = compileShader(GL20.GL_FRAGMENT_SHADER, source.fragmentSource);
+        if (fs == 0) {
+            GL20.glDeleteShader(vs);
+            return 0;
+        }
 
+        final int shaderProgram = GL20.glCreateProgram();
         GL20.glAttachShader(shaderProgram, vs);
         GL20.glAttachShader(shaderProgram, fs);
+        if (useCache) {
+            ShaderCache.prepare(shaderProgram);
+        }
         GL20.glLinkProgram(shaderProgram);
-        GL20.glValidateProgram(shaderProgram);
 
+        GL20.glDetachShader(shaderProgram, vs);
+        GL20.glDetachShader(shaderProgram, fs);
         GL20.glDeleteShader(vs);
         GL20.glDeleteShader(fs);
 
+        if (GL20.glGetProgrami(shaderProgram, GL20.GL_LINK_STATUS) == GL_FALSE) {
+            System.out.println("Failed to link shader program:");
+            System.out.println(GL20.glGetProgramInfoLog(shaderProgram));
+            GL20.glDeleteProgram(shaderProgram);
+            return 0;
+        }
+        bindBlocks(shaderProgram);
+        if (useCache) {
+            ShaderCache.store(key, shaderProgram);
+        }
         return shaderProgram;
     }
 
+    /**
+     * Assigns the engine's uniform and storage blocks (see FrameUniforms and MaterialBuffer) of a
+     * linked program to their binding points.
+     */
+    static void bindBlocks(int programID) {
+        FrameUniforms.bindBlock(programID);
+        MaterialBuffer.bindBlock(programID);
+    }
+
     private static int compileShader(int type, String source) {
         final int shader = GL20.glCreateShader(type);
         GL20.glShaderSource(shader, source);
@@ -108,6 +222,7 @@ public class ShaderParser {
         if (result == GL_FALSE) {
             System.out.println("Failed to compile " + (type == GL20.GL_VERTEX_SHADER ? "vertex" : "fragment") + " shader:");
             System.out.println(GL20.glGetShaderInfoLog(shader, GL20.glGetShaderi(shader, GL20.GL_INFO_LOG_LENGTH)));
+            GL20.glDeleteShader(shader);
             return 0;
         }
         return shader;
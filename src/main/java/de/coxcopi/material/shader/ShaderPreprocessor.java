@@ -0,0 +1,434 @@
+package de.coxcopi.material.shader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Reads shader files and expands them into a ShaderProgramSource.
+ * <p>
+ * Supported directives:
+ * <ul>
+ *     <li>{@code #shader vertex} / {@code #shader fragment} start the source of the respective stage.</li>
+ *     <li>{@code #include "name"} is replaced by the contents of the named file, resolved relative to
+ *     the including file. Includes may be nested; cyclic includes are reported as errors. Files may
+ *     protect themselves against being included twice with regular #ifndef guards.</li>
+ * </ul>
+ * Defines passed to process() are injected into every stage directly after its #version line.
+ * <p>
+ * Files are read once and kept in memory together with a hash of their content. Expanded files are
+ * cached by a hash covering their content and the content of everything they include, so a file
+ * that is included by many shaders is only read and expanded once. invalidate() drops a file and
+ * everything that (directly or indirectly) includes it, e.g. after it was modified on disk.
+ * <p>
+ * Files are read either from the classpath (which also works inside a jar) or from a directory.
+ * Instances are thread-safe: all public methods synchronize on the instance, so shaders can be
+ * preprocessed on any thread (e.g. before submitting them to ShaderCompiler).
+ */
+public class ShaderPreprocessor {
+
+    private static final String SHADER_DIRECTIVE = "#shader";
+    private static final String INCLUDE_DIRECTIVE = "#include";
+    private static final String VERSION_DIRECTIVE = "#version";
+
+    /**
+     * A file's content, read once.
+     */
+    private static class SourceFile {
+        final String name;
+        final String content;
+        final String contentHash;
+        /**
+         * Names of the files included directly, in order of appearance.
+         */
+        final List<String> includes;
+        /**
+         * Hash covering the content of the file and of everything it includes, null until computed.
+         */
+        String expandedHash = null;
+
+        SourceFile(String name, String content, String contentHash, List<String> includes) {
+            this.name = name;
+            this.content = content;
+            this.contentHash = contentHash;
+            this.includes = includes;
+        }
+    }
+
+    /**
+     * Thrown internally to abort processing; reported by process().
+     */
+    private static class PreprocessorException extends Exception {
+        PreprocessorException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Resource path prefix, used if directory is null.
+     */
+    private final String resourcePrefix;
+    private final Path directory;
+    private final HashMap<String, SourceFile> files = new HashMap<>();
+    /**
+     * Expanded files (without #shader splitting), by SourceFile.expandedHash.
+     */
+    private final HashMap<String, String> expanded = new HashMap<>();
+    /**
+     * Expanded programs, by expandedHash of the root file and the defines.
+     */
+    private final HashMap<String, ShaderProgramSource> programs = new HashMap<>();
+    /**
+     * Dependency graph: for every file, the files that include it directly.
+     */
+    private final HashMap<String, Set<String>> dependents = new HashMap<>();
+    private int filesRead = 0;
+
+    /**
+     * Constructs a preprocessor reading files from the shaders/ directory on the classpath.
+     */
+    public ShaderPreprocessor() {
+        this.resourcePrefix = ShaderParser.DEFAULT_SHADER_PATH;
+        this.directory = null;
+    }
+
+    /**
+     * Constructs a preprocessor reading files from the given directory.
+     */
+    public ShaderPreprocessor(Path directory) {
+        this.resourcePrefix = null;
+        this.directory = directory;
+    }
+
+    public ShaderProgramSource process(String name) {
+        return process(name, Collections.emptyMap());
+    }
+
+    /**
+     * Reads a shader file, expands its includes and splits it into its stages.
+     * @param name The name of the file, relative to this preprocessor's root.
+     * @param defines Macros to define in every stage (name to value, the value may be empty).
+     * @return The expanded source, or null if a file could not be read or the includes are cyclic.
+     */
+    public synchronized ShaderProgramSource process(String name, Map<String, String> defines) {
+        final String normalizedName = normalize(name);
+        try {
+            final SourceFile file = getFile(normalizedName);
+            final TreeMap<String, String> sortedDefines = new TreeMap<>(defines);
+            final String key = getExpandedHash(file, new LinkedHashSet<>()) + sortedDefines;
+            ShaderProgramSource program = programs.get(key);
+            if (program == null) {
+                program = split(expand(file, new LinkedHashSet<>()), sortedDefines);
+                programs.put(key, program);
+            }
+            return program;
+        } catch (PreprocessorException e) {
+            System.out.println("Error preprocessing shader " + normalizedName + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Drops the cached content of a file and of all files that include it, directly or indirectly.
+     * They are read again by the next call to process().
+     * @param name The name of the file, relative to this preprocessor's root.
+     * @return The names of all dropped files.
+     */
+    public synchronized Set<String> invalidate(String name) {
+        final Set<String> affected = getDependents(name);
+        affected.add(normalize(name));
+        for (String dropped : affected) {
+            final SourceFile file = files.remove(dropped);
+            if (file == null) {
+                continue;
+            }
+            // The file may include different files once it is read again
+            for (String include : file.includes) {
+                final Set<String> direct = dependents.get(include);
+                if (direct != null) {
+                    direct.remove(dropped);
+                }
+            }
+        }
+        // Hashes of unaffected files stay valid, stale entries are simply never hit again
+        return affected;
+    }
+
+    /**
+     * Drops all cached files and expansions.
+     */
+    public synchronized void clear() {
+        files.clear();
+        expanded.clear();
+        programs.clear();
+        dependents.clear();
+    }
+
+    /**
+     * Returns all files that include the given file, directly or indirectly. Only files that have
+     * been processed are known.
+     * @param name The name of the file, relative to this preprocessor's root.
+     */
+    public synchronized Set<String> getDependents(String name) {
+        final Set<String> result = new LinkedHashSet<>();
+        final ArrayList<String> open = new ArrayList<>();
+        open.add(normalize(name));
+        while (!open.isEmpty()) {
+            final Set<String> direct = dependents.get(open.remove(open.size() - 1));
+            if (direct == null) {
+                continue;
+            }
+            for (String dependent : direct) {
+                if (result.add(dependent)) {
+                    open.add(dependent);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the files the given file includes directly, or null if the file hasn't been read.
+     * @param name The name of the file, relative to this preprocessor's root.
+     */
+    public synchronized List<String> getIncludes(String name) {
+        final SourceFile file = files.get(normalize(name));
+        return file == null ? null : Collections.unmodifiableList(file.includes);
+    }
+
+    /**
+     * @return The amount of files read from the classpath or disk so far.
+     */
+    public synchronized int getFilesRead() {
+        return filesRead;
+    }
+
+    private SourceFile getFile(String name) throws PreprocessorException {
+        SourceFile file = files.get(name);
+        if (file == null) {
+            file = read(name);
+            files.put(name, file);
+            for (String include : file.includes) {
+                dependents.computeIfAbsent(include, k -> new HashSet<>()).add(name);
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Reads a file line by line, collecting its includes.
+     */
+    private SourceFile read(String name) throws PreprocessorException {
+        final StringBuilder content = new StringBuilder();
+        final ArrayList<String> includes = new ArrayList<>();
+        try (BufferedReader reader = open(name)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String include = parseInclude(line, name);
+                if (include != null) {
+                    includes.add(include);
+                }
+                content.append(line).append('\n');
+            }
+        } catch (IOException e) {
+            throw new PreprocessorException("Failed to read " + name + ": " + e.getMessage());
+        }
+        filesRead++;
+        final String text = content.toString();
+        return new SourceFile(name, text, hash(text), includes);
+    }
+
+    private BufferedReader open(String name) throws IOException, PreprocessorException {
+        final InputStream stream;
+        if (directory != null) {
+            final Path path = directory.resolve(name);
+            if (!Files.isRegularFile(path)) {
+                throw new PreprocessorException("File not found: " + path);
+            }
+            stream = Files.newInputStream(path);
+        } else {
+            stream = ShaderPreprocessor.class.getClassLoader().getResourceAsStream(resourcePrefix + name);
+            if (stream == null) {
+                throw new PreprocessorException("File not found: " + resourcePrefix + name);
+            }
+        }
+        return new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Computes the hash of a file's content and the content of everything it includes.
+     * @param stack The files currently being visited, used to detect cycles.
+     */
+    private String getExpandedHash(SourceFile file, LinkedHashSet<String> stack) throws PreprocessorException {
+        if (file.expandedHash != null) {
+            return file.expandedHash;
+        }
+        enter(file, stack);
+        final StringBuilder builder = new StringBuilder(file.contentHash);
+        for (String include : file.includes) {
+            builder.append(getExpandedHash(getFile(include), stack));
+        }
+        stack.remove(file.name);
+        file.expandedHash = file.includes.isEmpty() ? file.contentHash : hash(builder.toString());
+        return file.expandedHash;
+    }
+
+    /**
+     * Returns the content of a file with all includes replaced by their expanded content.
+     */
+    private String expand(SourceFile file, LinkedHashSet<String> stack) throws PreprocessorException {
+        if (file.includes.isEmpty()) {
+            return file.content;
+        }
+        final String hash = getExpandedHash(file, stack);
+        String result = expanded.get(hash);
+        if (result != null) {
+            return result;
+        }
+        enter(file, stack);
+        final StringBuilder builder = new StringBuilder(file.content.length());
+        final String content = file.content;
+        int lineStart = 0;
+        while (lineStart < content.length()) {
+            int lineEnd = content.indexOf('\n', lineStart);
+            lineEnd = lineEnd == -1 ? content.length() : lineEnd + 1;
+            final String include = parseInclude(content.substring(lineStart, lineEnd).strip(), file.name);
+            if (include != null) {
+                builder.append(expand(getFile(include), stack));
+            } else {
+                builder.append(content, lineStart, lineEnd);
+            }
+            lineStart = lineEnd;
+        }
+        stack.remove(file.name);
+        result = builder.toString();
+        expanded.put(hash, result);
+        return result;
+    }
+
+    private static void enter(SourceFile file, LinkedHashSet<String> stack) throws PreprocessorException {
+        if (!stack.add(file.name)) {
+            throw new PreprocessorException("Cyclic include: " + String.join(" -> ", stack) + " -> " + file.name);
+        }
+    }
+
+    /**
+     * Splits an expanded file into its stages and injects the defines.
+     */
+    private static ShaderProgramSource split(String source, Map<String, String> defines) {
+        final StringBuilder vertexSource = new StringBuilder();
+        final StringBuilder fragmentSource = new StringBuilder();
+        StringBuilder target = null;
+        // True until the defines have been injected into the current stage
+        boolean definesPending = false;
+        int lineStart = 0;
+        while (lineStart < source.length()) {
+            int lineEnd = source.indexOf('\n', lineStart);
+            lineEnd = lineEnd == -1 ? source.length() : lineEnd + 1;
+            final String line = source.substring(lineStart, lineEnd);
+            lineStart = lineEnd;
+            if (line.contains(SHADER_DIRECTIVE)) {
+                if (line.contains("fragment")) {
+                    target = fragmentSource;
+                } else if (line.contains("vertex")) {
+                    target = vertexSource;
+                }
+                definesPending = !defines.isEmpty();
+                continue;
+            }
+            if (target == null) {
+                continue;
+            }
+            final String stripped = line.strip();
+            // #version has to come first, so the defines go after it (or before the first line if there is none)
+            final boolean injectBefore = definesPending && !stripped.isEmpty() && !stripped.startsWith("//") && !stripped.startsWith(VERSION_DIRECTIVE);
+            if (injectBefore) {
+                appendDefines(target, defines);
+                definesPending = false;
+            }
+            target.append(line);
+            if (!line.endsWith("\n")) {
+                target.append('\n');
+            }
+            if (definesPending && stripped.startsWith(VERSION_DIRECTIVE)) {
+                appendDefines(target, defines);
+                definesPending = false;
+            }
+        }
+        return new ShaderProgramSource(vertexSource.toString(), fragmentSource.toString());
+    }
+
+    private static void appendDefines(StringBuilder target, Map<String, String> defines) {
+        for (Map.Entry<String, String> define : defines.entrySet()) {
+            target.append("#define ").append(define.getKey());
+            if (define.getValue() != null && !define.getValue().isEmpty()) {
+                target.append(' ').append(define.getValue());
+            }
+            target.append('\n');
+        }
+    }
+
+    /**
+     * Returns the normalized name of the file included by the given line, or null if the line is no include.
+     * @param line The line.
+     * @param includingFile The name of the file containing the line, used to resolve relative names.
+     */
+    private static String parseInclude(String line, String includingFile) {
+        final String stripped = line.strip();
+        if (!stripped.startsWith(INCLUDE_DIRECTIVE)) {
+            return null;
+        }
+        final int start = stripped.indexOf('"');
+        final int end = stripped.lastIndexOf('"');
+        if (start == -1 || end <= start) {
+            return null;
+        }
+        final String include = stripped.substring(start + 1, end);
+        final int slash = includingFile.lastIndexOf('/');
+        return normalize(slash == -1 ? include : includingFile.substring(0, slash + 1) + include);
+    }
+
+    /**
+     * Resolves "." and ".." segments, so that every file has a unique name.
+     */
+    private static String normalize(String name) {
+        final ArrayList<String> segments = new ArrayList<>();
+        for (String segment : name.replace('\\', '/').split("/")) {
+            if (segment.isEmpty() || segment.equals(".")) {
+                continue;
+            }
+            if (segment.equals("..") && !segments.isEmpty() && !segments.get(segments.size() - 1).equals("..")) {
+                segments.remove(segments.size() - 1);
+            } else {
+                segments.add(segment);
+            }
+        }
+        return String.join("/", segments);
+    }
+
+    private static String hash(String content) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
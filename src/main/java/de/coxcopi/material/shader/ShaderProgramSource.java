@@ -9,4 +9,32 @@ public class ShaderProgramSource {
         this.vertexSource = vertexSource;
         this.fragmentSource = fragmentSource;
     }
+
+    public String getVertexSource() {
+        return vertexSource;
+    }
+
+    public String getFragmentSource() {
+        return fragmentSource;
+    }
+
+    /**
+     * Two sources are equal if their vertex and fragment sources are equal, so that programs can be
+     * shared between shaders with the same source (see ShaderRegistry).
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ShaderProgramSource other)) {
+            return false;
+        }
+        return vertexSource.equals(other.vertexSource) && fragmentSource.equals(other.fragmentSource);
+    }
+
+    @Override
+    public int hashCode() {
+        return vertexSource.hashCode() * 31 + fragmentSource.hashCode();
+    }
 }
@@ -0,0 +1,201 @@
+package de.coxcopi.material.shader;
+
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL31;
+import org.lwjgl.opengl.GL43;
+import org.lwjgl.system.MemoryStack;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The active uniforms and vertex attributes of a linked shader program, queried once through
+ * program introspection. Lookups by name are served from hash maps and never touch GL.
+ */
+public class ShaderReflection {
+
+    /**
+     * An active uniform or vertex attribute.
+     */
+    public static class Variable {
+        /**
+         * The variable's name. For arrays, the name without the trailing "[0]".
+         */
+        public final String name;
+        /**
+         * The variable's location, or -1 if it has none (e.g. uniforms inside a uniform block).
+         */
+        public final int location;
+        /**
+         * The variable's GL type, e.g. GL_FLOAT_VEC3 or GL_FLOAT_MAT4.
+         */
+        public final int type;
+        /**
+         * The amount of array elements, 1 for non-arrays.
+         */
+        public final int size;
+
+        Variable(String name, int location, int type, int size) {
+            this.name = name;
+            this.location = location;
+            this.type = type;
+            this.size = size;
+        }
+
+        @Override
+        public String toString() {
+            return name + " (location: " + location + ", type: 0x" + Integer.toHexString(type) + ", size: " + size + ")";
+        }
+    }
+
+    private final HashMap<String, Variable> uniforms = new HashMap<>();
+    private final HashMap<String, Variable> attributes = new HashMap<>();
+    private final ArrayList<Variable> uniformList = new ArrayList<>();
+    private final ArrayList<Variable> attributeList = new ArrayList<>();
+    /**
+     * Active uniform block indices, by block name.
+     */
+    private final HashMap<String, Integer> uniformBlocks = new HashMap<>();
+    /**
+     * Active shader storage block indices, by block name. Only queried on GL 4.3 contexts.
+     */
+    private final HashMap<String, Integer> storageBlocks = new HashMap<>();
+
+    private ShaderReflection() {
+    }
+
+    /**
+     * Queries the active uniforms, uniform blocks, shader storage blocks and attributes of a linked program.
+     * @param programID The program.
+     * @return The program's reflection.
+     */
+    public static ShaderReflection reflect(int programID) {
+        final ShaderReflection reflection = new ShaderReflection();
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            final IntBuffer size = stack.mallocInt(1);
+            final IntBuffer type = stack.mallocInt(1);
+            final int uniformCount = GL20.glGetProgrami(programID, GL20.GL_ACTIVE_UNIFORMS);
+            for (int i = 0; i < uniformCount; i++) {
+                final String name = GL20.glGetActiveUniform(programID, i, size, type);
+                reflection.add(reflection.uniforms, reflection.uniformList, name, GL20.glGetUniformLocation(programID, name), type.get(0), size.get(0));
+            }
+            final int attributeCount = GL20.glGetProgrami(programID, GL20.GL_ACTIVE_ATTRIBUTES);
+            for (int i = 0; i < attributeCount; i++) {
+                final String name = GL20.glGetActiveAttrib(programID, i, size, type);
+                reflection.add(reflection.attributes, reflection.attributeList, name, GL20.glGetAttribLocation(programID, name), type.get(0), size.get(0));
+            }
+        }
+        final int blockCount = GL20.glGetProgrami(programID, GL31.GL_ACTIVE_UNIFORM_BLOCKS);
+        for (int i = 0; i < blockCount; i++) {
+            reflection.uniformBlocks.put(GL31.glGetActiveUniformBlockName(programID, i), i);
+        }
+        if (GL.getCapabilities().OpenGL43) {
+            final int storageBlockCount = GL43.glGetProgramInterfacei(programID, GL43.GL_SHADER_STORAGE_BLOCK, GL43.GL_ACTIVE_RESOURCES);
+            for (int i = 0; i < storageBlockCount; i++) {
+                reflection.storageBlocks.put(GL43.glGetProgramResourceName(programID, GL43.GL_SHADER_STORAGE_BLOCK, i), i);
+            }
+        }
+        return reflection;
+    }
+
+    private void add(HashMap<String, Variable> map, ArrayList<Variable> list, String name, int location, int type, int size) {
+        final String baseName = name.endsWith("[0]") ? name.substring(0, name.length() - 3) : name;
+        final Variable variable = new Variable(baseName, location, type, size);
+        list.add(variable);
+        map.put(baseName, variable);
+        // Arrays can be looked up both with and without the index
+        if (!baseName.equals(name)) {
+            map.put(name, variable);
+        }
+    }
+
+    /**
+     * @param name The uniform's name.
+     * @return The uniform, or null if the program has no active uniform with that name.
+     */
+    public Variable getUniform(String name) {
+        return uniforms.get(name);
+    }
+
+    /**
+     * @param name The uniform's name.
+     * @return The uniform's location, or -1 if the program has no active uniform with that name.
+     */
+    public int getUniformLocation(String name) {
+        final Variable variable = uniforms.get(name);
+        return variable == null ? -1 : variable.location;
+    }
+
+    /**
+     * Returns the uniform with the given location.
+     * @param location The location.
+     * @return The uniform, or null if the program has no active uniform at that location.
+     */
+    public Variable getUniformAt(int location) {
+        if (location == -1) {
+            return null;
+        }
+        for (int i = 0; i < uniformList.size(); i++) {
+            final Variable variable = uniformList.get(i);
+            if (variable.location == location) {
+                return variable;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param name The uniform block's name.
+     * @return The block's index, or -1 if the program has no active uniform block with that name.
+     */
+    public int getUniformBlockIndex(String name) {
+        final Integer index = uniformBlocks.get(name);
+        return index == null ? -1 : index;
+    }
+
+    public boolean hasUniformBlock(String name) {
+        return uniformBlocks.containsKey(name);
+    }
+
+    /**
+     * @param name The shader storage block's name.
+     * @return The block's index, or -1 if the program has no active storage block with that name.
+     */
+    public int getStorageBlockIndex(String name) {
+        final Integer index = storageBlocks.get(name);
+        return index == null ? -1 : index;
+    }
+
+    public boolean hasStorageBlock(String name) {
+        return storageBlocks.containsKey(name);
+    }
+
+    /**
+     * @param name The attribute's name.
+     * @return The attribute, or null if the program has no active attribute with that name.
+     */
+    public Variable getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    /**
+     * @param name The attribute's name.
+     * @return The attribute's location, or -1 if the program has no active attribute with that name.
+     */
+    public int getAttributeLocation(String name) {
+        final Variable variable = attributes.get(name);
+        return variable == null ? -1 : variable.location;
+    }
+
+    public List<Variable> getUniforms() {
+        return Collections.unmodifiableList(uniformList);
+    }
+
+    public List<Variable> getAttributes() {
+        return Collections.unmodifiableList(attributeList);
+    }
+}
@@ -0,0 +1,173 @@
+package de.coxcopi.material.shader;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Shares shader programs between everything using the same source, instead of compiling a new
+ * program for every user. Programs are interned by their (preprocessed) source and reference counted:
+ * acquire() compiles a program only if no program with the same source exists and increments its
+ * reference count, release() decrements it and deletes the program once it isn't used anymore.
+ * <p>
+ * All methods are thread-safe. Compiling and deleting programs requires the GL context though: a
+ * program that is missing can only be acquired on the thread owning the context (registered with
+ * setGLThread() by Renderer.init()), and programs released on other threads are deleted by the next
+ * call to deleteReleasedPrograms() (called by the renderer every frame).
+ */
+public class ShaderRegistry {
+
+    private static class Entry {
+        final Shader shader;
+        int references = 0;
+
+        Entry(Shader shader) {
+            this.shader = shader;
+        }
+    }
+
+    private static final HashMap<ShaderProgramSource, Entry> entries = new HashMap<>();
+    private static final IdentityHashMap<Shader, Entry> entriesByShader = new IdentityHashMap<>();
+    /**
+     * Programs released on a thread without the GL context, deleted by deleteReleasedPrograms().
+     */
+    private static final ArrayList<Shader> releasedShaders = new ArrayList<>();
+    /**
+     * The thread owning the GL context, see setGLThread().
+     */
+    private static Thread glThread = null;
+    private static int compileCount = 0;
+
+    /**
+     * Registers the thread owning the GL context. Programs can only be compiled on this thread, and
+     * programs released on it are deleted immediately.
+     * @param thread The thread, usually the current thread after the context was made current.
+     */
+    public static synchronized void setGLThread(Thread thread) {
+        glThread = thread;
+    }
+
+    public static synchronized Thread getGLThread() {
+        return glThread;
+    }
+
+    /**
+     * Returns the shared program of a shader file and increments its reference count.
+     * @param name The name of the shader file. Including the '.glsl' suffix in the name is optional.
+     * @return The shader, or null if the file could not be found or the program could not be compiled or linked.
+     */
+    public static Shader acquire(String name) {
+        return acquire(name, Collections.emptyMap());
+    }
+
+    /**
+     * Returns the shared program of a shader file and increments its reference count.
+     * @param name The name of the shader file. Including the '.glsl' suffix in the name is optional.
+     * @param defines Macros to define in every stage of the shader (name to value, the value may be empty).
+     * @return The shader, or null if the file could not be found or the program could not be compiled or linked.
+     */
+    public static Shader acquire(String name, Map<String, String> defines) {
+        // Preprocessed outside the lock, the preprocessor synchronizes itself
+        final ShaderProgramSource source = ShaderParser.preprocessSource(name, defines);
+        return source == null ? null : acquire(source);
+    }
+
+    /**
+     * Returns the shared program for the given source, compiling it if there is none, and increments
+     * its reference count. Programs that fail to compile or link aren't stored, so that every call
+     * retries (and logs) the compilation.
+     * @param source The program's source.
+     * @return The shader, or null if the program could not be compiled or linked.
+     */
+    public static synchronized Shader acquire(ShaderProgramSource source) {
+        Entry entry = entries.get(source);
+        if (entry == null) {
+            if (Thread.currentThread() != glThread) {
+                throw new IllegalStateException("Shader programs can only be compiled on the thread owning the GL context, see setGLThread().");
+            }
+            final Shader shader = ShaderParser.createShader(source);
+            compileCount++;
+            if (shader == null) {
+                return null;
+            }
+            entry = new Entry(shader);
+            entries.put(source, entry);
+            entriesByShader.put(entry.shader, entry);
+        }
+        entry.references++;
+        return entry.shader;
+    }
+
+    /**
+     * Increments the reference count of a shader obtained from acquire().
+     * @param shader The shader.
+     * @return False if the shader isn't managed by the registry (nothing is changed then).
+     */
+    public static synchronized boolean retain(Shader shader) {
+        final Entry entry = entriesByShader.get(shader);
+        if (entry == null) {
+            return false;
+        }
+        entry.references++;
+        return true;
+    }
+
+    /**
+     * Decrements the reference count of a shader obtained from acquire(). Once no references
+     * are left, its program is deleted.
+     * @param shader The shader.
+     * @return False if the shader isn't managed by the registry (nothing is changed then).
+     */
+    public static synchronized boolean release(Shader shader) {
+        final Entry entry = entriesByShader.get(shader);
+        if (entry == null) {
+            return false;
+        }
+        if (--entry.references > 0) {
+            return true;
+        }
+        entries.remove(shader.source);
+        entriesByShader.remove(shader);
+        if (Thread.currentThread() == glThread) {
+            shader.delete();
+        } else {
+            releasedShaders.add(shader);
+        }
+        return true;
+    }
+
+    /**
+     * Deletes the programs whose last reference was released on a thread without the GL context.
+     * NOTE: Must be called on the thread owning the GL context.
+     */
+    public static synchronized void deleteReleasedPrograms() {
+        for (int i = 0; i < releasedShaders.size(); i++) {
+            releasedShaders.get(i).delete();
+        }
+        releasedShaders.clear();
+    }
+
+    /**
+     * @return The reference count of the shader, or 0 if it isn't managed by the registry.
+     */
+    public static synchronized int getReferenceCount(Shader shader) {
+        final Entry entry = entriesByShader.get(shader);
+        return entry == null ? 0 : entry.references;
+    }
+
+    /**
+     * @return The amount of programs currently shared through the registry.
+     */
+    public static synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return The amount of programs the registry has compiled so far.
+     */
+    public static synchronized int getCompileCount() {
+        return compileCount;
+    }
+}
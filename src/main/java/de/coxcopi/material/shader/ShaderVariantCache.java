@@ -0,0 +1,131 @@
+package de.coxcopi.material.shader;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of compiled shader variants. Variants are acquired from the ShaderRegistry and the
+ * cache holds one reference to each. Materials using a variant hold references of their own (see
+ * Material.setVariant()), so a variant can't be deleted while it is in use.
+ * <p>
+ * If the cache is full, the least recently used variant that no material references anymore is
+ * evicted and its program is deleted. Variants that are still referenced are never evicted, so the
+ * cache may hold more than its capacity while more variants than that are in use.
+ * <p>
+ * NOTE: Variants are compiled on demand, so the cache must only be used on the thread owning the GL context.
+ */
+public class ShaderVariantCache {
+
+    private final int capacity;
+    // Access order, so that the first entry is the least recently used one
+    private final LinkedHashMap<ShaderVariantKey, Shader> variants = new LinkedHashMap<>(16, 0.75f, true);
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * Constructs a new cache.
+     * @param capacity The maximum amount of unreferenced variants to keep.
+     */
+    public ShaderVariantCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1, was " + capacity + ".");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns the compiled variant for the given key, compiling it if it isn't cached.
+     * @param key The variant.
+     * @return The shader, or null if the shader file could not be loaded.
+     */
+    public Shader get(ShaderVariantKey key) {
+        Shader shader = variants.get(key);
+        if (shader != null) {
+            hits++;
+            return shader;
+        }
+        misses++;
+        shader = ShaderRegistry.acquire(key.getShaderName(), key.toDefines());
+        if (shader != null) {
+            variants.put(key, shader);
+            evict();
+        }
+        return shader;
+    }
+
+    /**
+     * Evicts the least recently used variants that are only referenced by the cache until it is
+     * within its capacity or all remaining variants are in use. The newest variant is never evicted.
+     */
+    private void evict() {
+        final Iterator<Shader> iterator = variants.values().iterator();
+        for (int i = variants.size(); i > 1 && variants.size() > capacity; i--) {
+            final Shader shader = iterator.next();
+            if (ShaderRegistry.getReferenceCount(shader) <= countEntries(shader)) {
+                iterator.remove();
+                ShaderRegistry.release(shader);
+                evictions++;
+            }
+        }
+    }
+
+    /**
+     * Returns the amount of keys mapped to the shader, i.e. the references the cache holds to it.
+     * Usually 1, but keys whose defines are the same (e.g. because of unknown feature bits) share a program.
+     */
+    private int countEntries(Shader shader) {
+        int count = 0;
+        for (Shader variant : variants.values()) {
+            if (variant == shader) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return True if the variant is cached. Does not count as a use of the variant.
+     */
+    public boolean contains(ShaderVariantKey key) {
+        return variants.containsKey(key);
+    }
+
+    /**
+     * Releases the cache's references to all variants. The programs of variants that aren't used by
+     * any material are deleted, the others are deleted once their last material releases them.
+     */
+    public void clear() {
+        for (Shader shader : variants.values()) {
+            ShaderRegistry.release(shader);
+        }
+        variants.clear();
+    }
+
+    public int size() {
+        return variants.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public void resetCounters() {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+}
@@ -0,0 +1,112 @@
+package de.coxcopi.material.shader;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Identifies a variant of a shader file: the file, a set of enabled features (see ShaderFeature)
+ * and additional defines. Keys are immutable and can be used as map keys.
+ */
+public class ShaderVariantKey {
+
+    /**
+     * Define that is set in every variant, so that shader files can tell variants apart from
+     * being loaded without any features (in which case they should enable everything).
+     */
+    public static final String VARIANT_DEFINE = "SHADER_VARIANT";
+
+    private final String shaderName;
+    private final long features;
+    private final Map<String, String> defines;
+    private final int hash;
+
+    /**
+     * Constructs a new key.
+     * @param shaderName The name of the shader file, e.g. "default.glsl".
+     * @param features The enabled features, see ShaderFeature.setOf().
+     * @param defines Additional defines (name to value, the value may be empty).
+     */
+    public ShaderVariantKey(String shaderName, long features, Map<String, String> defines) {
+        this.shaderName = shaderName.endsWith(".glsl") ? shaderName : shaderName + ".glsl";
+        this.features = features;
+        this.defines = Collections.unmodifiableMap(new TreeMap<>(defines));
+        this.hash = (this.shaderName.hashCode() * 31 + Long.hashCode(features)) * 31 + this.defines.hashCode();
+    }
+
+    public ShaderVariantKey(String shaderName, long features) {
+        this(shaderName, features, Collections.emptyMap());
+    }
+
+    public String getShaderName() {
+        return shaderName;
+    }
+
+    public long getFeatures() {
+        return features;
+    }
+
+    public boolean hasFeature(ShaderFeature feature) {
+        return (features & feature.bit()) != 0;
+    }
+
+    public Map<String, String> getDefines() {
+        return defines;
+    }
+
+    /**
+     * @return True if this variant has all features of the given set.
+     */
+    public boolean satisfies(long requiredFeatures) {
+        return (features & requiredFeatures) == requiredFeatures;
+    }
+
+    /**
+     * @return The defines to compile the variant with: the additional defines, one define per enabled
+     * feature and VARIANT_DEFINE.
+     */
+    public Map<String, String> toDefines() {
+        final TreeMap<String, String> result = new TreeMap<>(defines);
+        for (ShaderFeature feature : ShaderFeature.values()) {
+            if (hasFeature(feature)) {
+                result.put(feature.getDefine(), "");
+            }
+        }
+        result.put(VARIANT_DEFINE, "");
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ShaderVariantKey other)) {
+            return false;
+        }
+        return features == other.features && shaderName.equals(other.shaderName) && defines.equals(other.defines);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder(shaderName).append('[');
+        for (ShaderFeature feature : ShaderFeature.values()) {
+            if (hasFeature(feature)) {
+                builder.append(feature.name()).append(',');
+            }
+        }
+        if (builder.charAt(builder.length() - 1) == ',') {
+            builder.setLength(builder.length() - 1);
+        }
+        builder.append(']');
+        if (!defines.isEmpty()) {
+            builder.append(defines);
+        }
+        return builder.toString();
+    }
+}
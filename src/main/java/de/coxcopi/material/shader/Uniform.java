@@ -0,0 +1,238 @@
+package de.coxcopi.material.shader;
+
+import de.coxcopi.util.Color;
+import de.coxcopi.util.math.Matrix4;
+import de.coxcopi.util.math.Matrix4f;
+import de.coxcopi.util.math.Vector3;
+import de.coxcopi.util.math.Vector3f;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.system.MemoryStack;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Handle to a uniform of a shader program, resolved once by Shader.getUniform(). Setting a value
+ * through a handle goes straight to the cached location without any lookup.
+ * If the program has no active uniform with the handle's name, setting values does nothing.
+ * <p>
+ * Every handle keeps a shadow copy of the last value it uploaded. Since uniform values are stored
+ * per program and every handle belongs to exactly one program, an upload is skipped whenever the
+ * new value equals the shadow copy, no matter which programs were bound in between.
+ * If the uniform is modified without going through its handle, call invalidate().
+ * <p>
+ * NOTE: The handle's shader must be bound when setting values.
+ */
+public class Uniform {
+
+    // Kinds of values held by the shadow copy
+    private static final int NONE = 0;
+    private static final int FLOAT = 1;
+    private static final int INT = 2;
+    private static final int VEC3 = 3;
+    private static final int VEC4 = 4;
+    private static final int MAT3 = 9;
+    private static final int MAT4 = 16;
+    private static final int MAT4_TRANSPOSED = 17;
+
+    /**
+     * Scratch array the matrices are converted into before comparing. Uniforms are only set on the
+     * thread owning the GL context, so one array is enough.
+     */
+    private static final float[] scratch = new float[16];
+    private static long uploadsIssued = 0;
+    private static long uploadsSkipped = 0;
+
+    /**
+     * The uniform's name.
+     */
+    public final String name;
+    /**
+     * The uniform's location, or -1 if the program has no such uniform.
+     */
+    public final int location;
+    /**
+     * The uniform's GL type (e.g. GL_FLOAT_VEC3), or 0 if it is unknown.
+     */
+    public final int type;
+
+    private final float[] shadow = new float[16];
+    private int shadowInt = 0;
+    private int shadowKind = NONE;
+
+    Uniform(String name, ShaderReflection.Variable variable) {
+        this(name, variable == null ? -1 : variable.location, variable == null ? 0 : variable.type);
+    }
+
+    Uniform(String name, int location, int type) {
+        this.name = name;
+        this.location = location;
+        this.type = type;
+    }
+
+    /**
+     * @return True if the program has an active uniform with this handle's name.
+     */
+    public boolean isActive() {
+        return location != -1;
+    }
+
+    /**
+     * Forgets the shadow copy, so that the next value is uploaded regardless.
+     */
+    public void invalidate() {
+        shadowKind = NONE;
+    }
+
+    public void set(float value) {
+        if (location == -1) {
+            return;
+        }
+        if (shadowKind == FLOAT && shadow[0] == value) {
+            uploadsSkipped++;
+            return;
+        }
+        shadow[0] = value;
+        shadowKind = FLOAT;
+        uploadsIssued++;
+        GL20.glUniform1f(location, value);
+    }
+
+    public void set(double value) {
+        set((float) value);
+    }
+
+    public void set(int value) {
+        if (location == -1) {
+            return;
+        }
+        if (shadowKind == INT && shadowInt == value) {
+            uploadsSkipped++;
+            return;
+        }
+        shadowInt = value;
+        shadowKind = INT;
+        uploadsIssued++;
+        GL20.glUniform1i(location, value);
+    }
+
+    public void set(float x, float y, float z) {
+        if (location == -1) {
+            return;
+        }
+        if (shadowKind == VEC3 && shadow[0] == x && shadow[1] == y && shadow[2] == z) {
+            uploadsSkipped++;
+            return;
+        }
+        shadow[0] = x;
+        shadow[1] = y;
+        shadow[2] = z;
+        shadowKind = VEC3;
+        uploadsIssued++;
+        GL20.glUniform3f(location, x, y, z);
+    }
+
+    public void set(float x, float y, float z, float w) {
+        if (location == -1) {
+            return;
+        }
+        if (shadowKind == VEC4 && shadow[0] == x && shadow[1] == y && shadow[2] == z && shadow[3] == w) {
+            uploadsSkipped++;
+            return;
+        }
+        shadow[0] = x;
+        shadow[1] = y;
+        shadow[2] = z;
+        shadow[3] = w;
+        shadowKind = VEC4;
+        uploadsIssued++;
+        GL20.glUniform4f(location, x, y, z, w);
+    }
+
+    public void set(Vector3 value) {
+        set((float) value.x, (float) value.y, (float) value.z);
+    }
+
+    public void set(Vector3f value) {
+        set(value.x, value.y, value.z);
+    }
+
+    public void set(Color value, boolean useAlpha) {
+        if (useAlpha) {
+            set((float) value.r, (float) value.g, (float) value.b, (float) value.a);
+        } else {
+            set((float) value.r, (float) value.g, (float) value.b);
+        }
+    }
+
+    public void set(Matrix4 value, boolean transpose) {
+        if (location == -1) {
+            return;
+        }
+        uploadMatrix(value.get(scratch), transpose ? MAT4_TRANSPOSED : MAT4);
+    }
+
+    public void set(Matrix4f value, boolean transpose) {
+        if (location == -1) {
+            return;
+        }
+        uploadMatrix(value.get(scratch), transpose ? MAT4_TRANSPOSED : MAT4);
+    }
+
+    /**
+     * Sets a mat3 uniform to the upper 3x3 part of the given matrix, e.g. a normal matrix.
+     * @param value The matrix.
+     */
+    public void set3x3(Matrix4 value) {
+        if (location == -1) {
+            return;
+        }
+        uploadMatrix(value.get3x3(scratch), MAT3);
+    }
+
+    private void uploadMatrix(float[] values, int kind) {
+        final int length = kind == MAT3 ? 9 : 16;
+        if (shadowKind == kind && equals(shadow, values, length)) {
+            uploadsSkipped++;
+            return;
+        }
+        System.arraycopy(values, 0, shadow, 0, length);
+        shadowKind = kind;
+        uploadsIssued++;
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            final FloatBuffer buffer = stack.mallocFloat(length).put(values, 0, length).flip();
+            if (kind == MAT3) {
+                GL20.glUniformMatrix3fv(location, false, buffer);
+            } else {
+                GL20.glUniformMatrix4fv(location, kind == MAT4_TRANSPOSED, buffer);
+            }
+        }
+    }
+
+    private static boolean equals(float[] a, float[] b, int length) {
+        for (int i = 0; i < length; i++) {
+            if (a[i] != b[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The total amount of uniform uploads issued through handles.
+     */
+    public static long getUploadsIssued() {
+        return uploadsIssued;
+    }
+
+    /**
+     * @return The total amount of uniform uploads skipped because the program already held the value.
+     */
+    public static long getUploadsSkipped() {
+        return uploadsSkipped;
+    }
+
+    public static void resetCounters() {
+        uploadsIssued = 0;
+        uploadsSkipped = 0;
+    }
+}
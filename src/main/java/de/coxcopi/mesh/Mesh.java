@@ -1,9 +1,14 @@
 package de.coxcopi.mesh;
 
 import de.coxcopi.material.Material;
+import de.coxcopi.material.shader.Shader;
+import de.coxcopi.render.GLStateCache;
 import de.coxcopi.render.Renderer;
+import de.coxcopi.render.TransformStore;
+import de.coxcopi.util.math.Frustum;
 import de.coxcopi.util.math.Matrix4;
-import org.lwjgl.opengl.GL30;
+import de.coxcopi.util.math.Transform;
+import de.coxcopi.util.math.Vector3;
 
 public class Mesh {
 
@@ -19,6 +24,33 @@ public class Mesh {
      * If false, the mesh is not rendered.
      */
     public boolean visible;
+    /**
+     * Optional TRS transform component. If set, transform is the component's matrix
+     * and is recomposed from it whenever the component has changed.
+     */
+    private Transform transformComponent = null;
+    /**
+     * Optional transform store slot. If set, transform mirrors the slot's world matrix.
+     */
+    private TransformStore transformStore = null;
+    private int transformHandle = TransformStore.NO_PARENT;
+    /**
+     * Cached normal matrix (transposed inverse of the transform), see getNormalMatrix().
+     */
+    private final Matrix4 normalMatrix = new Matrix4();
+    /**
+     * Copy of the transform the normal matrix was last computed from.
+     */
+    private final Matrix4 normalMatrixSource = new Matrix4();
+    /**
+     * Center of the mesh's bounding sphere in local space.
+     */
+    private final Vector3 boundsCenter = new Vector3();
+    /**
+     * Radius of the mesh's bounding sphere in local space. Infinite if the bounds are unknown,
+     * in which case the mesh is never culled.
+     */
+    private double boundsRadius = Double.POSITIVE_INFINITY;
     /**
      * The vertex attribute object.
      */
@@ -34,10 +66,20 @@ public class Mesh {
      * @param elements The amount of elements (indices).
      */
     public Mesh(int vao, int elements) {
+        this(vao, elements, new Material());
+    }
+
+    /**
+     * Constructs a new mesh with the given parameters.
+     * @param vao The vertex attribute object.
+     * @param elements The amount of elements (indices).
+     * @param material The mesh's material.
+     */
+    public Mesh(int vao, int elements, Material material) {
         this.vao = vao;
         this.elements = elements;
         this.transform = Matrix4.transform();
-        this.material = new Material();
+        this.material = material;
         this.visible = true;
     }
 
@@ -48,19 +90,161 @@ public class Mesh {
         return elements;
     }
 
+    /**
+     * Sets the mesh's bounding sphere in local space, used for frustum culling.
+     * @param center The center of the sphere.
+     * @param radius The radius of the sphere, or Double.POSITIVE_INFINITY to never cull the mesh.
+     */
+    public void setBounds(Vector3 center, double radius) {
+        boundsCenter.set(center);
+        boundsRadius = radius;
+    }
+
+    /**
+     * Computes the mesh's bounding sphere from interleaved vertex data. The sphere is centered
+     * on the vertices' bounding box.
+     * @param vertices The vertex data.
+     * @param stride Amount of floats per vertex. The position must be the first three floats.
+     */
+    public void setBounds(float[] vertices, int stride) {
+        if (vertices.length < 3) {
+            return;
+        }
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i + 2 < vertices.length; i += stride) {
+            minX = Math.min(minX, vertices[i]);
+            minY = Math.min(minY, vertices[i + 1]);
+            minZ = Math.min(minZ, vertices[i + 2]);
+            maxX = Math.max(maxX, vertices[i]);
+            maxY = Math.max(maxY, vertices[i + 1]);
+            maxZ = Math.max(maxZ, vertices[i + 2]);
+        }
+        final double cx = (minX + maxX) * 0.5, cy = (minY + maxY) * 0.5, cz = (minZ + maxZ) * 0.5;
+        double radiusSquared = 0;
+        for (int i = 0; i + 2 < vertices.length; i += stride) {
+            final double dx = vertices[i] - cx, dy = vertices[i + 1] - cy, dz = vertices[i + 2] - cz;
+            radiusSquared = Math.max(radiusSquared, dx * dx + dy * dy + dz * dz);
+        }
+        boundsCenter.set(cx, cy, cz);
+        boundsRadius = Math.sqrt(radiusSquared);
+    }
+
+    public Vector3 getBoundsCenter() {
+        return boundsCenter;
+    }
+
+    public double getBoundsRadius() {
+        return boundsRadius;
+    }
+
+    /**
+     * Checks whether the mesh's bounding sphere lies at least partially inside the given frustum.
+     * Uses the current transform, so updateTransform() should be called first.
+     * @param frustum The frustum, e.g. the camera's.
+     * @return False if the mesh is definitely not visible.
+     */
+    public boolean isInFrustum(Frustum frustum) {
+        return boundsRadius == Double.POSITIVE_INFINITY || frustum.intersectsSphere(transform, boundsCenter, boundsRadius);
+    }
+
+    /**
+     * Lets the mesh's transform be driven by a TRS transform component. The mesh's
+     * transform is replaced by the component's matrix.
+     * @param transformComponent The transform component, or null to detach the current one
+     * (the mesh keeps a copy of its last matrix).
+     */
+    public void setTransformComponent(Transform transformComponent) {
+        setTransformSlot(null, TransformStore.NO_PARENT);
+        if (transformComponent == null) {
+            if (this.transformComponent != null) {
+                transform = new Matrix4(this.transformComponent.getMatrix());
+            }
+        } else {
+            transform = transformComponent.getMatrix();
+        }
+        this.transformComponent = transformComponent;
+    }
+
+    public Transform getTransformComponent() {
+        return transformComponent;
+    }
+
+    /**
+     * Lets the mesh's transform be a view onto a slot of a transform store. The mesh's transform
+     * then mirrors the slot's world matrix and is refreshed by updateTransform(), so the slot's
+     * local matrix should be modified instead of the transform. Detaches any transform component.
+     * @param store The transform store, or null to detach the current slot.
+     * @param handle The handle of the slot.
+     */
+    public void setTransformSlot(TransformStore store, int handle) {
+        if (store != null) {
+            if (transformComponent != null) {
+                transformComponent = null;
+                transform = new Matrix4(transform);
+            }
+            store.getWorld(handle, transform);
+        }
+        this.transformStore = store;
+        this.transformHandle = store == null ? TransformStore.NO_PARENT : handle;
+    }
+
+    public TransformStore getTransformStore() {
+        return transformStore;
+    }
+
+    public int getTransformHandle() {
+        return transformHandle;
+    }
+
+    /**
+     * Refreshes the transform from the transform store slot or the transform component,
+     * if either is set.
+     */
+    public void updateTransform() {
+        if (transformStore != null) {
+            transformStore.getWorld(transformHandle, transform);
+        } else if (transformComponent != null) {
+            transformComponent.getMatrix();
+        }
+    }
+
+    /**
+     * Returns the mesh's normal matrix, which is used to transform normals in the vertex shader.
+     * The matrix is cached and only recomputed if the transform has changed since the last call.
+     * @return The normal matrix (in the upper 3x3 part of the returned matrix).
+     */
+    public Matrix4 getNormalMatrix() {
+        if (!normalMatrixSource.equals(transform)) {
+            normalMatrixSource.set(transform);
+            transform.getNormalMatrix(normalMatrix);
+        }
+        return normalMatrix;
+    }
+
     /**
      * Renders the mesh by binding the material and shaders,
      * setting shader uniforms and finally binding
-     * the vao.
+     * the vao. Expects the transform to be up-to-date, see updateTransform().
      */
     public void render() {
         if (!visible) {
             return;
         }
-        material.bind();
-        material.shader.setDefaultMatrixUniforms(transform, Renderer.camera.viewMatrix, Renderer.camera.projectionMatrix);
-        //material.shader.setLightingUniforms(Renderer.environment.getBackgroundColor(), Renderer.camera.transform.getOrigin());
-        material.shader.setLightingUniforms(Renderer.environment, material, Renderer.camera.transform.getOrigin());
-        GL30.glBindVertexArray(vao);
+        final Shader shader = material.getShader();
+        shader.bind();
+        shader.setModelUniforms(transform, getNormalMatrix());
+        //shader.setLightingUniforms(Renderer.environment.getBackgroundColor(), Renderer.camera.transform.getOrigin());
+        if (!shader.usesFrameData()) {
+            shader.setCameraUniforms(Renderer.camera);
+            shader.setLightingUniforms(Renderer.environment, material, Renderer.camera.positionf);
+        } else if (shader.usesMaterialBuffer()) {
+            // Camera, environment and material parameters come from buffers, see Renderer.renderTick()
+            shader.setMaterialIndex(material.getBufferSlot());
+        } else {
+            // Camera and environment come from the per-frame uniform buffer
+            shader.setMaterialUniforms(material);
+        }
+        GLStateCache.bindVertexArray(vao);
     }
 }
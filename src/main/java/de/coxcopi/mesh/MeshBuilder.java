@@ -2,31 +2,62 @@ package de.coxcopi.mesh;
 
 import de.coxcopi.mesh.buffer.IndexBuffer;
 import de.coxcopi.mesh.buffer.VertexBuffer;
+import de.coxcopi.render.GLStateCache;
 import de.coxcopi.util.math.Vector3;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL15;
 import org.lwjgl.opengl.GL30;
 
+import java.nio.ByteBuffer;
+
 public class MeshBuilder {
 
     public static Mesh createMesh(float[] vertices, int[] indices) {
         int vao = generateVertexArrayObject();
         VertexBuffer vb = new VertexBuffer(vertices);
-        GL30.glVertexAttribPointer(0, 3, GL11.GL_FLOAT, false, 6 * 4, 0);       // Vertex Positions
-        GL30.glVertexAttribPointer(1, 3, GL11.GL_FLOAT, false, 6 * 4, 3 * 4);   // Vertex Normals
-        GL30.glEnableVertexAttribArray(0);
-        GL30.glEnableVertexAttribArray(1);
+        setVertexAttributes();
         IndexBuffer ib = new IndexBuffer(indices);
         unbind();
-        return new Mesh(vao, indices.length);
+        final Mesh mesh = new Mesh(vao, indices.length);
+        mesh.setBounds(vertices, MeshData.VERTEX_STRIDE);
+        return mesh;
+    }
+
+    /**
+     * Creates a mesh from vertex and index data in (direct) buffers, e.g. memory-mapped from a file,
+     * which are uploaded as they are. The mesh's bounds are unknown and should be set by the caller.
+     * @param vertices Interleaved vertex data, MeshData.VERTEX_STRIDE floats per vertex in native byte order.
+     * @param indices Triangle indices, 32 bit each in native byte order.
+     * @return The mesh.
+     */
+    public static Mesh createMesh(ByteBuffer vertices, ByteBuffer indices) {
+        int vao = generateVertexArrayObject();
+        VertexBuffer vb = new VertexBuffer(vertices);
+        setVertexAttributes();
+        IndexBuffer ib = new IndexBuffer(indices);
+        unbind();
+        return new Mesh(vao, indices.remaining() / Integer.BYTES);
+    }
+
+    /**
+     * Sets up the vertex attributes for the bound vertex array and buffer (MeshData.VERTEX_STRIDE floats per vertex).
+     */
+    private static void setVertexAttributes() {
+        final int stride = MeshData.VERTEX_STRIDE * Float.BYTES;
+        GL30.glVertexAttribPointer(0, 3, GL11.GL_FLOAT, false, stride, 0);       // Vertex Positions
+        GL30.glVertexAttribPointer(1, 3, GL11.GL_FLOAT, false, stride, 3 * 4);   // Vertex Normals
+        GL30.glVertexAttribPointer(2, 2, GL11.GL_FLOAT, false, stride, 6 * 4);   // Texture Coordinates
+        GL30.glEnableVertexAttribArray(0);
+        GL30.glEnableVertexAttribArray(1);
+        GL30.glEnableVertexAttribArray(2);
     }
 
     public static Mesh createPrimitiveRect(float width, float height) {
         final float[] vertices = {
-                -width, -height, 0, 0, 0, -1,
-                 width, -height, 0, 0, 0, -1,
-                 width,  height, 0, 0, 0, -1,
-                -width,  height, 0, 0, 0, -1,
+                -width, -height, 0, 0, 0, -1, 0, 0,
+                 width, -height, 0, 0, 0, -1, 1, 0,
+                 width,  height, 0, 0, 0, -1, 1, 1,
+                -width,  height, 0, 0, 0, -1, 0, 1,
         };
         final int[] indices = {
             0, 1, 2,
@@ -39,35 +70,35 @@ public class MeshBuilder {
 
         final float[] vertices = {
                 // Bottom Vertices
-                1, -1, -1,     0, -1, 0,
-                -1, -1, -1,    0, -1, 0,
-                -1, -1, 1,     0, -1, 0,
-                1, -1, 1,      0, -1, 0,
+                1, -1, -1,     0, -1, 0,    0, 0,
+                -1, -1, -1,    0, -1, 0,    1, 0,
+                -1, -1, 1,     0, -1, 0,    1, 1,
+                1, -1, 1,      0, -1, 0,    0, 1,
                 // Top Vertices
-                -1, 1, -1,     0, 1, 0,
-                1, 1, -1,      0, 1, 0,
-                1, 1, 1,       0, 1, 0,
-                -1, 1, 1,      0, 1, 0,
+                -1, 1, -1,     0, 1, 0,     0, 0,
+                1, 1, -1,      0, 1, 0,     1, 0,
+                1, 1, 1,       0, 1, 0,     1, 1,
+                -1, 1, 1,      0, 1, 0,     0, 1,
                 // Back Vertices
-                1, -1, -1,     0, 0, 1,
-                1, 1, -1,      0, 0, 1,
-                -1, 1, -1,     0, 0, 1,
-                -1, -1, -1,    0, 0, 1,
+                1, -1, -1,     0, 0, 1,     0, 0,
+                1, 1, -1,      0, 0, 1,     1, 0,
+                -1, 1, -1,     0, 0, 1,     1, 1,
+                -1, -1, -1,    0, 0, 1,     0, 1,
                 // Front Vertices
-                -1, -1, 1,     0, 0, -1,
-                1, -1, 1,      0, 0, -1,
-                1, 1, 1,       0, 0, -1,
-                -1, 1, 1,      0, 0, -1,
+                -1, -1, 1,     0, 0, -1,    0, 0,
+                1, -1, 1,      0, 0, -1,    1, 0,
+                1, 1, 1,       0, 0, -1,    1, 1,
+                -1, 1, 1,      0, 0, -1,    0, 1,
                 // Left Vertices
-                -1, -1, -1,   -1, 0, 0,
-                -1, -1, 1,    -1, 0, 0,
-                -1, 1, -1,    -1, 0, 0,
-                -1, 1, 1,     -1, 0, 0,
+                -1, -1, -1,   -1, 0, 0,     0, 0,
+                -1, -1, 1,    -1, 0, 0,     1, 0,
+                -1, 1, -1,    -1, 0, 0,     0, 1,
+                -1, 1, 1,     -1, 0, 0,     1, 1,
                 // Right Vertices
-                1, -1, 1,      1, 0, 0,
-                1, -1, -1,     1, 0, 0,
-                1, 1, -1,      1, 0, 0,
-                1, 1, 1,       1, 0, 0
+                1, -1, 1,      1, 0, 0,     0, 0,
+                1, -1, -1,     1, 0, 0,     1, 0,
+                1, 1, -1,      1, 0, 0,     1, 1,
+                1, 1, 1,       1, 0, 0,     0, 1
         };
 
         final int[] indices = {
@@ -256,7 +287,7 @@ public class MeshBuilder {
 
     private static int generateVertexArrayObject() {
         int vao = GL30.glGenVertexArrays();
-        GL30.glBindVertexArray(vao);
+        GLStateCache.bindVertexArray(vao);
         return vao;
     }
 
@@ -272,8 +303,8 @@ public class MeshBuilder {
     }
 
     private static void unbind() {
-        GL30.glBindVertexArray(0);
-        GL30.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
-        GL30.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, 0);
+        GLStateCache.bindVertexArray(0);
+        GLStateCache.bindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+        GLStateCache.bindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, 0);
     }
 }
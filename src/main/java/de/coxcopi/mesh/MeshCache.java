@@ -0,0 +1,321 @@
+package de.coxcopi.mesh;
+
+import de.coxcopi.util.math.Vector3;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.zip.CRC32C;
+
+/**
+ * On-disk cache of parsed meshes in a binary format that can be uploaded without any conversion,
+ * so that OBJ files don't have to be parsed again on the next launch.
+ * <p>
+ * Entries are memory-mapped and the mapped vertex and index blocks are passed to glBufferData()
+ * directly, without creating any Java arrays. Every entry stores the size and a CRC32C hash of the
+ * OBJ file it was built from; entries whose source has changed, that use an outdated vertex layout,
+ * that were (or weren't) optimized unlike the current setting (see MeshParser.setOptimizeMeshes())
+ * or that are invalid are rebuilt from the OBJ file.
+ * <p>
+ * File layout (little endian): a header of HEADER_SIZE bytes (magic, file version, vertex layout and flags,
+ * vertex stride in bytes, vertex count, index count, source size, source hash, bounding sphere center
+ * and radius), followed by the interleaved vertex data and the indices (32 bit).
+ */
+public class MeshCache {
+
+    /**
+     * Vertex attributes stored in a vertex, see VERTEX_LAYOUT.
+     */
+    public static final int ATTRIBUTE_POSITION = 1;
+    public static final int ATTRIBUTE_NORMAL = 1 << 1;
+    public static final int ATTRIBUTE_UV = 1 << 2;
+    /**
+     * The attributes of the vertices written by MeshParser (see MeshData.VERTEX_STRIDE).
+     * Entries with a different layout are rebuilt.
+     */
+    public static final int VERTEX_LAYOUT = ATTRIBUTE_POSITION | ATTRIBUTE_NORMAL | ATTRIBUTE_UV;
+    /**
+     * Flag in the layout word of entries whose meshes were reordered by MeshOptimizer.
+     */
+    public static final int FLAG_OPTIMIZED = 1 << 16;
+
+    private static final int MAGIC = 0x424D5843; // "CXMB"
+    private static final int FILE_VERSION = 1;
+    /**
+     * Size of the header. A multiple of 16, so that the vertex block is well aligned.
+     */
+    private static final int HEADER_SIZE = 64;
+    private static final String FILE_SUFFIX = ".mesh";
+    /**
+     * Maximum size of a mapped segment while hashing a source file.
+     */
+    private static final int MAX_SEGMENT_SIZE = 1 << 30;
+
+    private static Path directory = Paths.get("cache", "meshes");
+    private static boolean enabled = true;
+    private static int hits = 0;
+    private static int misses = 0;
+
+    /**
+     * Sets the directory cache entries are stored in. Defaults to cache/meshes inside the working directory.
+     */
+    public static void setDirectory(Path directory) {
+        MeshCache.directory = directory;
+    }
+
+    public static Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Enables or disables the cache. While disabled, every OBJ file is parsed.
+     */
+    public static void setEnabled(boolean enabled) {
+        MeshCache.enabled = enabled;
+    }
+
+    /**
+     * @return True if the cache is enabled. Entries are stored in GL byte order, so the cache is
+     * only used on little endian platforms.
+     */
+    public static boolean isAvailable() {
+        return enabled && ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+    }
+
+    /**
+     * @return The amount of meshes loaded from the cache since the last call to resetCounters().
+     */
+    public static int getHits() {
+        return hits;
+    }
+
+    /**
+     * @return The amount of meshes that had to be parsed because there was no valid entry
+     * since the last call to resetCounters().
+     */
+    public static int getMisses() {
+        return misses;
+    }
+
+    public static void resetCounters() {
+        hits = 0;
+        misses = 0;
+    }
+
+    /**
+     * Creates a mesh from an OBJ file, using the cache entry if it is up-to-date and (re)building it otherwise.
+     * @param objPath The path of the OBJ file.
+     * @return The mesh, or null if the OBJ file could not be read.
+     */
+    public static Mesh load(Path objPath) {
+        final long sourceSize;
+        final int sourceHash;
+        try {
+            sourceSize = Files.size(objPath);
+            sourceHash = hash(objPath);
+        } catch (IOException e) {
+            System.out.println("Failed to read " + objPath + ": " + e.getMessage());
+            return null;
+        }
+        final Path path = getPath(objPath);
+        final int layout = getLayout();
+        if (Files.isRegularFile(path)) {
+            final Mesh mesh = loadEntry(path, layout, sourceSize, sourceHash);
+            if (mesh != null) {
+                hits++;
+                return mesh;
+            }
+        }
+        misses++;
+        final MeshData data = MeshParser.parseOBJData(objPath);
+        if (data == null) {
+            return null;
+        }
+        final Mesh mesh = MeshBuilder.createMesh(data.vertices, data.indices);
+        store(path, data, mesh, layout, sourceSize, sourceHash);
+        return mesh;
+    }
+
+    /**
+     * @return The layout word of entries built with the current settings: VERTEX_LAYOUT, plus
+     * FLAG_OPTIMIZED if MeshParser optimizes meshes.
+     */
+    public static int getLayout() {
+        return VERTEX_LAYOUT | (MeshParser.isOptimizeMeshes() ? FLAG_OPTIMIZED : 0);
+    }
+
+    /**
+     * Deletes all cache entries.
+     */
+    public static void clear() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (var files = Files.list(directory)) {
+            files.filter(path -> path.toString().endsWith(FILE_SUFFIX)).forEach(MeshCache::delete);
+        } catch (IOException e) {
+            System.out.println("Failed to clear mesh cache: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Computes the CRC32C hash of a file's contents.
+     * @param path The path of the file.
+     * @return The hash.
+     * @throws IOException If the file could not be read.
+     */
+    public static int hash(Path path) throws IOException {
+        final CRC32C crc = new CRC32C();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            for (long offset = 0; offset < size; offset += MAX_SEGMENT_SIZE) {
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(size - offset, MAX_SEGMENT_SIZE)));
+            }
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Creates a mesh from a cache entry.
+     * @return The mesh, or null if the entry is outdated or invalid (invalid entries are deleted).
+     */
+    private static Mesh loadEntry(Path path, int layout, long sourceSize, int sourceHash) {
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        final ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+                // Read until the header is complete or the file ends
+            }
+            final int stride = header.getInt(12);
+            final int vertexCount = header.getInt(16);
+            final int indexCount = header.getInt(20);
+            final long dataSize = (long) vertexCount * stride + (long) indexCount * Integer.BYTES;
+            if (header.hasRemaining() || header.getInt(0) != MAGIC || header.getInt(4) != FILE_VERSION
+                    || stride <= 0 || vertexCount < 0 || indexCount < 0 || HEADER_SIZE + dataSize != size
+                    || dataSize > Integer.MAX_VALUE) {
+                System.out.println("Discarding invalid mesh cache entry " + path + ".");
+                delete(path);
+                return null;
+            }
+            if (header.getInt(8) != layout || stride != MeshData.VERTEX_STRIDE * Float.BYTES
+                    || header.getLong(24) != sourceSize || header.getInt(32) != sourceHash) {
+                // Outdated, it is overwritten by the rebuilt entry
+                return null;
+            }
+            // The mapping stays valid after the channel is closed
+            data = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, dataSize).order(ByteOrder.LITTLE_ENDIAN);
+        } catch (IOException e) {
+            System.out.println("Failed to read mesh cache entry " + path + ": " + e.getMessage());
+            return null;
+        }
+        final int vertexBytes = header.getInt(16) * header.getInt(12);
+        final ByteBuffer vertices = data.slice(0, vertexBytes).order(ByteOrder.LITTLE_ENDIAN);
+        final ByteBuffer indices = data.slice(vertexBytes, data.capacity() - vertexBytes).order(ByteOrder.LITTLE_ENDIAN);
+        final Mesh mesh = MeshBuilder.createMesh(vertices, indices);
+        mesh.setBounds(new Vector3(header.getFloat(36), header.getFloat(40), header.getFloat(44)), header.getFloat(48));
+        return mesh;
+    }
+
+    /**
+     * Writes a cache entry. Failures are logged and otherwise ignored.
+     */
+    private static void store(Path path, MeshData data, Mesh mesh, int layout, long sourceSize, int sourceHash) {
+        final ByteBuffer buffer = ByteBuffer.allocate(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        final Vector3 center = mesh.getBoundsCenter();
+        buffer.putInt(MAGIC)
+                .putInt(FILE_VERSION)
+                .putInt(layout)
+                .putInt(MeshData.VERTEX_STRIDE * Float.BYTES)
+                .putInt(data.getVertexCount())
+                .putInt(data.indices.length)
+                .putLong(sourceSize)
+                .putInt(sourceHash)
+                .putFloat((float) center.x)
+                .putFloat((float) center.y)
+                .putFloat((float) center.z)
+                // Rounded up, so that the sphere still contains the whole mesh
+                .putFloat(Math.nextUp((float) mesh.getBoundsRadius()))
+                .position(HEADER_SIZE);
+        try {
+            // Write to a temporary file first, so that a crash can't leave a truncated entry behind
+            Files.createDirectories(directory);
+            final Path temp = Files.createTempFile(directory, "mesh", ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                int written = 0;
+                while (written < data.vertices.length) {
+                    final FloatBuffer floats = buffer.asFloatBuffer();
+                    final int count = Math.min(floats.remaining(), data.vertices.length - written);
+                    floats.put(data.vertices, written, count);
+                    buffer.position(buffer.position() + count * Float.BYTES);
+                    written += count;
+                    flushIfFull(channel, buffer);
+                }
+                written = 0;
+                while (written < data.indices.length) {
+                    final IntBuffer ints = buffer.asIntBuffer();
+                    final int count = Math.min(ints.remaining(), data.indices.length - written);
+                    ints.put(data.indices, written, count);
+                    buffer.position(buffer.position() + count * Integer.BYTES);
+                    written += count;
+                    flushIfFull(channel, buffer);
+                }
+                flush(channel, buffer);
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("Failed to write mesh cache entry " + path + ": " + e.getMessage());
+        }
+    }
+
+    private static void flushIfFull(FileChannel channel, ByteBuffer buffer) throws IOException {
+        // The blocks are multiples of 4 bytes, so a buffer with less than 4 bytes left is full
+        if (buffer.remaining() < Float.BYTES) {
+            flush(channel, buffer);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Returns the path of the cache entry for an OBJ file. Entries are named after the file and a hash of its absolute path.
+     */
+    private static Path getPath(Path objPath) {
+        final String absolutePath = objPath.toAbsolutePath().normalize().toString();
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            final String hash = HexFormat.of().formatHex(digest.digest(absolutePath.getBytes(StandardCharsets.UTF_8)), 0, 8);
+            final String name = objPath.getFileName().toString().replaceAll("[^A-Za-z0-9._-]", "_");
+            return directory.resolve(name + "-" + hash + FILE_SUFFIX);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            System.out.println("Failed to delete mesh cache entry " + path + ": " + e.getMessage());
+        }
+    }
+}
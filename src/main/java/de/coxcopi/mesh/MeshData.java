@@ -0,0 +1,34 @@
+package de.coxcopi.mesh;
+
+/**
+ * Mesh data as produced by the MeshParser, before it is uploaded to the GPU.
+ */
+public class MeshData {
+
+    /**
+     * Number of float values one vertex is made up of (position, normal and texture coordinates).
+     */
+    public static final int VERTEX_STRIDE = 8;
+
+    /**
+     * Interleaved vertex data, VERTEX_STRIDE floats per vertex.
+     */
+    public final float[] vertices;
+    /**
+     * Triangle indices, three per face.
+     */
+    public final int[] indices;
+
+    public MeshData(float[] vertices, int[] indices) {
+        this.vertices = vertices;
+        this.indices = indices;
+    }
+
+    public int getVertexCount() {
+        return vertices.length / VERTEX_STRIDE;
+    }
+
+    public int getFaceCount() {
+        return indices.length / 3;
+    }
+}
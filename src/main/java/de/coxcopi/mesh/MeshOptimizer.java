@@ -0,0 +1,518 @@
+package de.coxcopi.mesh;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Reorders triangles and vertices of indexed meshes for faster rendering, without changing how they look.
+ * <ul>
+ *     <li>optimizeVertexCache() orders triangles so that their vertices are likely to still be in the
+ *     GPU's post-transform cache (Tom Forsyth's "Linear-Speed Vertex Cache Optimisation").</li>
+ *     <li>optimizeOverdraw() splits the result into clusters where that costs little cache efficiency,
+ *     and draws clusters facing away from the mesh's center first, so that outer surfaces occlude inner
+ *     ones more often (similar to Sander et al., "Fast Triangle Reordering for Vertex Locality and
+ *     Reduced Overdraw").</li>
+ *     <li>optimizeVertexFetch() orders vertices by their first use, for better memory locality.</li>
+ * </ul>
+ * The effect can be measured without a GPU with analyzeFifo() and analyzeLru(), which simulate a
+ * post-transform cache and report the ACMR (average cache miss ratio, transformed vertices per
+ * triangle, 0.5 - 3) and ATVR (average transform to vertex ratio, 1 is optimal).
+ */
+public class MeshOptimizer {
+
+    /**
+     * Size of the LRU cache optimizeVertexCache() optimizes for.
+     */
+    public static final int CACHE_SIZE = 32;
+    /**
+     * Size of the FIFO cache optimizeOverdraw() simulates. Typical for actual hardware.
+     */
+    public static final int FIFO_CACHE_SIZE = 16;
+    /**
+     * Default for how much worse than the vertex cache order the ACMR of a cluster may get, see optimizeOverdraw().
+     */
+    public static final float DEFAULT_OVERDRAW_THRESHOLD = 1.05f;
+
+    private static final float CACHE_DECAY_POWER = 1.5f;
+    private static final float LAST_TRIANGLE_SCORE = 0.75f;
+    private static final float VALENCE_BOOST_SCALE = 2.0f;
+    private static final float VALENCE_BOOST_POWER = 0.5f;
+    /**
+     * Valences above this share the score of this valence.
+     */
+    private static final int MAX_SCORED_VALENCE = 64;
+    private static final float[] CACHE_SCORES = new float[CACHE_SIZE];
+    private static final float[] VALENCE_SCORES = new float[MAX_SCORED_VALENCE + 1];
+
+    static {
+        for (int i = 0; i < CACHE_SIZE; i++) {
+            // The vertices of the last triangle get a fixed score, so that the next triangle doesn't
+            // just reuse the last edge, which would lead to long strips
+            CACHE_SCORES[i] = i < 3 ? LAST_TRIANGLE_SCORE
+                    : (float) Math.pow(1.0 - (double) (i - 3) / (CACHE_SIZE - 3), CACHE_DECAY_POWER);
+        }
+        for (int i = 1; i <= MAX_SCORED_VALENCE; i++) {
+            // Vertices with few triangles left are preferred, to finish them off and avoid leaving single triangles behind
+            VALENCE_SCORES[i] = VALENCE_BOOST_SCALE * (float) Math.pow(i, -VALENCE_BOOST_POWER);
+        }
+    }
+
+    /**
+     * Results of a cache simulation, see analyzeFifo() and analyzeLru().
+     */
+    public static class CacheStats {
+        public final boolean lru;
+        public final int cacheSize;
+        /**
+         * Average cache miss ratio: transformed vertices per triangle.
+         */
+        public final double acmr;
+        /**
+         * Average transform to vertex ratio: transformed vertices per referenced vertex.
+         */
+        public final double atvr;
+
+        CacheStats(boolean lru, int cacheSize, double acmr, double atvr) {
+            this.lru = lru;
+            this.cacheSize = cacheSize;
+            this.acmr = acmr;
+            this.atvr = atvr;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s-%d: ACMR %.3f, ATVR %.3f", lru ? "LRU" : "FIFO", cacheSize, acmr, atvr);
+        }
+    }
+
+    /**
+     * Applies optimizeVertexCache(), optimizeOverdraw() and optimizeVertexFetch() to mesh data.
+     * @param data The mesh data, MeshData.VERTEX_STRIDE floats per vertex.
+     * @param report True to print the simulated cache efficiency before and after.
+     * @return The optimized mesh data. Vertices no triangle uses are removed.
+     */
+    public static MeshData optimize(MeshData data, boolean report) {
+        final int vertexCount = data.getVertexCount();
+        final CacheStats fifoBefore = report ? analyzeFifo(data.indices, vertexCount, FIFO_CACHE_SIZE) : null;
+        final CacheStats lruBefore = report ? analyzeLru(data.indices, vertexCount, CACHE_SIZE) : null;
+        int[] indices = optimizeVertexCache(data.indices, vertexCount);
+        indices = optimizeOverdraw(indices, data.vertices, MeshData.VERTEX_STRIDE, DEFAULT_OVERDRAW_THRESHOLD);
+        final float[] vertices = optimizeVertexFetch(data.vertices, MeshData.VERTEX_STRIDE, indices);
+        if (report) {
+            final int optimizedVertexCount = vertices.length / MeshData.VERTEX_STRIDE;
+            System.out.println("Optimized mesh with " + indices.length / 3 + " triangles:");
+            System.out.println("  " + fifoBefore + " -> " + analyzeFifo(indices, optimizedVertexCount, FIFO_CACHE_SIZE));
+            System.out.println("  " + lruBefore + " -> " + analyzeLru(indices, optimizedVertexCount, CACHE_SIZE));
+        }
+        return new MeshData(vertices, indices);
+    }
+
+    /**
+     * Reorders triangles for the post-transform vertex cache. Greedily emits the triangle with the
+     * highest score, which is the sum of its vertices' scores. Vertices score higher the more recently
+     * they were used (in a simulated LRU cache of CACHE_SIZE vertices) and the fewer triangles they
+     * have left. After each step, only triangles of vertices in the cache are rescored, at most
+     * MAX_SCORED_VALENCE per vertex, and emitted triangles are removed from their vertices in constant
+     * time. So every step takes constant time, even for high-valence vertices like the center of a
+     * fan, and the runtime is linear in the amount of triangles.
+     * @param indices The triangle indices.
+     * @param vertexCount The amount of vertices.
+     * @return The reordered indices.
+     */
+    public static int[] optimizeVertexCache(int[] indices, int vertexCount) {
+        final int triangleCount = indices.length / 3;
+        final int[] result = new int[triangleCount * 3];
+        if (triangleCount == 0) {
+            return result;
+        }
+
+        // Corners (triangle * 3 + k) of every vertex. The first liveTriangles[v] entries are those of
+        // triangles not emitted yet. cornerSlots[c] is the position of corner c in the adjacency list,
+        // so that emitted triangles can be removed in constant time.
+        final int[] liveTriangles = new int[vertexCount];
+        for (int i = 0; i < triangleCount * 3; i++) {
+            liveTriangles[indices[i]]++;
+        }
+        final int[] adjacencyOffsets = new int[vertexCount + 1];
+        for (int v = 0; v < vertexCount; v++) {
+            adjacencyOffsets[v + 1] = adjacencyOffsets[v] + liveTriangles[v];
+        }
+        final int[] adjacency = new int[triangleCount * 3];
+        final int[] cornerSlots = new int[triangleCount * 3];
+        final int[] fill = Arrays.copyOf(adjacencyOffsets, vertexCount);
+        for (int c = 0; c < triangleCount * 3; c++) {
+            final int slot = fill[indices[c]]++;
+            adjacency[slot] = c;
+            cornerSlots[c] = slot;
+        }
+
+        final int[] cachePositions = new int[vertexCount];
+        Arrays.fill(cachePositions, -1);
+        final float[] vertexScores = new float[vertexCount];
+        for (int v = 0; v < vertexCount; v++) {
+            vertexScores[v] = vertexScore(-1, liveTriangles[v]);
+        }
+        final boolean[] emitted = new boolean[triangleCount];
+        int best = 0;
+        float bestScore = -1;
+        for (int t = 0; t < triangleCount; t++) {
+            final float score = triangleScore(indices, t, vertexScores);
+            if (score > bestScore) {
+                best = t;
+                bestScore = score;
+            }
+        }
+
+        // One triangle may push up to three vertices out of the cache
+        int[] cache = new int[CACHE_SIZE + 3];
+        int[] newCache = new int[CACHE_SIZE + 3];
+        int cacheCount = 0;
+        int nextUnemitted = 0;
+        int resultCount = 0;
+        while (best != -1) {
+            emitted[best] = true;
+            int newCacheCount = 0;
+            for (int k = 0; k < 3; k++) {
+                final int c = best * 3 + k;
+                final int v = indices[c];
+                result[resultCount++] = v;
+                removeCorner(adjacency, cornerSlots, adjacencyOffsets[v] + --liveTriangles[v], c);
+                if (indexOf(newCache, newCacheCount, v) == -1) {
+                    newCache[newCacheCount++] = v;
+                }
+            }
+            final int triangleVertices = newCacheCount;
+            for (int i = 0; i < cacheCount; i++) {
+                if (indexOf(newCache, triangleVertices, cache[i]) == -1) {
+                    newCache[newCacheCount++] = cache[i];
+                }
+            }
+            final int[] swap = cache;
+            cache = newCache;
+            newCache = swap;
+            cacheCount = newCacheCount;
+
+            // Update the scores of all vertices in the cache (and those just pushed out of it), then
+            // look for the best of their remaining triangles. Only the first MAX_SCORED_VALENCE triangles
+            // of a vertex are considered, so a step takes constant time even with high-valence vertices.
+            // Their other triangles are still found through their other vertices once those are cached.
+            for (int i = 0; i < cacheCount; i++) {
+                final int v = cache[i];
+                cachePositions[v] = i < CACHE_SIZE ? i : -1;
+                vertexScores[v] = vertexScore(cachePositions[v], liveTriangles[v]);
+            }
+            best = -1;
+            bestScore = -1;
+            for (int i = 0; i < cacheCount; i++) {
+                final int v = cache[i];
+                final int start = adjacencyOffsets[v];
+                final int end = start + Math.min(liveTriangles[v], MAX_SCORED_VALENCE);
+                for (int j = start; j < end; j++) {
+                    final int t = adjacency[j] / 3;
+                    final float score = triangleScore(indices, t, vertexScores);
+                    if (score > bestScore) {
+                        best = t;
+                        bestScore = score;
+                    }
+                }
+            }
+            cacheCount = Math.min(cacheCount, CACHE_SIZE);
+
+            if (best == -1) {
+                // No triangle shares a vertex with the cache, continue with any remaining triangle
+                while (nextUnemitted < triangleCount && emitted[nextUnemitted]) {
+                    nextUnemitted++;
+                }
+                best = nextUnemitted < triangleCount ? nextUnemitted : -1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reorders clusters of triangles to reduce overdraw, keeping the vertex cache efficiency of the
+     * given order mostly intact. The triangles are split into clusters wherever the simulated cache
+     * was empty anyway, and within those wherever the ACMR of the triangles so far is at most
+     * threshold times the cluster's ACMR. Clusters are then drawn ordered by how much they face away
+     * from the mesh's center, so that outward facing geometry is drawn first.
+     * @param indices The triangle indices, ideally ordered by optimizeVertexCache().
+     * @param vertices Interleaved vertex data; the position must be the first three floats.
+     * @param stride Amount of floats per vertex.
+     * @param threshold How much worse the ACMR may get, e.g. 1.05 for 5% (see DEFAULT_OVERDRAW_THRESHOLD).
+     * Higher values allow smaller clusters, which reduces overdraw more.
+     * @return The reordered indices.
+     */
+    public static int[] optimizeOverdraw(int[] indices, float[] vertices, int stride, float threshold) {
+        final int triangleCount = indices.length / 3;
+        if (triangleCount == 0) {
+            return new int[0];
+        }
+        final FifoCache cache = new FifoCache(vertices.length / stride, FIFO_CACHE_SIZE);
+
+        // Hard boundaries, where every vertex of the triangle missed the cache
+        final int[] hardBoundaries = new int[triangleCount + 1];
+        int hardCount = 0;
+        for (int t = 0; t < triangleCount; t++) {
+            if (cache.access(indices, t) == 3 || t == 0) {
+                hardBoundaries[hardCount++] = t;
+            }
+        }
+        hardBoundaries[hardCount] = triangleCount;
+
+        // Soft boundaries inside every hard cluster
+        final int[] boundaries = new int[triangleCount + 1];
+        int clusterCount = 0;
+        for (int h = 0; h < hardCount; h++) {
+            final int start = hardBoundaries[h];
+            final int end = hardBoundaries[h + 1];
+            cache.clear();
+            int clusterMisses = 0;
+            for (int t = start; t < end; t++) {
+                clusterMisses += cache.access(indices, t);
+            }
+            final float clusterThreshold = threshold * clusterMisses / (end - start);
+
+            boundaries[clusterCount++] = start;
+            cache.clear();
+            int misses = 0;
+            int triangles = 0;
+            for (int t = start; t < end - 1; t++) {
+                misses += cache.access(indices, t);
+                triangles++;
+                if ((float) misses / triangles <= clusterThreshold) {
+                    // The cluster reached the target ACMR, start a new one with the next triangle
+                    boundaries[clusterCount++] = t + 1;
+                    cache.clear();
+                    misses = 0;
+                    triangles = 0;
+                }
+            }
+        }
+        boundaries[clusterCount] = triangleCount;
+
+        // Area weighted centroid and normal of every cluster
+        final double[] clusterData = new double[clusterCount * 7];
+        double meshX = 0, meshY = 0, meshZ = 0, meshArea = 0;
+        for (int c = 0; c < clusterCount; c++) {
+            double cx = 0, cy = 0, cz = 0, area = 0, nx = 0, ny = 0, nz = 0;
+            for (int t = boundaries[c]; t < boundaries[c + 1]; t++) {
+                final int a = indices[t * 3] * stride, b = indices[t * 3 + 1] * stride, d = indices[t * 3 + 2] * stride;
+                final double e1x = vertices[b] - vertices[a], e1y = vertices[b + 1] - vertices[a + 1], e1z = vertices[b + 2] - vertices[a + 2];
+                final double e2x = vertices[d] - vertices[a], e2y = vertices[d + 1] - vertices[a + 1], e2z = vertices[d + 2] - vertices[a + 2];
+                final double crossX = e1y * e2z - e1z * e2y, crossY = e1z * e2x - e1x * e2z, crossZ = e1x * e2y - e1y * e2x;
+                final double triangleArea = Math.sqrt(crossX * crossX + crossY * crossY + crossZ * crossZ);
+                cx += triangleArea * (vertices[a] + vertices[b] + vertices[d]) / 3;
+                cy += triangleArea * (vertices[a + 1] + vertices[b + 1] + vertices[d + 1]) / 3;
+                cz += triangleArea * (vertices[a + 2] + vertices[b + 2] + vertices[d + 2]) / 3;
+                area += triangleArea;
+                nx += crossX;
+                ny += crossY;
+                nz += crossZ;
+            }
+            meshX += cx;
+            meshY += cy;
+            meshZ += cz;
+            meshArea += area;
+            final int o = c * 7;
+            clusterData[o] = cx;
+            clusterData[o + 1] = cy;
+            clusterData[o + 2] = cz;
+            clusterData[o + 3] = area;
+            clusterData[o + 4] = nx;
+            clusterData[o + 5] = ny;
+            clusterData[o + 6] = nz;
+        }
+        if (meshArea > 0) {
+            meshX /= meshArea;
+            meshY /= meshArea;
+            meshZ /= meshArea;
+        }
+
+        // Sort by the negated key and the cluster index, which sorts descending and keeps the order of equal keys
+        final long[] order = new long[clusterCount];
+        for (int c = 0; c < clusterCount; c++) {
+            final int o = c * 7;
+            final double area = clusterData[o + 3];
+            final double normalLength = Math.sqrt(clusterData[o + 4] * clusterData[o + 4]
+                    + clusterData[o + 5] * clusterData[o + 5] + clusterData[o + 6] * clusterData[o + 6]);
+            float key = 0;
+            if (area > 0 && normalLength > 0) {
+                key = (float) (((clusterData[o] / area - meshX) * clusterData[o + 4]
+                        + (clusterData[o + 1] / area - meshY) * clusterData[o + 5]
+                        + (clusterData[o + 2] / area - meshZ) * clusterData[o + 6]) / normalLength);
+            }
+            order[c] = ((long) sortableBits(-key) << 32) | c;
+        }
+        Arrays.sort(order);
+
+        final int[] result = new int[triangleCount * 3];
+        int resultCount = 0;
+        for (long entry : order) {
+            final int c = (int) entry;
+            final int start = boundaries[c] * 3;
+            final int length = boundaries[c + 1] * 3 - start;
+            System.arraycopy(indices, start, result, resultCount, length);
+            resultCount += length;
+        }
+        return result;
+    }
+
+    /**
+     * Reorders vertices by their first use in the index buffer, so that vertices are fetched mostly
+     * sequentially. Remaps the indices in place. Vertices no triangle uses are removed.
+     * @param vertices Interleaved vertex data.
+     * @param stride Amount of floats per vertex.
+     * @param indices The triangle indices, remapped to the new vertex order.
+     * @return The reordered vertex data.
+     */
+    public static float[] optimizeVertexFetch(float[] vertices, int stride, int[] indices) {
+        final int[] remap = new int[vertices.length / stride];
+        Arrays.fill(remap, -1);
+        final float[] result = new float[vertices.length];
+        int vertexCount = 0;
+        for (int i = 0; i < indices.length; i++) {
+            final int v = indices[i];
+            if (remap[v] == -1) {
+                System.arraycopy(vertices, v * stride, result, vertexCount * stride, stride);
+                remap[v] = vertexCount++;
+            }
+            indices[i] = remap[v];
+        }
+        return vertexCount * stride == result.length ? result : Arrays.copyOf(result, vertexCount * stride);
+    }
+
+    /**
+     * Simulates a FIFO post-transform cache, where a vertex stays in the cache for cacheSize misses.
+     * @param indices The triangle indices.
+     * @param vertexCount The amount of vertices.
+     * @param cacheSize The amount of vertices the cache holds, e.g. 16.
+     * @return The statistics.
+     */
+    public static CacheStats analyzeFifo(int[] indices, int vertexCount, int cacheSize) {
+        final FifoCache cache = new FifoCache(vertexCount, cacheSize);
+        int misses = 0;
+        for (int t = 0; t < indices.length / 3; t++) {
+            misses += cache.access(indices, t);
+        }
+        return createStats(false, cacheSize, misses, indices, vertexCount);
+    }
+
+    /**
+     * Simulates an LRU post-transform cache.
+     * @param indices The triangle indices.
+     * @param vertexCount The amount of vertices.
+     * @param cacheSize The amount of vertices the cache holds, e.g. 32.
+     * @return The statistics.
+     */
+    public static CacheStats analyzeLru(int[] indices, int vertexCount, int cacheSize) {
+        final int[] cache = new int[cacheSize];
+        int cacheCount = 0;
+        int misses = 0;
+        for (int v : indices) {
+            int position = indexOf(cache, cacheCount, v);
+            if (position == -1) {
+                misses++;
+                position = Math.min(cacheCount, cacheSize - 1);
+                cacheCount = Math.min(cacheCount + 1, cacheSize);
+            }
+            // Move to the front
+            System.arraycopy(cache, 0, cache, 1, position);
+            cache[0] = v;
+        }
+        return createStats(true, cacheSize, misses, indices, vertexCount);
+    }
+
+    private static CacheStats createStats(boolean lru, int cacheSize, int misses, int[] indices, int vertexCount) {
+        final boolean[] used = new boolean[vertexCount];
+        int usedCount = 0;
+        for (int v : indices) {
+            if (!used[v]) {
+                used[v] = true;
+                usedCount++;
+            }
+        }
+        final int triangleCount = indices.length / 3;
+        return new CacheStats(lru, cacheSize,
+                triangleCount == 0 ? 0 : (double) misses / triangleCount,
+                usedCount == 0 ? 0 : (double) misses / usedCount);
+    }
+
+    private static float vertexScore(int cachePosition, int liveTriangles) {
+        if (liveTriangles == 0) {
+            // No triangles left to draw
+            return -1;
+        }
+        final float score = cachePosition < 0 ? 0 : CACHE_SCORES[cachePosition];
+        return score + VALENCE_SCORES[Math.min(liveTriangles, MAX_SCORED_VALENCE)];
+    }
+
+    private static float triangleScore(int[] indices, int triangle, float[] vertexScores) {
+        return vertexScores[indices[triangle * 3]] + vertexScores[indices[triangle * 3 + 1]] + vertexScores[indices[triangle * 3 + 2]];
+    }
+
+    /**
+     * Removes a corner from the live part of its vertex's adjacency list by swapping it with the last live entry.
+     * @param last The slot of the last live entry.
+     */
+    private static void removeCorner(int[] adjacency, int[] cornerSlots, int last, int corner) {
+        final int slot = cornerSlots[corner];
+        final int other = adjacency[last];
+        adjacency[slot] = other;
+        cornerSlots[other] = slot;
+        adjacency[last] = corner;
+        cornerSlots[corner] = last;
+    }
+
+    private static int indexOf(int[] array, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (array[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Maps a float to an int with the same ordering (for signed int comparison).
+     */
+    private static int sortableBits(float value) {
+        final int bits = Float.floatToIntBits(value);
+        return bits ^ ((bits >> 31) & 0x7FFFFFFF);
+    }
+
+    /**
+     * FIFO cache simulation that can be cleared in constant time. A vertex is cached if it was
+     * inserted less than cacheSize misses ago.
+     */
+    private static class FifoCache {
+        private final int[] timestamps;
+        private final int cacheSize;
+        private int time;
+
+        FifoCache(int vertexCount, int cacheSize) {
+            this.timestamps = new int[vertexCount];
+            this.cacheSize = cacheSize;
+            this.time = cacheSize + 1;
+        }
+
+        /**
+         * Accesses the vertices of a triangle.
+         * @return The amount of cache misses.
+         */
+        int access(int[] indices, int triangle) {
+            int misses = 0;
+            for (int k = 0; k < 3; k++) {
+                final int v = indices[triangle * 3 + k];
+                if (time - timestamps[v] > cacheSize) {
+                    timestamps[v] = time++;
+                    misses++;
+                }
+            }
+            return misses;
+        }
+
+        void clear() {
+            time += cacheSize + 1;
+        }
+    }
+}
@@ -17,6 +17,7 @@ import java.util.List;
 public class MeshParser {
 
     final static String DEFAULT_MESH_PATH = "meshes/";
+    private static boolean optimizeMeshes = false;
     private enum ObjLineType {
         UNDEFINED,
         VERTEX,
@@ -54,7 +55,51 @@ public class MeshParser {
         }
     }
 
+    /**
+     * Enables or disables optimizing parsed meshes with MeshOptimizer (off by default). MeshCache entries
+     * record whether they were optimized and are rebuilt if that doesn't match this setting.
+     */
+    public static void setOptimizeMeshes(boolean optimizeMeshes) {
+        MeshParser.optimizeMeshes = optimizeMeshes;
+    }
+
+    public static boolean isOptimizeMeshes() {
+        return optimizeMeshes;
+    }
+
+    /**
+     * Loads an OBJ file from the resources/meshes/ directory and creates a mesh from it.
+     * @param filename The name of the file. Including the '.obj' suffix is optional.
+     * @return The mesh, or null if the file could not be found or read.
+     */
     public static Mesh parseOBJ(String filename) {
+        final Path path = getMeshPath(filename);
+        return path == null ? null : parseOBJ(path);
+    }
+
+    /**
+     * Loads an OBJ file and creates a mesh from it. If the MeshCache is available, the mesh is
+     * loaded from its cache entry instead of parsing the file, see MeshCache.load().
+     * @param path The path of the file.
+     * @return The mesh, or null if the file could not be read.
+     */
+    public static Mesh parseOBJ(Path path) {
+        if (MeshCache.isAvailable()) {
+            return MeshCache.load(path);
+        }
+        final MeshData data = parseOBJData(path);
+        if (data == null) {
+            return null;
+        }
+        return MeshBuilder.createMesh(data.vertices, data.indices);
+    }
+
+    /**
+     * Resolves the path of a mesh file inside the resources/meshes/ directory.
+     * @param filename The name of the file. Including the '.obj' suffix is optional.
+     * @return The path, or null if the file could not be found.
+     */
+    public static Path getMeshPath(String filename) {
         Path path;
         try {
             ClassLoader classLoader = MeshParser.class.getClassLoader();
@@ -71,6 +116,33 @@ public class MeshParser {
             // TODO: Error message (Invalid uri syntax / Internal Parse Error)
             return null;
         }
+        return path;
+    }
+
+    /**
+     * Parses an OBJ file into interleaved vertex data and indices, without creating any
+     * OpenGL objects. Used by parseOBJ(), and on its own e.g. by benchmarks.
+     * @param path The path of the file.
+     * @return The parsed data, or null if the file could not be read.
+     */
+    public static MeshData parseOBJData(Path path) {
+        try {
+            final MeshData data = VertexWelder.weld(ObjParser.parse(path));
+            return optimizeMeshes ? MeshOptimizer.optimize(data, false) : data;
+        } catch (IOException exception) {
+            exception.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * The original line-based OBJ parser, kept as a baseline for the parser benchmarks.
+     * It only supports triangles using the v//vn or v/vt/vn syntax, and produces one vertex per
+     * position with 6 floats (position and the last normal used with it) instead of VERTEX_STRIDE.
+     * @param path The path of the file.
+     * @return The parsed data, or null if the file could not be read.
+     */
+    public static MeshData parseOBJDataLegacy(Path path) {
         try {
             final List<String> source = Files.readAllLines(path, StandardCharsets.UTF_8);
             final ArrayList<Vector3> vertexPositions = new ArrayList<>();
@@ -167,7 +239,7 @@ public class MeshParser {
                         break;
                 }
             }
-            return MeshBuilder.createMesh(vertexDataArrayListToArray(vertexData), intArrayListToArray(indices));
+            return new MeshData(vertexDataArrayListToArray(vertexData), intArrayListToArray(indices));
         } catch (IOException exception) {
             exception.printStackTrace();
             // TODO: Error message
@@ -0,0 +1,643 @@
+package de.coxcopi.mesh;
+
+import de.coxcopi.util.collection.FloatList;
+import de.coxcopi.util.collection.IntList;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Parses OBJ files directly from a memory-mapped file, byte by byte. Numbers are parsed by hand
+ * without creating strings, and all values are collected in primitive lists.
+ * <p>
+ * Supported are positions (v), texture coordinates (vt), normals (vn) and faces (f) with any of the
+ * v, v/vt, v//vn and v/vt/vn corner syntaxes, including negative (relative) indices. Polygons with
+ * more than three corners are triangulated as fans. Statements that don't affect the geometry (comments,
+ * groups, materials, ...) are skipped silently, unknown statements produce a warning.
+ * Warnings are rate-limited: only the first few are printed, followed by the amount of suppressed ones.
+ * <p>
+ * The file is mapped in segments that end at line boundaries (files larger than 2 GB can't be mapped
+ * at once). Segments are copied into a small array window by window before parsing, because bulk
+ * copies are much cheaper than reading a mapped buffer byte by byte.
+ * <p>
+ * Large files are parsed in parallel: every segment is split into chunks at line boundaries, which are
+ * parsed as fork-join tasks into their own lists. Relative indices in a chunk are resolved against the
+ * chunk's own counts and fixed up when the chunks are merged in file order, so the result is identical
+ * to parsing sequentially.
+ */
+public class ObjParser {
+
+    /**
+     * Maximum size of a mapped segment.
+     */
+    static final int MAX_SEGMENT_SIZE = 1 << 30;
+    /**
+     * Files smaller than this are always parsed sequentially, see parse().
+     */
+    public static final long PARALLEL_THRESHOLD = 16 << 20;
+    /**
+     * Minimum size of a chunk in parallel mode. Smaller chunks aren't worth their merge overhead.
+     */
+    static final int MIN_PARALLEL_CHUNK_SIZE = 1 << 20;
+    /**
+     * Initial size of the window a chunk copies its input into. It grows for lines that don't fit.
+     */
+    static final int WINDOW_SIZE = 1 << 16;
+    /**
+     * Upper bound for the lines a chunk initially reserves space for, see Chunk(long).
+     */
+    static final int MAX_INITIAL_LINES = 1 << 18;
+    /**
+     * Maximum amount of warnings printed per parsed file.
+     */
+    static final int MAX_WARNINGS = 10;
+    /**
+     * Ints stored per triangle corner: position, texture coordinate and normal index.
+     */
+    public static final int CORNER_SIZE = 3;
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * The parsed contents of an OBJ file (or a part of it).
+     */
+    public static class ObjData {
+        /**
+         * Positions, 3 floats each.
+         */
+        public final FloatList positions;
+        /**
+         * Texture coordinates, 2 floats each.
+         */
+        public final FloatList uvs;
+        /**
+         * Normals, 3 floats each.
+         */
+        public final FloatList normals;
+        /**
+         * Triangle corners, CORNER_SIZE ints each (three corners per triangle): the 0-based indices of
+         * the position, texture coordinate and normal, -1 if the corner has no texture coordinate or normal.
+         */
+        public final IntList corners;
+
+        ObjData(FloatList positions, FloatList uvs, FloatList normals, IntList corners) {
+            this.positions = positions;
+            this.uvs = uvs;
+            this.normals = normals;
+            this.corners = corners;
+        }
+
+        public int getPositionCount() {
+            return positions.size() / 3;
+        }
+
+        public int getUvCount() {
+            return uvs.size() / 2;
+        }
+
+        public int getNormalCount() {
+            return normals.size() / 3;
+        }
+
+        public int getTriangleCount() {
+            return corners.size() / (3 * CORNER_SIZE);
+        }
+    }
+
+    /**
+     * Parses an OBJ file. Files of at least PARALLEL_THRESHOLD bytes are parsed in parallel
+     * if more than one core is available.
+     * @param path The path of the file.
+     * @return The parsed data.
+     * @throws IOException If the file could not be read.
+     */
+    public static ObjData parse(Path path) throws IOException {
+        final boolean parallel = Files.size(path) >= PARALLEL_THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1;
+        return parse(path, parallel);
+    }
+
+    /**
+     * Parses an OBJ file.
+     * @param path The path of the file.
+     * @param parallel True to parse chunks of the file in parallel in the common fork-join pool.
+     * The result is the same either way.
+     * @return The parsed data.
+     * @throws IOException If the file could not be read.
+     */
+    public static ObjData parse(Path path, boolean parallel) throws IOException {
+        return parse(path, parallel, MIN_PARALLEL_CHUNK_SIZE);
+    }
+
+    /**
+     * Parses an OBJ file, see parse(Path, boolean).
+     * @param minChunkSize The minimum size of a chunk in parallel mode. Tests pass small values to
+     * split small files into several chunks.
+     */
+    static ObjData parse(Path path, boolean parallel, int minChunkSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            final Chunk sequentialChunk = parallel ? null : new Chunk(size);
+            final ArrayList<Chunk> chunks = new ArrayList<>();
+            long offset = 0;
+            while (offset < size) {
+                final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(size - offset, MAX_SEGMENT_SIZE));
+                final int end = offset + buffer.limit() == size ? buffer.limit() : lastLineEnd(buffer, 0, buffer.limit());
+                if (end == -1) {
+                    throw new IOException("Line longer than " + MAX_SEGMENT_SIZE + " bytes in " + path + ".");
+                }
+                if (parallel) {
+                    final int chunkSize = Math.max(minChunkSize, end / (ForkJoinPool.getCommonPoolParallelism() * 4));
+                    chunks.addAll(ForkJoinPool.commonPool().invoke(new ChunkTask(buffer, 0, end, offset, chunkSize)));
+                } else {
+                    sequentialChunk.parse(buffer, 0, end, offset);
+                }
+                offset += end;
+            }
+            return merge(parallel ? chunks : List.of(sequentialChunk));
+        }
+    }
+
+    /**
+     * Parses OBJ data from a buffer.
+     * @param buffer The buffer, parsed from index 0 to its limit.
+     * @return The parsed data.
+     */
+    public static ObjData parse(ByteBuffer buffer) {
+        final Chunk chunk = new Chunk(buffer.limit());
+        chunk.parse(buffer, 0, buffer.limit(), 0);
+        return merge(List.of(chunk));
+    }
+
+    /**
+     * Returns the index after the last line break in the given range, or -1 if there is none.
+     */
+    static int lastLineEnd(ByteBuffer buffer, int start, int end) {
+        for (int i = end - 1; i >= start; i--) {
+            if (buffer.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index after the first line break at or after start, or end if there is none.
+     */
+    static int nextLineEnd(ByteBuffer buffer, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (buffer.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return end;
+    }
+
+    static int lastLineEnd(byte[] bytes, int end) {
+        for (int i = end - 1; i >= 0; i--) {
+            if (bytes[i] == '\n') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Concatenates the results of consecutive chunks. Relative indices of every chunk are offset by
+     * the amount of elements defined in the chunks before it.
+     */
+    static ObjData merge(List<Chunk> chunks) {
+        if (chunks.isEmpty()) {
+            return new ObjData(new FloatList(), new FloatList(), new FloatList(), new IntList());
+        }
+        int positionSize = 0;
+        int uvSize = 0;
+        int normalSize = 0;
+        int cornerSize = 0;
+        for (Chunk chunk : chunks) {
+            positionSize += chunk.positions.size();
+            uvSize += chunk.uvs.size();
+            normalSize += chunk.normals.size();
+            cornerSize += chunk.corners.size();
+        }
+        final Chunk first = chunks.get(0);
+        final boolean single = chunks.size() == 1;
+        final FloatList positions = single ? first.positions : new FloatList(positionSize);
+        final FloatList uvs = single ? first.uvs : new FloatList(uvSize);
+        final FloatList normals = single ? first.normals : new FloatList(normalSize);
+        final IntList corners = single ? first.corners : new IntList(cornerSize);
+        int warnings = 0;
+        int suppressed = 0;
+        for (Chunk chunk : chunks) {
+            if (!single) {
+                final int cornerBase = corners.size();
+                final int[] base = {positions.size() / 3, uvs.size() / 2, normals.size() / 3};
+                positions.addAll(chunk.positions);
+                uvs.addAll(chunk.uvs);
+                normals.addAll(chunk.normals);
+                corners.addAll(chunk.corners);
+                final int[] relative = chunk.relativeCorners.array();
+                for (int i = 0, size = chunk.relativeCorners.size(); i < size; i++) {
+                    final int slot = relative[i];
+                    corners.set(cornerBase + slot, corners.get(cornerBase + slot) + base[slot % CORNER_SIZE]);
+                }
+            }
+            for (String warning : chunk.warnings) {
+                if (warnings++ < MAX_WARNINGS) {
+                    System.out.println(warning);
+                } else {
+                    suppressed++;
+                }
+            }
+            suppressed += chunk.suppressedWarnings;
+        }
+        if (suppressed > 0) {
+            System.out.println("... " + suppressed + " more OBJ warnings suppressed.");
+        }
+        return new ObjData(positions, uvs, normals, corners);
+    }
+
+    /**
+     * Parses a range of a segment, splitting it in halves at line boundaries until the halves are
+     * smaller than the chunk size.
+     */
+    static class ChunkTask extends RecursiveTask<List<Chunk>> {
+        private final ByteBuffer buffer;
+        private final int start;
+        private final int end;
+        private final long bufferOffset;
+        private final int chunkSize;
+
+        ChunkTask(ByteBuffer buffer, int start, int end, long bufferOffset, int chunkSize) {
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+            this.bufferOffset = bufferOffset;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected List<Chunk> compute() {
+            if (end - start > chunkSize) {
+                final int middle = nextLineEnd(buffer, start + (end - start) / 2, end);
+                if (middle < end) {
+                    final ChunkTask second = new ChunkTask(buffer, middle, end, bufferOffset, chunkSize);
+                    second.fork();
+                    final List<Chunk> chunks = new ArrayList<>(new ChunkTask(buffer, start, middle, bufferOffset, chunkSize).compute());
+                    chunks.addAll(second.join());
+                    return chunks;
+                }
+            }
+            final Chunk chunk = new Chunk(end - start);
+            chunk.parse(buffer, start, end, bufferOffset);
+            return List.of(chunk);
+        }
+    }
+
+    /**
+     * Parser state for a range of a file.
+     */
+    static class Chunk {
+        final FloatList positions;
+        final FloatList uvs;
+        final FloatList normals;
+        final IntList corners;
+        /**
+         * Slots in corners holding relative indices that were resolved against this chunk's own
+         * counts and still need the counts of all preceding chunks added.
+         */
+        final IntList relativeCorners = new IntList();
+        final ArrayList<String> warnings = new ArrayList<>();
+        int suppressedWarnings = 0;
+        // The window currently parsed
+        private byte[] bytes = new byte[WINDOW_SIZE];
+        private int end;
+        private int pos;
+        /**
+         * Offset of the window inside the file, for warnings.
+         */
+        private long windowOffset;
+        // Corners of the face being parsed, CORNER_SIZE ints each
+        private int[] face = new int[4 * CORNER_SIZE];
+        private boolean[] faceRelative = new boolean[4 * CORNER_SIZE];
+
+        /**
+         * @param size The expected amount of bytes, used to estimate the initial capacities.
+         */
+        Chunk(long size) {
+            // Sized for a fraction of the lines a range of this size typically has and grown as needed,
+            // so that about a third of the range's size is reserved up front instead of more than all of it
+            final int lines = (int) Math.min(size / 160, MAX_INITIAL_LINES);
+            this.positions = new FloatList(lines * 3 + 16);
+            this.uvs = new FloatList(16);
+            this.normals = new FloatList(lines * 3 + 16);
+            this.corners = new IntList(lines * 2 * CORNER_SIZE + 16);
+        }
+
+        /**
+         * Parses a range of a buffer. The range must end at a line boundary (or the end of the file).
+         * @param source The buffer.
+         * @param start The start of the range.
+         * @param end The end of the range (exclusive).
+         * @param sourceOffset The offset of the buffer inside the file, for warnings.
+         */
+        void parse(ByteBuffer source, int start, int end, long sourceOffset) {
+            int offset = start;
+            while (offset < end) {
+                final int length = Math.min(bytes.length, end - offset);
+                source.get(offset, bytes, 0, length);
+                int windowEnd = length;
+                if (offset + length < end) {
+                    windowEnd = lastLineEnd(bytes, length);
+                    if (windowEnd == -1) {
+                        // The line doesn't fit into the window
+                        bytes = new byte[bytes.length * 2];
+                        continue;
+                    }
+                }
+                this.end = windowEnd;
+                this.windowOffset = sourceOffset + offset;
+                parseWindow();
+                offset += windowEnd;
+            }
+        }
+
+        private void parseWindow() {
+            pos = 0;
+            while (pos < end) {
+                skipSpaces();
+                if (pos >= end) {
+                    break;
+                }
+                final byte c = bytes[pos];
+                if (c == 'v') {
+                    final byte next = pos + 1 < end ? bytes[pos + 1] : (byte) '\n';
+                    if (isSpace(next)) {
+                        pos++;
+                        parseVector(positions, 3, "position");
+                    } else if (next == 'n' && pos + 2 < end && isSpace(bytes[pos + 2])) {
+                        pos += 2;
+                        parseVector(normals, 3, "normal");
+                    } else if (next == 't' && pos + 2 < end && isSpace(bytes[pos + 2])) {
+                        pos += 2;
+                        parseVector(uvs, 2, "texture coordinate");
+                    } else if (next != 'p') {
+                        warn("Unknown statement");
+                    }
+                } else if (c == 'f' && pos + 1 < end && isSpace(bytes[pos + 1])) {
+                    pos++;
+                    parseFace();
+                } else if (c != '#' && c != '\n' && c != '\r' && c != 's' && c != 'o' && c != 'g'
+                        && c != 'u' && c != 'm' && c != 'l' && c != 'p') {
+                    // Comments, smoothing groups, objects, groups, materials, lines and points are skipped silently
+                    warn("Unknown statement");
+                }
+                skipLine();
+            }
+        }
+
+        /**
+         * Parses the components of a vertex statement. Additional components (e.g. w) are ignored.
+         */
+        private void parseVector(FloatList target, int components, String name) {
+            final int lineStart = pos;
+            float x = 0, y = 0, z = 0;
+            for (int i = 0; i < components; i++) {
+                skipSpaces();
+                if (pos >= end || isLineEnd(bytes[pos])) {
+                    pos = lineStart;
+                    warn("Skipping " + name + " with less than " + components + " components");
+                    return;
+                }
+                final float value = parseFloat();
+                if (i == 0) {
+                    x = value;
+                } else if (i == 1) {
+                    y = value;
+                } else {
+                    z = value;
+                }
+            }
+            if (components == 2) {
+                target.add(x, y);
+            } else {
+                target.add(x, y, z);
+            }
+        }
+
+        private void parseFace() {
+            int cornerCount = 0;
+            while (true) {
+                skipSpaces();
+                if (pos >= end || isLineEnd(bytes[pos]) || bytes[pos] == '#') {
+                    break;
+                }
+                if ((cornerCount + 1) * CORNER_SIZE > face.length) {
+                    face = Arrays.copyOf(face, face.length * 2);
+                    faceRelative = Arrays.copyOf(faceRelative, faceRelative.length * 2);
+                }
+                final int o = cornerCount * CORNER_SIZE;
+                parseIndex(o, positions.size() / 3);
+                face[o + 1] = -1;
+                face[o + 2] = -1;
+                faceRelative[o + 1] = false;
+                faceRelative[o + 2] = false;
+                if (pos < end && bytes[pos] == '/') {
+                    pos++;
+                    if (pos < end && bytes[pos] != '/' && !isSpace(bytes[pos]) && !isLineEnd(bytes[pos])) {
+                        parseIndex(o + 1, uvs.size() / 2);
+                    }
+                    if (pos < end && bytes[pos] == '/') {
+                        pos++;
+                        parseIndex(o + 2, normals.size() / 3);
+                    }
+                }
+                // Skip anything unexpected up to the next corner
+                while (pos < end && !isSpace(bytes[pos]) && !isLineEnd(bytes[pos])) {
+                    pos++;
+                }
+                cornerCount++;
+            }
+            if (cornerCount < 3) {
+                warn("Skipping face with less than 3 corners");
+                return;
+            }
+            // Triangulate as a fan around the first corner
+            for (int i = 1; i < cornerCount - 1; i++) {
+                addCorner(0);
+                addCorner(i * CORNER_SIZE);
+                addCorner((i + 1) * CORNER_SIZE);
+            }
+        }
+
+        private void addCorner(int o) {
+            for (int i = 0; i < CORNER_SIZE; i++) {
+                if (faceRelative[o + i]) {
+                    relativeCorners.add(corners.size());
+                }
+                corners.add(face[o + i]);
+            }
+        }
+
+        /**
+         * Parses an OBJ index into face[slot], converted to a 0-based index. Negative indices are
+         * relative to the current count of the respective element. 0 (invalid) is stored as -1.
+         */
+        private void parseIndex(int slot, int count) {
+            final int index = parseInt();
+            faceRelative[slot] = index < 0;
+            if (index > 0) {
+                face[slot] = index - 1;
+            } else if (index < 0) {
+                face[slot] = count + index;
+            } else {
+                face[slot] = -1;
+            }
+        }
+
+        private int parseInt() {
+            boolean negative = false;
+            if (pos < end && (bytes[pos] == '-' || bytes[pos] == '+')) {
+                negative = bytes[pos] == '-';
+                pos++;
+            }
+            int value = 0;
+            while (pos < end) {
+                final int digit = bytes[pos] - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                value = value * 10 + digit;
+                pos++;
+            }
+            return negative ? -value : value;
+        }
+
+        /**
+         * Parses a decimal floating point number. Numbers with up to 15 significant digits and small
+         * exponents are converted with a single correctly rounded double operation; everything else
+         * falls back to Float.parseFloat().
+         */
+        private float parseFloat() {
+            final int numberStart = pos;
+            boolean negative = false;
+            if (bytes[pos] == '-' || bytes[pos] == '+') {
+                negative = bytes[pos] == '-';
+                pos++;
+            }
+            long mantissa = 0;
+            int digits = 0;
+            int exponent = 0;
+            boolean anyDigits = false;
+            while (pos < end) {
+                final int digit = bytes[pos] - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                anyDigits = true;
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + digit;
+                    if (mantissa != 0) {
+                        digits++;
+                    }
+                } else {
+                    exponent++;
+                }
+                pos++;
+            }
+            if (pos < end && bytes[pos] == '.') {
+                pos++;
+                while (pos < end) {
+                    final int digit = bytes[pos] - '0';
+                    if (digit < 0 || digit > 9) {
+                        break;
+                    }
+                    anyDigits = true;
+                    if (digits < 18) {
+                        mantissa = mantissa * 10 + digit;
+                        exponent--;
+                        if (mantissa != 0) {
+                            digits++;
+                        }
+                    }
+                    pos++;
+                }
+            }
+            if (anyDigits && pos < end && (bytes[pos] == 'e' || bytes[pos] == 'E')) {
+                pos++;
+                exponent += parseInt();
+            }
+            if (!anyDigits || (pos < end && !isSpace(bytes[pos]) && !isLineEnd(bytes[pos]))) {
+                return parseFloatFallback(numberStart);
+            }
+            if (mantissa == 0) {
+                return negative ? -0f : 0f;
+            }
+            if (digits > 15 || exponent < -22 || exponent > 22) {
+                return parseFloatFallback(numberStart);
+            }
+            // Both the mantissa and the power of ten are exact doubles, so this is correctly rounded
+            final double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+            return (float) (negative ? -value : value);
+        }
+
+        /**
+         * Parses the token starting at numberStart with Float.parseFloat(), e.g. for "nan" or very long numbers.
+         */
+        private float parseFloatFallback(int numberStart) {
+            pos = numberStart;
+            while (pos < end && !isSpace(bytes[pos]) && !isLineEnd(bytes[pos])) {
+                pos++;
+            }
+            final String token = new String(bytes, numberStart, pos - numberStart, StandardCharsets.US_ASCII);
+            try {
+                return Float.parseFloat(token);
+            } catch (NumberFormatException e) {
+                warn("Invalid number '" + token + "'");
+                return 0f;
+            }
+        }
+
+        private void skipSpaces() {
+            while (pos < end && isSpace(bytes[pos])) {
+                pos++;
+            }
+        }
+
+        private void skipLine() {
+            while (pos < end && bytes[pos] != '\n') {
+                pos++;
+            }
+            pos++;
+        }
+
+        private void warn(String message) {
+            if (warnings.size() < MAX_WARNINGS) {
+                warnings.add(message + " [byte " + (windowOffset + pos) + "].");
+            } else {
+                suppressedWarnings++;
+            }
+        }
+
+        private static boolean isSpace(byte c) {
+            return c == ' ' || c == '\t';
+        }
+
+        private static boolean isLineEnd(byte c) {
+            return c == '\n' || c == '\r';
+        }
+    }
+}
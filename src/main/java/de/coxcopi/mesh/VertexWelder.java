@@ -0,0 +1,85 @@
+package de.coxcopi.mesh;
+
+import de.coxcopi.util.collection.FloatList;
+import de.coxcopi.util.collection.IntList;
+import de.coxcopi.util.collection.LongIntHashMap;
+
+/**
+ * Builds indexed mesh data from parsed OBJ data. OBJ faces index positions, normals and texture
+ * coordinates separately, while GL needs a single index per vertex, so every distinct combination
+ * of (position, normal, texture coordinate) indices becomes one vertex ("welding"). Vertices are
+ * emitted in the order they are first used, and positions no face uses are dropped.
+ * <p>
+ * A combination is packed into two long keys: first the (normal, texture coordinate) pair is
+ * mapped to a dense attribute ID, then the (position, attribute ID) pair to the vertex. This keeps
+ * the keys collision-free for any index range. Both maps are primitive, so welding runs in linear
+ * time without allocating per corner.
+ */
+public class VertexWelder {
+
+    /**
+     * Welds the corners of all triangles into vertices. Triangles with an invalid position index are
+     * skipped; invalid or missing normal and texture coordinate indices are treated as zero vectors.
+     * @param data The parsed OBJ data.
+     * @return The mesh data, MeshData.VERTEX_STRIDE floats per vertex.
+     */
+    public static MeshData weld(ObjParser.ObjData data) {
+        final int positionCount = data.getPositionCount();
+        final int normalCount = data.getNormalCount();
+        final int uvCount = data.getUvCount();
+        final float[] positions = data.positions.array();
+        final float[] normals = data.normals.array();
+        final float[] uvs = data.uvs.array();
+        final int[] corners = data.corners.array();
+        final int cornerSize = data.corners.size();
+
+        // Most meshes have about as many vertices as positions, with seams adding a few more
+        final LongIntHashMap attributeIDs = new LongIntHashMap(Math.max(normalCount, uvCount));
+        final LongIntHashMap vertexIDs = new LongIntHashMap(positionCount + positionCount / 4);
+        final FloatList vertices = new FloatList((positionCount + positionCount / 4) * MeshData.VERTEX_STRIDE);
+        final IntList indices = new IntList(cornerSize / ObjParser.CORNER_SIZE);
+        for (int t = 0; t < cornerSize; t += 3 * ObjParser.CORNER_SIZE) {
+            if (!isValidIndex(corners[t], positionCount)
+                    || !isValidIndex(corners[t + ObjParser.CORNER_SIZE], positionCount)
+                    || !isValidIndex(corners[t + 2 * ObjParser.CORNER_SIZE], positionCount)) {
+                continue;
+            }
+            for (int c = t; c < t + 3 * ObjParser.CORNER_SIZE; c += ObjParser.CORNER_SIZE) {
+                final int position = corners[c];
+                final int uv = isValidIndex(corners[c + 1], uvCount) ? corners[c + 1] : -1;
+                final int normal = isValidIndex(corners[c + 2], normalCount) ? corners[c + 2] : -1;
+                // -1 becomes 0, so both halves are non-negative
+                final int attributeID = attributeIDs.getOrPut(pack(normal + 1, uv + 1), attributeIDs.size());
+                final int vertexCount = vertices.size() / MeshData.VERTEX_STRIDE;
+                final int vertex = vertexIDs.getOrPut(pack(position, attributeID), vertexCount);
+                if (vertex == vertexCount) {
+                    addVertex(vertices, positions, position, normals, normal, uvs, uv);
+                }
+                indices.add(vertex);
+            }
+        }
+        return new MeshData(vertices.toArray(), indices.toArray());
+    }
+
+    private static void addVertex(FloatList vertices, float[] positions, int position, float[] normals, int normal, float[] uvs, int uv) {
+        vertices.add(positions[position * 3], positions[position * 3 + 1], positions[position * 3 + 2]);
+        if (normal == -1) {
+            vertices.add(0, 0, 0);
+        } else {
+            vertices.add(normals[normal * 3], normals[normal * 3 + 1], normals[normal * 3 + 2]);
+        }
+        if (uv == -1) {
+            vertices.add(0, 0);
+        } else {
+            vertices.add(uvs[uv * 2], uvs[uv * 2 + 1]);
+        }
+    }
+
+    private static long pack(int high, int low) {
+        return ((long) high << 32) | (low & 0xFFFFFFFFL);
+    }
+
+    private static boolean isValidIndex(int index, int count) {
+        return index >= 0 && index < count;
+    }
+}
@@ -1,23 +1,36 @@
 package de.coxcopi.mesh.buffer;
 
+import de.coxcopi.render.GLStateCache;
 import org.lwjgl.opengl.GL15;
 
+import java.nio.ByteBuffer;
+
 public class IndexBuffer {
 
     final int id;
 
     public IndexBuffer(int[] data) {
         id = GL15.glGenBuffers();
-        GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, id);
+        GLStateCache.bindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, id);
+        GL15.glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, data, GL15.GL_STATIC_DRAW);
+    }
+
+    /**
+     * Creates the buffer from data in a direct buffer (e.g. a memory-mapped file), without copying it on the Java side.
+     * @param data The data, from its position to its limit, in native byte order.
+     */
+    public IndexBuffer(ByteBuffer data) {
+        id = GL15.glGenBuffers();
+        GLStateCache.bindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, id);
         GL15.glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, data, GL15.GL_STATIC_DRAW);
     }
 
     public void bind() {
-        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, id);
+        GLStateCache.bindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, id);
     }
 
     public void unbind() {
-        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+        GLStateCache.bindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, 0);
     }
 
 }
@@ -1,22 +1,35 @@
 package de.coxcopi.mesh.buffer;
 
+import de.coxcopi.render.GLStateCache;
 import org.lwjgl.opengl.GL15;
 
+import java.nio.ByteBuffer;
+
 public class VertexBuffer {
 
     final int id;
 
     public VertexBuffer(float[] data) {
         id = GL15.glGenBuffers();
-        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, id);
+        GLStateCache.bindBuffer(GL15.GL_ARRAY_BUFFER, id);
+        GL15.glBufferData(GL15.GL_ARRAY_BUFFER, data, GL15.GL_STATIC_DRAW);
+    }
+
+    /**
+     * Creates the buffer from data in a direct buffer (e.g. a memory-mapped file), without copying it on the Java side.
+     * @param data The data, from its position to its limit, in native byte order.
+     */
+    public VertexBuffer(ByteBuffer data) {
+        id = GL15.glGenBuffers();
+        GLStateCache.bindBuffer(GL15.GL_ARRAY_BUFFER, id);
         GL15.glBufferData(GL15.GL_ARRAY_BUFFER, data, GL15.GL_STATIC_DRAW);
     }
 
     public void bind() {
-        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, id);
+        GLStateCache.bindBuffer(GL15.GL_ARRAY_BUFFER, id);
     }
 
     public void unbind() {
-        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+        GLStateCache.bindBuffer(GL15.GL_ARRAY_BUFFER, 0);
     }
 }
@@ -1,28 +1,68 @@
 package de.coxcopi.render;
 
+import de.coxcopi.util.math.Frustum;
 import de.coxcopi.util.math.Matrix4;
+import de.coxcopi.util.math.Matrix4f;
+import de.coxcopi.util.math.Transform;
 import de.coxcopi.util.math.Vector3;
+import de.coxcopi.util.math.Vector3f;
 
 public class Camera {
     private double fov;
     private double aspectRatio;
     private double near = 0.1;
     private double far = 100.0;
-    public Matrix4 viewMatrix;
+    public Matrix4 viewMatrix = new Matrix4();
     public Matrix4 transform = Matrix4.transform();
     public Matrix4 projectionMatrix;
     public Vector3 cameraFront = new Vector3(0, 0, -1);
+    /**
+     * Single-precision copies of the view and projection matrices and the camera position,
+     * kept in sync by the recalculate methods so that uniform uploads don't have to convert them.
+     */
+    public final Matrix4f viewMatrixf = new Matrix4f();
+    public final Matrix4f projectionMatrixf = new Matrix4f();
+    public final Vector3f positionf = new Vector3f();
+    /**
+     * The combined projectionMatrix * viewMatrix, rebuilt whenever either of them changes.
+     */
+    public final Matrix4 viewProjectionMatrix = new Matrix4();
+    public final Matrix4f viewProjectionMatrixf = new Matrix4f();
+    /**
+     * The camera's view frustum in world space, kept in sync with the view-projection matrix.
+     */
+    public final Frustum frustum = new Frustum();
+    /**
+     * Dirty flags and version counters. The versions are incremented every time the respective
+     * matrices are rebuilt, so consumers (culling, uniform uploads) can skip work if they have
+     * already seen the current version.
+     */
+    private boolean viewDirty = true;
+    private boolean projectionDirty = true;
+    private long viewVersion = 0;
+    private long projectionVersion = 0;
+    private long version = 0;
     private double pitch = 0;
     private double yaw = 0;
+    private Transform transformComponent = null;
+    // Scratch vectors, reused so that recalculating the camera does not allocate.
+    private final Vector3 up = Vector3.UP();
+    private final Vector3 axisX = new Vector3();
+    private final Vector3 axisY = new Vector3();
+    private final Vector3 position = new Vector3();
+    private final Vector3 target = new Vector3();
+    private final Vector3 origin = new Vector3();
 
     public Camera(double fov, double aspectRatio) {
         this.fov = fov;
         this.aspectRatio = aspectRatio;
-        recalculateViewMatrix();
-        recalculateProjectionMatrix();
+        update();
     }
 
     public void rotate(double yaw, double pitch) {
+        if (yaw == 0 && pitch == 0) {
+            return;
+        }
         this.yaw += yaw;
         this.pitch += pitch;
         recalculateCameraFront();
@@ -35,18 +75,64 @@ public class Camera {
     }
 
     public void setFieldOfView(double fov) {
+        if (fov == this.fov) {
+            return;
+        }
         this.fov = fov;
-        recalculateProjectionMatrix();
+        projectionDirty = true;
     }
 
     public void setViewPlane(double near, double far) {
+        if (near == this.near && far == this.far) {
+            return;
+        }
         this.near = near;
         this.far = far;
-        recalculateProjectionMatrix();
+        projectionDirty = true;
     }
 
+    /**
+     * Sets the aspect ratio (width / height) of the projection, e.g. after the window was resized.
+     * @param aspectRatio The new aspect ratio.
+     */
     public void setAspectRatio(double aspectRatio) {
+        if (aspectRatio == this.aspectRatio) {
+            return;
+        }
         this.aspectRatio = aspectRatio;
+        projectionDirty = true;
+    }
+
+    /**
+     * Lets the camera's transform be driven by a TRS transform component. The camera keeps the
+     * component's translation and overwrites its rotation with the camera's yaw and pitch.
+     * @param transformComponent The transform component.
+     */
+    public void setTransformComponent(Transform transformComponent) {
+        this.transformComponent = transformComponent;
+        this.transform = transformComponent.getMatrix();
+        recalculateCameraFront();
+        viewDirty = true;
+    }
+
+    public Transform getTransformComponent() {
+        return transformComponent;
+    }
+
+    /**
+     * Moves the camera by the given offset.
+     * @param offset The offset in world space.
+     */
+    public void move(Vector3 offset) {
+        if (offset.isZero()) {
+            return;
+        }
+        viewDirty = true;
+        if (transformComponent != null) {
+            transformComponent.translate(offset);
+        } else {
+            transform.translate(offset);
+        }
     }
 
     public double getFov() {
@@ -57,27 +143,124 @@ public class Camera {
         return aspectRatio;
     }
 
+    /**
+     * @return A counter that is incremented every time the view or the projection matrix changes.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return A counter that is incremented every time the view matrix changes.
+     */
+    public long getViewVersion() {
+        return viewVersion;
+    }
+
+    /**
+     * @return A counter that is incremented every time the projection matrix changes.
+     */
+    public long getProjectionVersion() {
+        return projectionVersion;
+    }
+
+    /**
+     * Forces the view matrix to be rebuilt by the next call to update(). Only needed if
+     * cameraFront was modified directly.
+     */
+    public void markViewDirty() {
+        viewDirty = true;
+    }
+
+    /**
+     * Rebuilds the view, projection and view-projection matrices and the frustum, but only
+     * if something they depend on has changed since the last call. Should be called once per frame.
+     * @return True if anything was rebuilt (the camera's version has changed).
+     */
+    public boolean update() {
+        boolean changed = false;
+        if (isViewDirty()) {
+            rebuildViewMatrix();
+            changed = true;
+        }
+        if (projectionDirty) {
+            rebuildProjectionMatrix();
+            changed = true;
+        }
+        if (changed) {
+            Matrix4.multiply(projectionMatrix, viewMatrix, viewProjectionMatrix);
+            viewProjectionMatrixf.set(viewProjectionMatrix);
+            frustum.set(viewProjectionMatrix);
+            version++;
+        }
+        return changed;
+    }
+
+    /**
+     * Checks whether the view matrix is out of date. Besides the camera's own changes this
+     * catches changes to the transform component and direct changes of the transform's origin.
+     */
+    private boolean isViewDirty() {
+        if (viewDirty) {
+            return true;
+        }
+        if (transformComponent != null && transformComponent.isDirty()) {
+            return true;
+        }
+        transform.getOrigin(origin);
+        return origin.x != position.x || origin.y != position.y || origin.z != position.z;
+    }
+
     private void recalculateCameraFront() {
-        final Vector3 direction = new Vector3();
-        direction.x = Math.cos(yaw) * Math.cos(pitch);
-        direction.y = Math.sin(pitch);
-        direction.z = Math.sin(yaw) * Math.cos(pitch);
-        cameraFront = direction.normalized();
-        final Vector3 z = new Vector3(cameraFront);
-        final Vector3 yTemp = Vector3.UP();
-        final Vector3 x = z.cross(yTemp);
-        final Vector3 y = z.cross(x);
-        transform.setX(x);
-        transform.setY(y);
-        transform.setZ(z);
+        cameraFront.set(
+                Math.cos(yaw) * Math.cos(pitch),
+                Math.sin(pitch),
+                Math.sin(yaw) * Math.cos(pitch)
+        );
+        cameraFront.normalize();
+        cameraFront.cross(up, axisX);
+        // Both cross products have length cos(pitch), the axes must be unit length to form a rotation
+        axisX.normalize();
+        cameraFront.cross(axisX, axisY);
+        axisY.normalize();
+        if (transformComponent != null) {
+            transformComponent.getRotation().setFromAxes(axisX, axisY, cameraFront);
+            transformComponent.markDirty();
+            return;
+        }
+        transform.setX(axisX);
+        transform.setY(axisY);
+        transform.setZ(cameraFront);
+        viewDirty = true;
     }
 
+    /**
+     * Rebuilds the view matrix (and everything derived from it) immediately, regardless of
+     * whether the camera has changed. Usually update() should be used instead.
+     */
     public void recalculateViewMatrix() {
+        viewDirty = true;
+        update();
+    }
+
+    private void rebuildViewMatrix() {
         //transform.multiply(transform.getOrigin().translated(new Vector3(0, 0, -1)))
-        viewMatrix = Matrix4.lookAtNew(transform.getOrigin(), transform.getOrigin().translated(cameraFront), new Vector3(0, 1, 0));
+        if (transformComponent != null) {
+            transformComponent.getMatrix();
+        }
+        transform.getOrigin(position);
+        position.translated(cameraFront, target);
+        Matrix4.lookAtNew(position, target, up, viewMatrix);
+        viewMatrixf.set(viewMatrix);
+        positionf.set(position);
+        viewDirty = false;
+        viewVersion++;
     }
 
-    private void recalculateProjectionMatrix() {
+    private void rebuildProjectionMatrix() {
         projectionMatrix = Matrix4.perspective(fov, aspectRatio, near, far);
+        projectionMatrixf.set(projectionMatrix);
+        projectionDirty = false;
+        projectionVersion++;
     }
 }
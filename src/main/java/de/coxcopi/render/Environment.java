@@ -10,4 +10,13 @@ public class Environment {
     public Color getBackgroundColor() {
         return ambientLightColor.multiplied(ambientLightIntensity);
     }
+
+    /**
+     * Same as getBackgroundColor(), but stores the result in dest instead of allocating a new color.
+     * @param dest The color to store the result in.
+     * @return The dest color.
+     */
+    public Color getBackgroundColor(Color dest) {
+        return ambientLightColor.multiplied(ambientLightIntensity, dest);
+    }
 }
@@ -0,0 +1,122 @@
+package de.coxcopi.render;
+
+import de.coxcopi.util.Color;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL31;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * Uniform buffer holding the data that is the same for every draw call of a frame (camera
+ * matrices and position, ambient light). It is written at most once per frame and bound to a
+ * fixed binding point, so shaders declaring the block don't need any per-draw uploads for it.
+ * <p>
+ * Shaders access the data through the following block (std140 layout), which ShaderParser
+ * assigns to the binding point automatically:
+ * <pre>
+ * layout(std140) uniform FrameData {
+ *     mat4 viewMatrix;
+ *     mat4 projectionMatrix;
+ *     vec3 viewPosition;
+ *     vec3 ambientLight;
+ * };
+ * </pre>
+ */
+public class FrameUniforms {
+
+    public static final String BLOCK_NAME = "FrameData";
+    public static final int BINDING = 0;
+
+    // std140 offsets (vec3 members are aligned to 16 bytes)
+    private static final int VIEW_MATRIX_OFFSET = 0;
+    private static final int PROJECTION_MATRIX_OFFSET = 64;
+    private static final int VIEW_POSITION_OFFSET = 128;
+    private static final int AMBIENT_LIGHT_OFFSET = 144;
+    public static final int SIZE = 160;
+
+    private final int bufferID;
+    private final ByteBuffer data;
+    private final FloatBuffer dataFloats;
+    private long uploadedCameraVersion = -1;
+    private Camera uploadedCamera = null;
+    private float ambientR = Float.NaN;
+    private float ambientG = Float.NaN;
+    private float ambientB = Float.NaN;
+
+    /**
+     * Creates the uniform buffer and binds it to the binding point. Requires a GL context.
+     */
+    public FrameUniforms() {
+        data = MemoryUtil.memCalloc(SIZE);
+        dataFloats = data.asFloatBuffer();
+        bufferID = GL15.glGenBuffers();
+        GLStateCache.bindBuffer(GL31.GL_UNIFORM_BUFFER, bufferID);
+        GL15.glBufferData(GL31.GL_UNIFORM_BUFFER, SIZE, GL15.GL_DYNAMIC_DRAW);
+        GLStateCache.bindBuffer(GL31.GL_UNIFORM_BUFFER, 0);
+        GLStateCache.bindBufferBase(GL31.GL_UNIFORM_BUFFER, BINDING, bufferID);
+    }
+
+    /**
+     * Writes the camera and environment data into the buffer. Nothing is uploaded if neither the
+     * camera's version nor the ambient light has changed since the last call.
+     * @param camera The camera. Should be updated first, see Camera.update().
+     * @param environment The environment.
+     */
+    public void update(Camera camera, Environment environment) {
+        final Color ambient = environment.ambientLightColor;
+        final double intensity = environment.ambientLightIntensity;
+        final float r = (float) (ambient.r * intensity);
+        final float g = (float) (ambient.g * intensity);
+        final float b = (float) (ambient.b * intensity);
+        final boolean cameraChanged = camera != uploadedCamera || camera.getVersion() != uploadedCameraVersion;
+        final boolean ambientChanged = r != ambientR || g != ambientG || b != ambientB;
+        if (!cameraChanged && !ambientChanged) {
+            return;
+        }
+        if (cameraChanged) {
+            camera.viewMatrixf.get(VIEW_MATRIX_OFFSET / Float.BYTES, dataFloats);
+            camera.projectionMatrixf.get(PROJECTION_MATRIX_OFFSET / Float.BYTES, dataFloats);
+            data.putFloat(VIEW_POSITION_OFFSET, camera.positionf.x);
+            data.putFloat(VIEW_POSITION_OFFSET + 4, camera.positionf.y);
+            data.putFloat(VIEW_POSITION_OFFSET + 8, camera.positionf.z);
+            uploadedCamera = camera;
+            uploadedCameraVersion = camera.getVersion();
+        }
+        if (ambientChanged) {
+            data.putFloat(AMBIENT_LIGHT_OFFSET, r);
+            data.putFloat(AMBIENT_LIGHT_OFFSET + 4, g);
+            data.putFloat(AMBIENT_LIGHT_OFFSET + 8, b);
+            ambientR = r;
+            ambientG = g;
+            ambientB = b;
+        }
+        GLStateCache.bindBuffer(GL31.GL_UNIFORM_BUFFER, bufferID);
+        GL15.glBufferSubData(GL31.GL_UNIFORM_BUFFER, 0, data);
+        GLStateCache.bindBuffer(GL31.GL_UNIFORM_BUFFER, 0);
+    }
+
+    /**
+     * Assigns the FrameData block of a linked program to the binding point, if the program declares it.
+     * @param programID The program.
+     * @return True if the program declares the block.
+     */
+    public static boolean bindBlock(int programID) {
+        final int blockIndex = GL31.glGetUniformBlockIndex(programID, BLOCK_NAME);
+        if (blockIndex == GL31.GL_INVALID_INDEX) {
+            return false;
+        }
+        GL31.glUniformBlockBinding(programID, blockIndex, BINDING);
+        return true;
+    }
+
+    public int getBufferID() {
+        return bufferID;
+    }
+
+    public void destroy() {
+        GLStateCache.deleteBuffer(bufferID);
+        MemoryUtil.memFree(data);
+    }
+}
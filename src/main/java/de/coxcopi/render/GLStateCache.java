@@ -0,0 +1,201 @@
+package de.coxcopi.render;
+
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL31;
+import org.lwjgl.opengl.GL43;
+
+/**
+ * Shadow copy of the GL binding state (current program, vertex array and buffer bindings).
+ * All binds of the engine go through this class, which skips binds that wouldn't change anything.
+ * <p>
+ * The element array buffer binding is part of the vertex array's state, so it becomes unknown
+ * whenever a different vertex array is bound. Deleting objects through this class keeps the shadow
+ * copy in sync with GL, which resets bindings of deleted buffers and vertex arrays.
+ * If GL state is changed without going through this class (e.g. by a library), call invalidate().
+ * <p>
+ * NOTE: Must only be used on the thread owning the GL context.
+ */
+public class GLStateCache {
+
+    /**
+     * Marks a binding whose value is unknown, so that the next bind is issued regardless.
+     */
+    private static final int UNKNOWN = -1;
+
+    private static int program = UNKNOWN;
+    private static int vertexArray = UNKNOWN;
+    private static int arrayBuffer = UNKNOWN;
+    private static int elementArrayBuffer = UNKNOWN;
+    private static int uniformBuffer = UNKNOWN;
+    private static int shaderStorageBuffer = UNKNOWN;
+    private static long bindsIssued = 0;
+    private static long bindsSkipped = 0;
+
+    /**
+     * Makes the program current (glUseProgram), unless it already is.
+     * @param programID The program, or 0.
+     */
+    public static void useProgram(int programID) {
+        if (program == programID) {
+            bindsSkipped++;
+            return;
+        }
+        GL20.glUseProgram(programID);
+        program = programID;
+        bindsIssued++;
+    }
+
+    /**
+     * Binds a vertex array, unless it already is bound.
+     * @param vao The vertex array, or 0.
+     */
+    public static void bindVertexArray(int vao) {
+        if (vertexArray == vao) {
+            bindsSkipped++;
+            return;
+        }
+        GL30.glBindVertexArray(vao);
+        vertexArray = vao;
+        // The element array buffer binding belongs to the vertex array
+        elementArrayBuffer = UNKNOWN;
+        bindsIssued++;
+    }
+
+    /**
+     * Binds a buffer to a target, unless it already is bound. Targets that aren't tracked are always bound.
+     * @param target The target, e.g. GL_ARRAY_BUFFER.
+     * @param buffer The buffer, or 0.
+     */
+    public static void bindBuffer(int target, int buffer) {
+        if (getBuffer(target) == buffer) {
+            bindsSkipped++;
+            return;
+        }
+        GL15.glBindBuffer(target, buffer);
+        setBuffer(target, buffer);
+        bindsIssued++;
+    }
+
+    /**
+     * Binds a buffer to an indexed binding point (glBindBufferBase). This also binds the buffer to the
+     * target's generic binding point. Indexed binding points aren't tracked, so the bind is always issued.
+     * @param target The target, e.g. GL_UNIFORM_BUFFER.
+     * @param index The binding point.
+     * @param buffer The buffer.
+     */
+    public static void bindBufferBase(int target, int index, int buffer) {
+        GL30.glBindBufferBase(target, index, buffer);
+        setBuffer(target, buffer);
+        bindsIssued++;
+    }
+
+    /**
+     * Deletes a buffer. GL unbinds it from every target it is bound to.
+     */
+    public static void deleteBuffer(int buffer) {
+        GL15.glDeleteBuffers(buffer);
+        if (arrayBuffer == buffer) {
+            arrayBuffer = 0;
+        }
+        if (elementArrayBuffer == buffer) {
+            elementArrayBuffer = 0;
+        }
+        if (uniformBuffer == buffer) {
+            uniformBuffer = 0;
+        }
+        if (shaderStorageBuffer == buffer) {
+            shaderStorageBuffer = 0;
+        }
+    }
+
+    /**
+     * Deletes a vertex array. If it is bound, GL binds vertex array 0 instead.
+     */
+    public static void deleteVertexArray(int vao) {
+        GL30.glDeleteVertexArrays(vao);
+        if (vertexArray == vao) {
+            vertexArray = 0;
+            elementArrayBuffer = UNKNOWN;
+        }
+    }
+
+    /**
+     * Deletes a program. A current program stays in use until another one is made current, but
+     * its ID may be reused, so the shadow copy forgets it.
+     */
+    public static void deleteProgram(int programID) {
+        GL20.glDeleteProgram(programID);
+        if (program == programID) {
+            program = UNKNOWN;
+        }
+    }
+
+    /**
+     * @return The current program according to the shadow copy, or -1 if it is unknown.
+     */
+    public static int getProgram() {
+        return program;
+    }
+
+    /**
+     * @return The bound vertex array according to the shadow copy, or -1 if it is unknown.
+     */
+    public static int getVertexArray() {
+        return vertexArray;
+    }
+
+    /**
+     * Forgets the whole shadow copy, so that the next binds are issued regardless. Must be called
+     * after GL state was changed without going through this class.
+     */
+    public static void invalidate() {
+        program = UNKNOWN;
+        vertexArray = UNKNOWN;
+        arrayBuffer = UNKNOWN;
+        elementArrayBuffer = UNKNOWN;
+        uniformBuffer = UNKNOWN;
+        shaderStorageBuffer = UNKNOWN;
+    }
+
+    /**
+     * @return The amount of binds passed on to GL since the last call to resetCounters().
+     */
+    public static long getBindsIssued() {
+        return bindsIssued;
+    }
+
+    /**
+     * @return The amount of binds skipped because the object was already bound.
+     */
+    public static long getBindsSkipped() {
+        return bindsSkipped;
+    }
+
+    public static void resetCounters() {
+        bindsIssued = 0;
+        bindsSkipped = 0;
+    }
+
+    private static int getBuffer(int target) {
+        return switch (target) {
+            case GL15.GL_ARRAY_BUFFER -> arrayBuffer;
+            case GL15.GL_ELEMENT_ARRAY_BUFFER -> elementArrayBuffer;
+            case GL31.GL_UNIFORM_BUFFER -> uniformBuffer;
+            case GL43.GL_SHADER_STORAGE_BUFFER -> shaderStorageBuffer;
+            default -> UNKNOWN;
+        };
+    }
+
+    private static void setBuffer(int target, int buffer) {
+        switch (target) {
+            case GL15.GL_ARRAY_BUFFER -> arrayBuffer = buffer;
+            case GL15.GL_ELEMENT_ARRAY_BUFFER -> elementArrayBuffer = buffer;
+            case GL31.GL_UNIFORM_BUFFER -> uniformBuffer = buffer;
+            case GL43.GL_SHADER_STORAGE_BUFFER -> shaderStorageBuffer = buffer;
+            default -> {
+            }
+        }
+    }
+}
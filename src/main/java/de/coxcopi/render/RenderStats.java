@@ -0,0 +1,61 @@
+package de.coxcopi.render;
+
+/**
+ * Statistics of the last rendered frame, see Renderer.getRenderStats().
+ */
+public class RenderStats {
+    /**
+     * Amount of visible meshes that were tested against the camera's frustum.
+     */
+    public int tested;
+    /**
+     * Amount of meshes that were skipped because they were outside the frustum.
+     */
+    public int culled;
+    /**
+     * Amount of meshes that were drawn.
+     */
+    public int drawn;
+    /**
+     * Amount of uniform uploads issued through uniform handles.
+     */
+    public long uniformUploads;
+    /**
+     * Amount of uniform uploads skipped because the program already held the value.
+     */
+    public long uniformUploadsSkipped;
+    /**
+     * Amount of program, vertex array and buffer binds passed on to GL while drawing.
+     */
+    public long bindsIssued;
+    /**
+     * Amount of binds skipped while drawing because the object was already bound, see GLStateCache.
+     */
+    public long bindsSkipped;
+    /**
+     * Amount of material buffer slots uploaded because their material had changed.
+     */
+    public int materialsUploaded;
+
+    /**
+     * Resets all counters to 0. Called by the renderer at the start of every frame.
+     */
+    public void reset() {
+        tested = 0;
+        culled = 0;
+        drawn = 0;
+        uniformUploads = 0;
+        uniformUploadsSkipped = 0;
+        bindsIssued = 0;
+        bindsSkipped = 0;
+        materialsUploaded = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "tested: " + tested + ", culled: " + culled + ", drawn: " + drawn
+                + ", uniform uploads: " + uniformUploads + ", skipped: " + uniformUploadsSkipped
+                + ", binds: " + bindsIssued + ", skipped: " + bindsSkipped
+                + ", materials uploaded: " + materialsUploaded;
+    }
+}
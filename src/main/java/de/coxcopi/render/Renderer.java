@@ -1,6 +1,10 @@
 package de.coxcopi.render;
 
 import de.coxcopi.input.Input;
+import de.coxcopi.material.MaterialBuffer;
+import de.coxcopi.material.shader.ShaderCompiler;
+import de.coxcopi.material.shader.ShaderRegistry;
+import de.coxcopi.material.shader.Uniform;
 import de.coxcopi.mesh.Mesh;
 import de.coxcopi.util.Color;
 import de.coxcopi.util.math.MathUtils;
@@ -16,6 +20,7 @@ import org.lwjgl.system.MemoryStack;
 
 import java.nio.IntBuffer;
 import java.util.ArrayList;
+import java.util.List;
 
 import static org.lwjgl.glfw.Callbacks.glfwFreeCallbacks;
 import static org.lwjgl.glfw.GLFW.*;
@@ -27,11 +32,36 @@ public class Renderer {
     private double y = 0;
 
     private final ArrayList<Mesh> renderQueue = new ArrayList<>();
+    /**
+     * Meshes of the render queue that passed frustum culling in the current frame.
+     */
+    private final ArrayList<Mesh> visibleMeshes = new ArrayList<>();
+    private final RenderStats renderStats = new RenderStats();
+    /**
+     * Per-frame uniform buffer with the camera and environment data, created by init().
+     */
+    private FrameUniforms frameUniforms;
+    /**
+     * If false, meshes outside the camera's frustum are drawn as well.
+     */
+    public boolean frustumCulling = true;
     public long window;
     public static final Camera camera = new Camera(60.0, 800.0 / 600.0);
     public static final Environment environment = new Environment();
+    /**
+     * Shared off-heap storage for the transforms of large amounts of meshes, see Mesh.setTransformSlot().
+     */
+    public static final TransformStore transformStore = new TransformStore(1024);
+    /**
+     * Parameters of all materials, see MaterialBuffer. Changed materials are uploaded once per frame.
+     */
+    public static final MaterialBuffer materialBuffer = new MaterialBuffer(256);
     private double lastFrame = 0.0;
     private double camSpeed = 2.5;
+    // Scratch objects reused every frame by renderTick().
+    private final Vector3 velocity = new Vector3();
+    private final Vector3 axis = new Vector3();
+    private final Color backgroundColor = new Color();
 
     /**
      * Initializes GLFW, OpenGL and the LWJGL context. Creates a new window.
@@ -99,6 +129,10 @@ public class Renderer {
         // creates the GLCapabilities instance and makes the OpenGL
         // bindings available for use.
         GL.createCapabilities();
+        ShaderRegistry.setGLThread(Thread.currentThread());
+
+        GLStateCache.invalidate();
+        frameUniforms = new FrameUniforms();
 
         setParams();
 
@@ -133,18 +167,18 @@ public class Renderer {
 
         double mouseSensitivity = 0.1;
 
-        Vector3 vel = new Vector3();
+        final Vector3 vel = velocity.set(0, 0, 0);
         if (Input.isKeyPressed(GLFW_KEY_W)) {
-            vel.translate(camera.transform.getZ());
+            vel.translate(camera.transform.getZ(axis));
         }
         if (Input.isKeyPressed(GLFW_KEY_S)) {
-            vel.translate(camera.transform.getZ().inverted());
+            vel.subtract(camera.transform.getZ(axis));
         }
         if (Input.isKeyPressed(GLFW_KEY_A)) {
-            vel.translate(camera.transform.getX());
+            vel.translate(camera.transform.getX(axis));
         }
         if (Input.isKeyPressed(GLFW_KEY_D)) {
-            vel.translate(camera.transform.getX().inverted());
+            vel.subtract(camera.transform.getX(axis));
         }
         if (Input.isKeyPressed(GLFW_KEY_LEFT_SHIFT)) {
             camSpeed += 0.1;
@@ -153,30 +187,43 @@ public class Renderer {
             camSpeed -= 0.1;
         }
         camSpeed = MathUtils.clamp(camSpeed, 0.0, 30.0);
-        vel = vel.normalized().multiplied(camSpeed * deltaTime);
+        vel.normalize();
+        vel.multiply(camSpeed * deltaTime);
 
         double mX = Input.getMouseDeltaX() * mouseSensitivity * deltaTime;
         double mY = Input.getMouseDeltaY() * mouseSensitivity * deltaTime;
 
         camera.rotate(-mX, -mY);
 
-        camera.transform.translate(vel);
-        camera.recalculateViewMatrix();
+        camera.move(vel);
+        camera.update();
+        frameUniforms.update(camera, environment);
+
+        transformStore.updateWorldMatrices();
+        ShaderCompiler.poll();
+        ShaderRegistry.deleteReleasedPrograms();
 
         glClear(GL11.GL_COLOR_BUFFER_BIT | GL11.GL_DEPTH_BUFFER_BIT);
-        final Color bg = environment.getBackgroundColor();
+        final Color bg = environment.getBackgroundColor(backgroundColor);
         glClearColor((float) bg.r, (float) bg.g, (float) bg.b, 1f);
 
-        for (Mesh mesh : renderQueue) {
-            if (mesh == null || !mesh.visible) {
-                continue;
-            }
-
-            mesh.transform.rotateY(0.01);
+        cullRenderQueue();
+        updateMaterialBuffer();
 
+        final long uploadsIssued = Uniform.getUploadsIssued();
+        final long uploadsSkipped = Uniform.getUploadsSkipped();
+        final long bindsIssued = GLStateCache.getBindsIssued();
+        final long bindsSkipped = GLStateCache.getBindsSkipped();
+        for (int i = 0, size = visibleMeshes.size(); i < size; i++) {
+            final Mesh mesh = visibleMeshes.get(i);
             mesh.render();
             GL20.glDrawElements(GL_TRIANGLES, mesh.getElementCount(), GL20.GL_UNSIGNED_INT, 0);
         }
+        renderStats.drawn = visibleMeshes.size();
+        renderStats.uniformUploads = Uniform.getUploadsIssued() - uploadsIssued;
+        renderStats.uniformUploadsSkipped = Uniform.getUploadsSkipped() - uploadsSkipped;
+        renderStats.bindsIssued = GLStateCache.getBindsIssued() - bindsIssued;
+        renderStats.bindsSkipped = GLStateCache.getBindsSkipped() - bindsSkipped;
         //System.out.println(Math.round(1.0 / deltaTime));
         glfwSwapBuffers(window);
         Input.update();
@@ -184,11 +231,70 @@ public class Renderer {
     }
 
 
+    /**
+     * Updates the transforms of all visible meshes in the render queue and collects the ones
+     * inside the camera's frustum, without issuing any GL calls. Called by renderTick().
+     */
+    public void cullRenderQueue() {
+        renderStats.reset();
+        visibleMeshes.clear();
+        for (int i = 0, size = renderQueue.size(); i < size; i++) {
+            final Mesh mesh = renderQueue.get(i);
+            if (mesh == null || !mesh.visible) {
+                continue;
+            }
+            mesh.updateTransform();
+            if (frustumCulling) {
+                renderStats.tested++;
+                if (!mesh.isInFrustum(camera.frustum)) {
+                    renderStats.culled++;
+                    continue;
+                }
+            }
+            visibleMeshes.add(mesh);
+        }
+    }
+
+    /**
+     * Writes the parameters of the visible meshes' materials into the material buffer and uploads
+     * the ones that have changed. Called by renderTick() after culling.
+     */
+    private void updateMaterialBuffer() {
+        if (!MaterialBuffer.isSupported()) {
+            return;
+        }
+        for (int i = 0, size = visibleMeshes.size(); i < size; i++) {
+            materialBuffer.update(visibleMeshes.get(i).material);
+        }
+        materialBuffer.upload();
+        renderStats.materialsUploaded = materialBuffer.getSlotsUploaded();
+    }
+
+    /**
+     * @return The meshes that passed the last call to cullRenderQueue(). The list is reused every frame.
+     */
+    public List<Mesh> getVisibleMeshes() {
+        return visibleMeshes;
+    }
+
+    /**
+     * @return The statistics of the last rendered frame. The same object is reused every frame.
+     */
+    public RenderStats getRenderStats() {
+        return renderStats;
+    }
+
     private void onWindowResize(long window, int width, int height) {
         GL30.glViewport(0, 0, width, height);
+        if (height > 0) {
+            camera.setAspectRatio((double) width / height);
+        }
     }
 
     public void destroy() {
+        transformStore.destroy();
+        frameUniforms.destroy();
+        materialBuffer.destroy();
         glfwFreeCallbacks(window);
         glfwDestroyWindow(window);
         glfwTerminate();
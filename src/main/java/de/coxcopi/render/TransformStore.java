@@ -0,0 +1,395 @@
+package de.coxcopi.render;
+
+import de.coxcopi.util.math.Matrix4;
+import de.coxcopi.util.math.Matrix4f;
+import org.jetbrains.annotations.NotNull;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Stores the local and world matrices of a large number of objects in two contiguous
+ * off-heap float arrays (16 floats per slot, column-major), instead of one heap
+ * Matrix4 per object.
+ * <p>
+ * Slots are addressed by integer handles that stay valid until the slot is freed,
+ * even when the store grows. A slot may have a parent slot, in which case its world
+ * matrix is parent.world * local, otherwise the world matrix equals the local matrix.
+ * World matrices are recalculated by updateWorldMatrices(), which does nothing if no
+ * local matrix or parent has changed since the last call.
+ */
+public class TransformStore {
+
+    public static final int NO_PARENT = -1;
+    public static final int FLOATS_PER_MATRIX = 16;
+    public static final int BYTES_PER_MATRIX = FLOATS_PER_MATRIX * Float.BYTES;
+
+    private FloatBuffer local;
+    private FloatBuffer world;
+    private int capacity;
+    /**
+     * Amount of slots that have ever been handed out. Every handle is below this value.
+     */
+    private int size = 0;
+    private int[] parents;
+    /**
+     * Children of every slot as a doubly linked list (first child, next and previous sibling, NO_PARENT
+     * if there is none), so that freeing or reparenting a slot only touches its own children.
+     */
+    private int[] firstChildren;
+    private int[] nextSiblings;
+    private int[] previousSiblings;
+    private int[] depths;
+    private boolean[] allocated;
+    private int[] freeHandles;
+    private int freeCount = 0;
+    /**
+     * Slot handles sorted by depth, so that parents are always updated before their children.
+     */
+    private int[] updateOrder;
+    private int updateOrderLength = 0;
+    private boolean hierarchyDirty = false;
+    private boolean worldDirty = false;
+
+    /**
+     * Constructs a new store.
+     * @param initialCapacity The amount of slots to reserve memory for. The store grows when needed.
+     */
+    public TransformStore(int initialCapacity) {
+        capacity = Math.max(1, initialCapacity);
+        local = MemoryUtil.memAllocFloat(capacity * FLOATS_PER_MATRIX);
+        world = MemoryUtil.memAllocFloat(capacity * FLOATS_PER_MATRIX);
+        parents = new int[capacity];
+        firstChildren = new int[capacity];
+        nextSiblings = new int[capacity];
+        previousSiblings = new int[capacity];
+        depths = new int[capacity];
+        allocated = new boolean[capacity];
+        freeHandles = new int[capacity];
+        updateOrder = new int[capacity];
+    }
+
+    /**
+     * Allocates a new slot without a parent. Its local and world matrix are set to the identity.
+     * @return The handle of the slot.
+     */
+    public int allocate() {
+        return allocate(NO_PARENT);
+    }
+
+    /**
+     * Allocates a new slot. Its local matrix is set to the identity.
+     * @param parent The handle of the parent slot, or NO_PARENT.
+     * @return The handle of the slot.
+     */
+    public int allocate(int parent) {
+        final int handle;
+        if (freeCount > 0) {
+            handle = freeHandles[--freeCount];
+        } else {
+            if (size == capacity) {
+                grow(capacity * 2);
+            }
+            handle = size++;
+        }
+        allocated[handle] = true;
+        parents[handle] = NO_PARENT;
+        firstChildren[handle] = NO_PARENT;
+        nextSiblings[handle] = NO_PARENT;
+        previousSiblings[handle] = NO_PARENT;
+        setIdentity(local, handle * FLOATS_PER_MATRIX);
+        setIdentity(world, handle * FLOATS_PER_MATRIX);
+        setParent(handle, parent);
+        hierarchyDirty = true;
+        worldDirty = true;
+        return handle;
+    }
+
+    /**
+     * Frees a slot. Its handle may be handed out again by a later call to allocate().
+     * Children of the slot lose their parent.
+     * @param handle The handle of the slot.
+     */
+    public void free(int handle) {
+        checkHandle(handle);
+        unlink(handle);
+        for (int child = firstChildren[handle]; child != NO_PARENT; ) {
+            final int next = nextSiblings[child];
+            parents[child] = NO_PARENT;
+            nextSiblings[child] = NO_PARENT;
+            previousSiblings[child] = NO_PARENT;
+            child = next;
+        }
+        firstChildren[handle] = NO_PARENT;
+        allocated[handle] = false;
+        freeHandles[freeCount++] = handle;
+        hierarchyDirty = true;
+        worldDirty = true;
+    }
+
+    /**
+     * Sets the parent of a slot.
+     * @param handle The handle of the slot.
+     * @param parent The handle of the parent slot, or NO_PARENT.
+     */
+    public void setParent(int handle, int parent) {
+        checkHandle(handle);
+        if (parent != NO_PARENT) {
+            checkHandle(parent);
+            for (int p = parent; p != NO_PARENT; p = parents[p]) {
+                if (p == handle) {
+                    throw new IllegalArgumentException("Setting slot " + parent + " as parent of slot " + handle + " would create a cycle.");
+                }
+            }
+        }
+        unlink(handle);
+        parents[handle] = parent;
+        if (parent != NO_PARENT) {
+            final int first = firstChildren[parent];
+            nextSiblings[handle] = first;
+            if (first != NO_PARENT) {
+                previousSiblings[first] = handle;
+            }
+            firstChildren[parent] = handle;
+        }
+        hierarchyDirty = true;
+        worldDirty = true;
+    }
+
+    public int getParent(int handle) {
+        checkHandle(handle);
+        return parents[handle];
+    }
+
+    public boolean isAllocated(int handle) {
+        return handle >= 0 && handle < size && allocated[handle];
+    }
+
+    /**
+     * @return An upper bound for all handles, i.e. the amount of slots ever handed out.
+     */
+    public int size() {
+        return size;
+    }
+
+    public void setLocal(int handle, @NotNull Matrix4 matrix) {
+        checkHandle(handle);
+        matrix.get(handle * FLOATS_PER_MATRIX, local);
+        worldDirty = true;
+    }
+
+    public void setLocal(int handle, @NotNull Matrix4f matrix) {
+        checkHandle(handle);
+        matrix.get(handle * FLOATS_PER_MATRIX, local);
+        worldDirty = true;
+    }
+
+    /**
+     * Translates the local matrix of a slot.
+     * @param handle The handle of the slot.
+     * @param x Translation in x direction.
+     * @param y Translation in y direction.
+     * @param z Translation in z direction.
+     */
+    public void translateLocal(int handle, float x, float y, float z) {
+        checkHandle(handle);
+        final int o = handle * FLOATS_PER_MATRIX;
+        local.put(o + 12, local.get(o + 12) + x);
+        local.put(o + 13, local.get(o + 13) + y);
+        local.put(o + 14, local.get(o + 14) + z);
+        worldDirty = true;
+    }
+
+    public Matrix4 getLocal(int handle, @NotNull Matrix4 dest) {
+        checkHandle(handle);
+        dest.set(handle * FLOATS_PER_MATRIX, local);
+        return dest;
+    }
+
+    /**
+     * Copies the world matrix of a slot into dest. Call updateWorldMatrices() first
+     * to make sure it is up to date.
+     * @param handle The handle of the slot.
+     * @param dest The matrix to copy to.
+     * @return The dest matrix.
+     */
+    public Matrix4 getWorld(int handle, @NotNull Matrix4 dest) {
+        checkHandle(handle);
+        dest.set(handle * FLOATS_PER_MATRIX, world);
+        return dest;
+    }
+
+    /**
+     * Returns the buffer holding all local matrices. Slot n occupies floats n * 16 to n * 16 + 15.
+     * NOTE: The buffer is replaced when the store grows, so it should not be kept around.
+     */
+    public FloatBuffer getLocalBuffer() {
+        return local;
+    }
+
+    /**
+     * Returns the buffer holding all world matrices. Slot n occupies floats n * 16 to n * 16 + 15.
+     * NOTE: The buffer is replaced when the store grows, so it should not be kept around.
+     */
+    public FloatBuffer getWorldBuffer() {
+        return world;
+    }
+
+    /**
+     * Recalculates the world matrices of all slots, parents before children.
+     * Does nothing if nothing has changed since the last call.
+     */
+    public void updateWorldMatrices() {
+        if (!worldDirty) {
+            return;
+        }
+        if (hierarchyDirty) {
+            rebuildUpdateOrder();
+        }
+        for (int i = 0; i < updateOrderLength; i++) {
+            final int handle = updateOrder[i];
+            final int parent = parents[handle];
+            final int o = handle * FLOATS_PER_MATRIX;
+            if (parent == NO_PARENT) {
+                for (int j = 0; j < 16; j++) {
+                    world.put(o + j, local.get(o + j));
+                }
+            } else {
+                multiply(world, parent * FLOATS_PER_MATRIX, local, o, world, o);
+            }
+        }
+        worldDirty = false;
+    }
+
+    /**
+     * Uploads the world matrices of a range of slots into the buffer object currently bound
+     * to the given target with a single glBufferSubData call. Freed slots inside the range
+     * are uploaded as well (with stale values).
+     * @param target The buffer target, e.g. GL_ARRAY_BUFFER or GL_UNIFORM_BUFFER.
+     * @param bufferOffset The byte offset inside the buffer object to write to.
+     * @param first The first slot to upload.
+     * @param count The amount of slots to upload.
+     */
+    public void uploadWorldMatrices(int target, long bufferOffset, int first, int count) {
+        if (first < 0 || count < 0 || first + count > size) {
+            throw new IndexOutOfBoundsException("Slot range " + first + " to " + (first + count) + " is out of bounds (size " + size + ").");
+        }
+        if (count == 0) {
+            return;
+        }
+        updateWorldMatrices();
+        final FloatBuffer range = world.slice(first * FLOATS_PER_MATRIX, count * FLOATS_PER_MATRIX);
+        GL15.glBufferSubData(target, bufferOffset, range);
+    }
+
+    /**
+     * Frees the store's off-heap memory. The store must not be used afterwards.
+     */
+    public void destroy() {
+        MemoryUtil.memFree(local);
+        MemoryUtil.memFree(world);
+        local = null;
+        world = null;
+    }
+
+    private void grow(int newCapacity) {
+        local = MemoryUtil.memRealloc(local, newCapacity * FLOATS_PER_MATRIX);
+        world = MemoryUtil.memRealloc(world, newCapacity * FLOATS_PER_MATRIX);
+        parents = Arrays.copyOf(parents, newCapacity);
+        firstChildren = Arrays.copyOf(firstChildren, newCapacity);
+        nextSiblings = Arrays.copyOf(nextSiblings, newCapacity);
+        previousSiblings = Arrays.copyOf(previousSiblings, newCapacity);
+        depths = Arrays.copyOf(depths, newCapacity);
+        allocated = Arrays.copyOf(allocated, newCapacity);
+        freeHandles = Arrays.copyOf(freeHandles, newCapacity);
+        updateOrder = Arrays.copyOf(updateOrder, newCapacity);
+        capacity = newCapacity;
+    }
+
+    /**
+     * Sorts all allocated slots by their depth in the hierarchy (counting sort).
+     */
+    private void rebuildUpdateOrder() {
+        int maxDepth = 0;
+        for (int i = 0; i < size; i++) {
+            if (!allocated[i]) {
+                continue;
+            }
+            int depth = 0;
+            for (int p = parents[i]; p != NO_PARENT; p = parents[p]) {
+                depth++;
+            }
+            depths[i] = depth;
+            maxDepth = Math.max(maxDepth, depth);
+        }
+        final int[] offsets = new int[maxDepth + 2];
+        for (int i = 0; i < size; i++) {
+            if (allocated[i]) {
+                offsets[depths[i] + 1]++;
+            }
+        }
+        for (int d = 1; d < offsets.length; d++) {
+            offsets[d] += offsets[d - 1];
+        }
+        updateOrderLength = offsets[maxDepth + 1];
+        for (int i = 0; i < size; i++) {
+            if (allocated[i]) {
+                updateOrder[offsets[depths[i]]++] = i;
+            }
+        }
+        hierarchyDirty = false;
+    }
+
+    /**
+     * Removes a slot from the child list of its parent.
+     */
+    private void unlink(int handle) {
+        final int parent = parents[handle];
+        if (parent == NO_PARENT) {
+            return;
+        }
+        final int previous = previousSiblings[handle];
+        final int next = nextSiblings[handle];
+        if (previous == NO_PARENT) {
+            firstChildren[parent] = next;
+        } else {
+            nextSiblings[previous] = next;
+        }
+        if (next != NO_PARENT) {
+            previousSiblings[next] = previous;
+        }
+        nextSiblings[handle] = NO_PARENT;
+        previousSiblings[handle] = NO_PARENT;
+    }
+
+    private void checkHandle(int handle) {
+        if (!isAllocated(handle)) {
+            throw new IllegalArgumentException("Invalid transform handle: " + handle + ".");
+        }
+    }
+
+    private static void setIdentity(FloatBuffer buffer, int o) {
+        for (int i = 0; i < 16; i++) {
+            buffer.put(o + i, (i % 5 == 0) ? 1f : 0f);
+        }
+    }
+
+    /**
+     * Computes a * b, reading a at index ao and b at index bo, and writes the result to dest at index o.
+     */
+    private static void multiply(FloatBuffer a, int ao, FloatBuffer b, int bo, FloatBuffer dest, int o) {
+        final float a00 = a.get(ao), a01 = a.get(ao + 1), a02 = a.get(ao + 2), a03 = a.get(ao + 3);
+        final float a10 = a.get(ao + 4), a11 = a.get(ao + 5), a12 = a.get(ao + 6), a13 = a.get(ao + 7);
+        final float a20 = a.get(ao + 8), a21 = a.get(ao + 9), a22 = a.get(ao + 10), a23 = a.get(ao + 11);
+        final float a30 = a.get(ao + 12), a31 = a.get(ao + 13), a32 = a.get(ao + 14), a33 = a.get(ao + 15);
+        for (int c = 0; c < 16; c += 4) {
+            final float b0 = b.get(bo + c), b1 = b.get(bo + c + 1), b2 = b.get(bo + c + 2), b3 = b.get(bo + c + 3);
+            dest.put(o + c, a00 * b0 + a10 * b1 + a20 * b2 + a30 * b3);
+            dest.put(o + c + 1, a01 * b0 + a11 * b1 + a21 * b2 + a31 * b3);
+            dest.put(o + c + 2, a02 * b0 + a12 * b1 + a22 * b2 + a32 * b3);
+            dest.put(o + c + 3, a03 * b0 + a13 * b1 + a23 * b2 + a33 * b3);
+        }
+    }
+}
@@ -95,6 +95,20 @@ public class Color {
         return color;
     }
 
+    /**
+     * Multiplies the color with x and stores the result in dest.
+     * @param x The value to multiply with.
+     * @param dest The color to store the result in. May be this color.
+     * @return The dest color.
+     */
+    public Color multiplied(double x, Color dest) {
+        dest.r = r * x;
+        dest.g = g * x;
+        dest.b = b * x;
+        dest.a = a * x;
+        return dest;
+    }
+
     public Vector3 toVector3() {
         return new Vector3(r, g, b);
     }
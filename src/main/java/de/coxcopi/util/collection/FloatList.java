@@ -0,0 +1,106 @@
+package de.coxcopi.util.collection;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive floats, to avoid boxing when collecting large amounts of values.
+ */
+public class FloatList {
+
+    private float[] data;
+    private int size = 0;
+
+    public FloatList() {
+        this(16);
+    }
+
+    public FloatList(int initialCapacity) {
+        data = new float[Math.max(1, initialCapacity)];
+    }
+
+    public void add(float value) {
+        if (size == data.length) {
+            grow(size + 1);
+        }
+        data[size++] = value;
+    }
+
+    public void add(float x, float y) {
+        if (size + 2 > data.length) {
+            grow(size + 2);
+        }
+        data[size++] = x;
+        data[size++] = y;
+    }
+
+    public void add(float x, float y, float z) {
+        if (size + 3 > data.length) {
+            grow(size + 3);
+        }
+        data[size++] = x;
+        data[size++] = y;
+        data[size++] = z;
+    }
+
+    /**
+     * Appends all values of another list.
+     */
+    public void addAll(FloatList other) {
+        ensureCapacity(size + other.size);
+        System.arraycopy(other.data, 0, data, size, other.size);
+        size += other.size;
+    }
+
+    public float get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size + ".");
+        }
+        return data[index];
+    }
+
+    public void set(int index, float value) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size + ".");
+        }
+        data[index] = value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity > data.length) {
+            grow(capacity);
+        }
+    }
+
+    /**
+     * Returns the backing array, which may be longer than size(). Only the first size() values are valid.
+     * NOTE: The array is replaced when the list grows, so it should not be kept around.
+     */
+    public float[] array() {
+        return data;
+    }
+
+    /**
+     * @return A copy of the list's values.
+     */
+    public float[] toArray() {
+        return Arrays.copyOf(data, size);
+    }
+
+    private void grow(int minCapacity) {
+        // Grow by 1.5x, like ArrayList
+        final int newCapacity = Math.max(minCapacity, data.length + (data.length >> 1));
+        data = Arrays.copyOf(data, newCapacity);
+    }
+}
@@ -0,0 +1,192 @@
+package de.coxcopi.util.collection;
+
+import java.util.Arrays;
+
+/**
+ * Hash map from primitive longs to primitive ints, to avoid boxing when mapping large amounts of keys.
+ * <p>
+ * Uses open addressing with linear probing in power-of-two sized arrays, which are grown once they
+ * are half full. Since every key value is valid, the key 0 is stored separately and 0 marks free slots.
+ * Entries can't be removed individually, only all at once with clear().
+ */
+public class LongIntHashMap {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private int[] values;
+    /**
+     * Capacity - 1, for wrapping indices.
+     */
+    private int mask;
+    private int size = 0;
+    private boolean hasZeroKey = false;
+    private int zeroValue = 0;
+
+    public LongIntHashMap() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    /**
+     * @param expectedSize The amount of entries the map can hold before it has to grow.
+     */
+    public LongIntHashMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * Returns the value for a key.
+     * @param key The key.
+     * @param missingValue The value to return if the map doesn't contain the key.
+     * @return The value, or missingValue.
+     */
+    public int get(long key, int missingValue) {
+        if (key == 0) {
+            return hasZeroKey ? zeroValue : missingValue;
+        }
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            final long k = keys[i];
+            if (k == key) {
+                return values[i];
+            }
+            if (k == 0) {
+                return missingValue;
+            }
+        }
+    }
+
+    public boolean containsKey(long key) {
+        if (key == 0) {
+            return hasZeroKey;
+        }
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            final long k = keys[i];
+            if (k == key) {
+                return true;
+            }
+            if (k == 0) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Associates a value with a key, replacing the previous value.
+     * @param key The key.
+     * @param value The value.
+     */
+    public void put(long key, int value) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroValue = value;
+            return;
+        }
+        int i = slot(key);
+        while (keys[i] != 0) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        insert(i, key, value);
+    }
+
+    /**
+     * Returns the value for a key, associating the given value with the key first if the map doesn't
+     * contain it yet. Needs a single lookup, unlike a get() followed by a put().
+     * @param key The key.
+     * @param value The value to associate if the key is missing.
+     * @return The key's previous value if it was present, value otherwise.
+     */
+    public int getOrPut(long key, int value) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                zeroValue = value;
+                size++;
+            }
+            return zeroValue;
+        }
+        int i = slot(key);
+        while (keys[i] != 0) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+            i = (i + 1) & mask;
+        }
+        insert(i, key, value);
+        return value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all entries, keeping the capacity.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0);
+        size = 0;
+        hasZeroKey = false;
+    }
+
+    private void insert(int i, long key, int value) {
+        keys[i] = key;
+        values[i] = value;
+        size++;
+        if (size > keys.length / 2) {
+            rehash(keys.length * 2);
+        }
+    }
+
+    private void rehash(int capacity) {
+        final long[] oldKeys = keys;
+        final int[] oldValues = values;
+        allocate(capacity);
+        for (int j = 0; j < oldKeys.length; j++) {
+            final long key = oldKeys[j];
+            if (key != 0) {
+                int i = slot(key);
+                while (keys[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = key;
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Returns the first slot to probe for a key. The key's bits are mixed first, since keys packed
+     * from several small ints (e.g. indices) would otherwise cluster in a few slots.
+     */
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        return (int) h & mask;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        // Keep the load factor at or below 0.5
+        final long capacity = Math.max(MIN_CAPACITY, Long.highestOneBit(Math.max(1, (long) expectedSize) * 2 - 1) * 2);
+        if (capacity > 1 << 30) {
+            throw new IllegalArgumentException("Expected size " + expectedSize + " is too large.");
+        }
+        return (int) capacity;
+    }
+}
@@ -0,0 +1,119 @@
+package de.coxcopi.util.math;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * View frustum defined by six planes (left, right, bottom, top, near, far), used for culling
+ * objects that are outside the camera's field of view.
+ * Each plane is stored as (a, b, c, d) with a normalized normal (a, b, c) pointing into the
+ * frustum, so a point p lies inside the plane's half space if a * p.x + b * p.y + c * p.z + d >= 0.
+ */
+public class Frustum {
+
+    public static final int LEFT = 0;
+    public static final int RIGHT = 1;
+    public static final int BOTTOM = 2;
+    public static final int TOP = 3;
+    public static final int NEAR = 4;
+    public static final int FAR = 5;
+
+    /**
+     * The planes' values, four per plane.
+     */
+    private final double[] planes = new double[24];
+
+    /**
+     * Constructs a frustum that contains everything.
+     */
+    public Frustum() {
+    }
+
+    /**
+     * Extracts the frustum planes from a combined view-projection matrix
+     * (projectionMatrix * viewMatrix). The planes are then given in world space.
+     * @param viewProjection The view-projection matrix.
+     * @return This frustum.
+     */
+    public Frustum set(@NotNull Matrix4 viewProjection) {
+        final double[] m = viewProjection.m;
+        // Rows of the matrix (stored column by column)
+        final double r0x = m[0], r0y = m[4], r0z = m[8], r0w = m[12];
+        final double r1x = m[1], r1y = m[5], r1z = m[9], r1w = m[13];
+        final double r2x = m[2], r2y = m[6], r2z = m[10], r2w = m[14];
+        final double r3x = m[3], r3y = m[7], r3z = m[11], r3w = m[15];
+        setPlane(LEFT, r3x + r0x, r3y + r0y, r3z + r0z, r3w + r0w);
+        setPlane(RIGHT, r3x - r0x, r3y - r0y, r3z - r0z, r3w - r0w);
+        setPlane(BOTTOM, r3x + r1x, r3y + r1y, r3z + r1z, r3w + r1w);
+        setPlane(TOP, r3x - r1x, r3y - r1y, r3z - r1z, r3w - r1w);
+        setPlane(NEAR, r3x + r2x, r3y + r2y, r3z + r2z, r3w + r2w);
+        setPlane(FAR, r3x - r2x, r3y - r2y, r3z - r2z, r3w - r2w);
+        return this;
+    }
+
+    /**
+     * Returns the signed distance of the given point to a plane. Positive distances lie inside.
+     * @param plane The plane, e.g. Frustum.NEAR.
+     * @return The signed distance.
+     */
+    public double distance(int plane, double x, double y, double z) {
+        final int p = plane * 4;
+        return planes[p] * x + planes[p + 1] * y + planes[p + 2] * z + planes[p + 3];
+    }
+
+    /**
+     * Checks whether a point lies inside the frustum.
+     */
+    public boolean containsPoint(double x, double y, double z) {
+        return intersectsSphere(x, y, z, 0);
+    }
+
+    /**
+     * Checks whether a sphere lies at least partially inside the frustum. Spheres close to
+     * the corners of the frustum may be reported as intersecting although they are outside.
+     * @param x The x coordinate of the sphere's center.
+     * @param y The y coordinate of the sphere's center.
+     * @param z The z coordinate of the sphere's center.
+     * @param radius The sphere's radius.
+     * @return False if the sphere is definitely outside the frustum.
+     */
+    public boolean intersectsSphere(double x, double y, double z, double radius) {
+        final double[] p = planes;
+        for (int i = 0; i < 24; i += 4) {
+            if (p[i] * x + p[i + 1] * y + p[i + 2] * z + p[i + 3] < -radius) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether a sphere given in the local space of a transformation matrix lies at least
+     * partially inside the frustum. The sphere is transformed to world space first; its radius is
+     * scaled by the matrix's largest axis scale, so the test stays conservative under non-uniform scale.
+     * Does not allocate.
+     * @param transform The sphere's transformation (e.g. a mesh's transform).
+     * @param center The sphere's center in local space.
+     * @param radius The sphere's radius in local space.
+     * @return False if the sphere is definitely outside the frustum.
+     */
+    public boolean intersectsSphere(@NotNull Matrix4 transform, @NotNull Vector3 center, double radius) {
+        final double[] m = transform.m;
+        final double x = m[0] * center.x + m[4] * center.y + m[8] * center.z + m[12];
+        final double y = m[1] * center.x + m[5] * center.y + m[9] * center.z + m[13];
+        final double z = m[2] * center.x + m[6] * center.y + m[10] * center.z + m[14];
+        final double sx = m[0] * m[0] + m[1] * m[1] + m[2] * m[2];
+        final double sy = m[4] * m[4] + m[5] * m[5] + m[6] * m[6];
+        final double sz = m[8] * m[8] + m[9] * m[9] + m[10] * m[10];
+        return intersectsSphere(x, y, z, radius * Math.sqrt(Math.max(sx, Math.max(sy, sz))));
+    }
+
+    private void setPlane(int plane, double a, double b, double c, double d) {
+        final double length = Math.sqrt(a * a + b * b + c * c);
+        final double invLength = length == 0 ? 0 : 1.0 / length;
+        final int p = plane * 4;
+        planes[p] = a * invLength;
+        planes[p + 1] = b * invLength;
+        planes[p + 2] = c * invLength;
+        planes[p + 3] = d * invLength;
+    }
+}
@@ -2,24 +2,25 @@ package de.coxcopi.util.math;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.nio.FloatBuffer;
+
 /**
  * 4x4 Matrix used for perspective rendering and transformation.
  * The matrix is defined as using a row-major order.
  */
 public class Matrix4 {
 
-    // TODO: Rewrite using Vector3s (x, y, z and origin) instead of double[][] (?)
-
     /**
-     * The matrix's internal values defined by a 2-dimensional array.
+     * The matrix's internal values defined by a flat 16-element array.
+     * Values are stored column by column, so the value at (ix, iy) lives at index ix * 4 + iy
+     * and the origin occupies indices 12 to 14.
      */
-    private final double[][] matrix = new double[4][4];
+    final double[] m = new double[16];
 
     /**
      * Constructs an empty matrix (filled with value 0).
      */
     public Matrix4() {
-        fill(0);
     }
 
     /**
@@ -28,11 +29,23 @@ public class Matrix4 {
      * @param matrix The copied matrix.
      */
     public Matrix4(@NotNull Matrix4 matrix) {
-        for (int x = 0; x < 4; x++) {
-            for (int y = 0; y < 4; y++) {
-                this.matrix[x][y] = matrix.getValue(x, y);
-            }
-        }
+        System.arraycopy(matrix.m, 0, m, 0, 16);
+    }
+
+    /**
+     * Copies all values of the given matrix into this matrix.
+     * @param matrix The matrix to copy from.
+     */
+    public void set(@NotNull Matrix4 matrix) {
+        System.arraycopy(matrix.m, 0, m, 0, 16);
+    }
+
+    /**
+     * Resets the matrix to the identity matrix.
+     */
+    public void setIdentity() {
+        fill(0);
+        fillDiagonal(1.0);
     }
 
     /**
@@ -40,9 +53,9 @@ public class Matrix4 {
      * @param vector Vector by which to translate the matrix.
      */
     public void translate(@NotNull Vector3 vector) {
-        matrix[3][0] = matrix[3][0] + vector.x;
-        matrix[3][1] = matrix[3][1] + vector.y;
-        matrix[3][2] = matrix[3][2] + vector.z;
+        m[12] += vector.x;
+        m[13] += vector.y;
+        m[14] += vector.z;
     }
 
     /**
@@ -61,9 +74,9 @@ public class Matrix4 {
      * @param vector Vector by which to multiply the matrix's scale.
      */
     public void scale(@NotNull Vector3 vector) {
-        matrix[0][0] *= vector.x;
-        matrix[1][1] *= vector.y;
-        matrix[2][2] *= vector.z;
+        m[0] *= vector.x;
+        m[5] *= vector.y;
+        m[10] *= vector.z;
     }
 
     /**
@@ -71,9 +84,9 @@ public class Matrix4 {
      * @param s Value by which to multiply the matrix's scale.
      */
     public void scale(double s) {
-        matrix[0][0] *= s;
-        matrix[1][1] *= s;
-        matrix[2][2] *= s;
+        m[0] *= s;
+        m[5] *= s;
+        m[10] *= s;
     }
 
     /**
@@ -105,15 +118,7 @@ public class Matrix4 {
      * @param matrix The matrix which to multiply with.
      */
     public void multiply(@NotNull Matrix4 matrix) {
-        Matrix4 matrixCopy = new Matrix4(this);
-        fill(0);
-        for (int row = 0; row < 4; row++) {
-            for (int coloumn = 0; coloumn < 4; coloumn++) {
-                for (int i = 0; i < 4; i++) {
-                    this.matrix[coloumn][row] += matrixCopy.getValue(i, row) * matrix.getValue(coloumn, i);
-                }
-            }
-        }
+        multiply(m, matrix.m, m);
     }
 
     /**
@@ -124,19 +129,77 @@ public class Matrix4 {
      * @return The multiplied matrix.
      */
     public Matrix4 multiplied(@NotNull Matrix4 matrix) {
-        Matrix4 matrixMultiplied = new Matrix4(this);
-        matrixMultiplied.multiply(matrix);
+        Matrix4 matrixMultiplied = new Matrix4();
+        multiply(m, matrix.m, matrixMultiplied.m);
         return matrixMultiplied;
     }
 
     public Vector3 multiply(@NotNull Vector3 vector) {
         return new Vector3(
-                vector.dot(new Vector3(matrix[0][0], matrix[1][0], matrix[2][0])),
-                vector.dot(new Vector3(matrix[0][1], matrix[1][1], matrix[2][1])),
-                vector.dot(new Vector3(matrix[0][2], matrix[1][2], matrix[2][2]))
+                vector.x * m[0] + vector.y * m[4] + vector.z * m[8],
+                vector.x * m[1] + vector.y * m[5] + vector.z * m[9],
+                vector.x * m[2] + vector.y * m[6] + vector.z * m[10]
         );
     }
 
+    /**
+     * Multiplies the given vector by the matrix's rotation and scale (ignoring the origin)
+     * and stores the result in dest.
+     * @param vector The vector to multiply.
+     * @param dest The vector to store the result in. May be the given vector.
+     * @return The dest vector.
+     */
+    public Vector3 multiply(@NotNull Vector3 vector, @NotNull Vector3 dest) {
+        return dest.set(
+                vector.x * m[0] + vector.y * m[4] + vector.z * m[8],
+                vector.x * m[1] + vector.y * m[5] + vector.z * m[9],
+                vector.x * m[2] + vector.y * m[6] + vector.z * m[10]
+        );
+    }
+
+    /**
+     * Computes a * b and stores the result in dest. Dest may be a or b.
+     * @param a The left matrix.
+     * @param b The right matrix.
+     * @param dest The matrix to store the result in.
+     * @return The dest matrix.
+     */
+    public static Matrix4 multiply(@NotNull Matrix4 a, @NotNull Matrix4 b, @NotNull Matrix4 dest) {
+        multiply(a.m, b.m, dest.m);
+        return dest;
+    }
+
+    /**
+     * Computes a * b and writes the result to dest. All values are read before
+     * anything is written, so dest may be the same array as a or b.
+     */
+    private static void multiply(double[] a, double[] b, double[] dest) {
+        final double a00 = a[0], a01 = a[1], a02 = a[2], a03 = a[3];
+        final double a10 = a[4], a11 = a[5], a12 = a[6], a13 = a[7];
+        final double a20 = a[8], a21 = a[9], a22 = a[10], a23 = a[11];
+        final double a30 = a[12], a31 = a[13], a32 = a[14], a33 = a[15];
+        final double b00 = b[0], b01 = b[1], b02 = b[2], b03 = b[3];
+        final double b10 = b[4], b11 = b[5], b12 = b[6], b13 = b[7];
+        final double b20 = b[8], b21 = b[9], b22 = b[10], b23 = b[11];
+        final double b30 = b[12], b31 = b[13], b32 = b[14], b33 = b[15];
+        dest[0] = a00 * b00 + a10 * b01 + a20 * b02 + a30 * b03;
+        dest[1] = a01 * b00 + a11 * b01 + a21 * b02 + a31 * b03;
+        dest[2] = a02 * b00 + a12 * b01 + a22 * b02 + a32 * b03;
+        dest[3] = a03 * b00 + a13 * b01 + a23 * b02 + a33 * b03;
+        dest[4] = a00 * b10 + a10 * b11 + a20 * b12 + a30 * b13;
+        dest[5] = a01 * b10 + a11 * b11 + a21 * b12 + a31 * b13;
+        dest[6] = a02 * b10 + a12 * b11 + a22 * b12 + a32 * b13;
+        dest[7] = a03 * b10 + a13 * b11 + a23 * b12 + a33 * b13;
+        dest[8] = a00 * b20 + a10 * b21 + a20 * b22 + a30 * b23;
+        dest[9] = a01 * b20 + a11 * b21 + a21 * b22 + a31 * b23;
+        dest[10] = a02 * b20 + a12 * b21 + a22 * b22 + a32 * b23;
+        dest[11] = a03 * b20 + a13 * b21 + a23 * b22 + a33 * b23;
+        dest[12] = a00 * b30 + a10 * b31 + a20 * b32 + a30 * b33;
+        dest[13] = a01 * b30 + a11 * b31 + a21 * b32 + a31 * b33;
+        dest[14] = a02 * b30 + a12 * b31 + a22 * b32 + a32 * b33;
+        dest[15] = a03 * b30 + a13 * b31 + a23 * b32 + a33 * b33;
+    }
+
     /**
      * Constructs a 1-dimensional 16-element float array to be used in OpenGL shader uniforms.
      * <p>
@@ -146,16 +209,91 @@ public class Matrix4 {
      */
     public float[] toUniformFloatArray() {
         float[] fm = new float[16];
-        int index = 0;
-        for (int x = 0; x < 4; x++) {
-            for (int y = 0; y < 4; y++) {
-                fm[index] = (float) matrix[x][y];
-                index++;
-            }
+        for (int i = 0; i < 16; i++) {
+            fm[i] = (float) m[i];
         }
         return fm;
     }
 
+    /**
+     * Writes the matrix into the given buffer in column-major order, converting each value to float.
+     * The values are stored starting at the buffer's current position, which is left unchanged.
+     * Unlike toUniformFloatArray(), no intermediate array is allocated.
+     * @param buffer The buffer to write to. Has to have at least 16 elements remaining.
+     * @return The given buffer.
+     */
+    public FloatBuffer get(@NotNull FloatBuffer buffer) {
+        return get(buffer.position(), buffer);
+    }
+
+    /**
+     * Writes the matrix into the given buffer in column-major order, starting at the given
+     * absolute index. The buffer's position is left unchanged.
+     * @param index The index of the first value.
+     * @param buffer The buffer to write to.
+     * @return The given buffer.
+     */
+    public FloatBuffer get(int index, @NotNull FloatBuffer buffer) {
+        for (int i = 0; i < 16; i++) {
+            buffer.put(index + i, (float) m[i]);
+        }
+        return buffer;
+    }
+
+    /**
+     * Copies the matrix values into the given array in column-major order, converted to float.
+     * @param array The array to write to. Has to have at least 16 elements.
+     * @return The given array.
+     */
+    public float[] get(float @NotNull [] array) {
+        for (int i = 0; i < 16; i++) {
+            array[i] = (float) m[i];
+        }
+        return array;
+    }
+
+    /**
+     * Copies the upper 3x3 part of the matrix into the given array in column-major order, converted to float.
+     * @param array The array to write to. Has to have at least 9 elements.
+     * @return The given array.
+     */
+    public float[] get3x3(float @NotNull [] array) {
+        for (int c = 0; c < 3; c++) {
+            array[c * 3] = (float) m[c * 4];
+            array[c * 3 + 1] = (float) m[c * 4 + 1];
+            array[c * 3 + 2] = (float) m[c * 4 + 2];
+        }
+        return array;
+    }
+
+    /**
+     * Writes the upper 3x3 part of the matrix into the given buffer in column-major order,
+     * e.g. for uploading a normal matrix to a mat3 uniform. The buffer's position is left unchanged.
+     * @param buffer The buffer to write to. Must have at least 9 remaining values.
+     * @return The given buffer.
+     */
+    public FloatBuffer get3x3(@NotNull FloatBuffer buffer) {
+        final int p = buffer.position();
+        for (int c = 0; c < 3; c++) {
+            buffer.put(p + c * 3, (float) m[c * 4]);
+            buffer.put(p + c * 3 + 1, (float) m[c * 4 + 1]);
+            buffer.put(p + c * 3 + 2, (float) m[c * 4 + 2]);
+        }
+        return buffer;
+    }
+
+    /**
+     * Reads the matrix from the given buffer in column-major order, starting at the given
+     * absolute index. The buffer's position is left unchanged.
+     * @param index The index of the first value.
+     * @param buffer The buffer to read from.
+     */
+    public void set(int index, @NotNull FloatBuffer buffer) {
+        for (int i = 0; i < 16; i++) {
+            m[i] = buffer.get(index + i);
+        }
+    }
+
     /**
      * Returns a projection matrix according to a set of properties.
      * @param fovy (Vertical) Field of view in degrees.
@@ -186,13 +324,14 @@ public class Matrix4 {
      */
     public static Matrix4 perspective(double left, double right, double top, double bottom, double near, double far) {
         Matrix4 matrix = new Matrix4();
-        matrix.setValue(0, 0, (2 * near) / (right - left));
-        matrix.setValue(1, 1, (2 * near) / (top - bottom));
-        matrix.setValue(2, 0, (right + left) / (right - left));
-        matrix.setValue(2, 1, (top + bottom) / (top - bottom));
-        matrix.setValue(2, 2, -((far + near) / (far - near)));
-        matrix.setValue(2, 3, -1);
-        matrix.setValue(3, 2, -((2 * far * near) / (far - near)));
+        final double[] m = matrix.m;
+        m[0] = (2 * near) / (right - left);
+        m[5] = (2 * near) / (top - bottom);
+        m[8] = (right + left) / (right - left);
+        m[9] = (top + bottom) / (top - bottom);
+        m[10] = -((far + near) / (far - near));
+        m[11] = -1;
+        m[14] = -((2 * far * near) / (far - near));
         return matrix;
     }
 
@@ -210,19 +349,20 @@ public class Matrix4 {
         Vector3 s = f.cross(up).normalized();
         Vector3 u = s.cross(f);
         Matrix4 matrix = new Matrix4();
-        matrix.fillDiagonal(1);
-        matrix.setValue(0, 0, s.x);
-        matrix.setValue(1, 0, s.y);
-        matrix.setValue(2, 0, s.z);
-        matrix.setValue(0, 1, u.x);
-        matrix.setValue(1, 1, u.y);
-        matrix.setValue(2, 1, u.z);
-        matrix.setValue(0, 2, -f.x);
-        matrix.setValue(1, 2, -f.y);
-        matrix.setValue(2, 2, -f.z);
-        matrix.setValue(3, 0, -s.dot(eye));
-        matrix.setValue(3, 1, -u.dot(eye));
-        matrix.setValue(3, 2, f.dot(eye));
+        final double[] m = matrix.m;
+        m[0] = s.x;
+        m[4] = s.y;
+        m[8] = s.z;
+        m[1] = u.x;
+        m[5] = u.y;
+        m[9] = u.z;
+        m[2] = -f.x;
+        m[6] = -f.y;
+        m[10] = -f.z;
+        m[12] = -s.dot(eye);
+        m[13] = -u.dot(eye);
+        m[14] = f.dot(eye);
+        m[15] = 1;
         return matrix;
     }
 
@@ -232,29 +372,84 @@ public class Matrix4 {
         Vector3 relativeUp = direction.cross(right);
 
         Matrix4 matrix = new Matrix4();
-        matrix.fill(0);
-        matrix.setValue(0, 0, right.x);
-        matrix.setValue(1, 0, right.y);
-        matrix.setValue(2, 0, right.z);
-        matrix.setValue(0, 1, relativeUp.x);
-        matrix.setValue(1, 1, relativeUp.y);
-        matrix.setValue(2, 1, relativeUp.z);
-        matrix.setValue(0, 2, -direction.x);
-        matrix.setValue(1, 2, -direction.y);
-        matrix.setValue(2, 2, -direction.z);
-        matrix.setValue(3, 3, 1.0);
+        final double[] m = matrix.m;
+        m[0] = right.x;
+        m[4] = right.y;
+        m[8] = right.z;
+        m[1] = relativeUp.x;
+        m[5] = relativeUp.y;
+        m[9] = relativeUp.z;
+        m[2] = -direction.x;
+        m[6] = -direction.y;
+        m[10] = -direction.z;
+        m[15] = 1.0;
 
         Matrix4 matrix2 = new Matrix4();
         matrix2.fillDiagonal(1.0);
-        matrix2.setValue(3, 0, -position.x);
-        matrix2.setValue(3, 1, -position.y);
-        matrix2.setValue(3, 2, -position.z);
+        matrix2.m[12] = -position.x;
+        matrix2.m[13] = -position.y;
+        matrix2.m[14] = -position.z;
 
         matrix.multiply(matrix2);
 
         return matrix;
     }
 
+    /**
+     * Same as lookAtNew(position, target, up), but writes the view matrix into dest
+     * instead of allocating intermediate vectors and matrices.
+     * @param position The position of the camera.
+     * @param target The point to look at.
+     * @param up The global up vector, usually (0, 1, 0).
+     * @param dest The matrix to store the view matrix in.
+     * @return The dest matrix.
+     */
+    public static Matrix4 lookAtNew(@NotNull Vector3 position, @NotNull Vector3 target, @NotNull Vector3 up, @NotNull Matrix4 dest) {
+        // direction = normalize(target - position)
+        double dx = target.x - position.x;
+        double dy = target.y - position.y;
+        double dz = target.z - position.z;
+        double length = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        if (length != 0) {
+            dx /= length;
+            dy /= length;
+            dz /= length;
+        }
+        // right = normalize(up x direction)
+        double rx = up.y * dz - up.z * dy;
+        double ry = up.z * dx - up.x * dz;
+        double rz = up.x * dy - up.y * dx;
+        length = Math.sqrt(rx * rx + ry * ry + rz * rz);
+        if (length != 0) {
+            rx /= length;
+            ry /= length;
+            rz /= length;
+        }
+        // relativeUp = direction x right
+        final double ux = dy * rz - dz * ry;
+        final double uy = dz * rx - dx * rz;
+        final double uz = dx * ry - dy * rx;
+
+        final double[] m = dest.m;
+        m[0] = rx;
+        m[1] = ux;
+        m[2] = -dx;
+        m[3] = 0;
+        m[4] = ry;
+        m[5] = uy;
+        m[6] = -dy;
+        m[7] = 0;
+        m[8] = rz;
+        m[9] = uz;
+        m[10] = -dz;
+        m[11] = 0;
+        m[12] = -(rx * position.x + ry * position.y + rz * position.z);
+        m[13] = -(ux * position.x + uy * position.y + uz * position.z);
+        m[14] = dx * position.x + dy * position.y + dz * position.z;
+        m[15] = 1.0;
+        return dest;
+    }
+
     /**
      * Creates a transform matrix for translation, rotation and scaling.
      * Default scale is (1, 1, 1) and default translation is (0, 0, 0);
@@ -271,7 +466,18 @@ public class Matrix4 {
      * @param angle The angle (in radians) by which to rotate.
      */
     public void rotateX(double angle) {
-        multiply(getRotatedX(angle));
+        final double c = Math.cos(angle);
+        final double s = Math.sin(angle);
+        final double m4 = m[4], m5 = m[5], m6 = m[6], m7 = m[7];
+        final double m8 = m[8], m9 = m[9], m10 = m[10], m11 = m[11];
+        m[4] = c * m4 + s * m8;
+        m[5] = c * m5 + s * m9;
+        m[6] = c * m6 + s * m10;
+        m[7] = c * m7 + s * m11;
+        m[8] = c * m8 - s * m4;
+        m[9] = c * m9 - s * m5;
+        m[10] = c * m10 - s * m6;
+        m[11] = c * m11 - s * m7;
     }
 
     /**
@@ -279,7 +485,18 @@ public class Matrix4 {
      * @param angle The angle (in radians) by which to rotate.
      */
     public void rotateY(double angle) {
-        multiply(getRotatedY(angle));
+        final double c = Math.cos(angle);
+        final double s = Math.sin(angle);
+        final double m0 = m[0], m1 = m[1], m2 = m[2], m3 = m[3];
+        final double m8 = m[8], m9 = m[9], m10 = m[10], m11 = m[11];
+        m[0] = c * m0 - s * m8;
+        m[1] = c * m1 - s * m9;
+        m[2] = c * m2 - s * m10;
+        m[3] = c * m3 - s * m11;
+        m[8] = s * m0 + c * m8;
+        m[9] = s * m1 + c * m9;
+        m[10] = s * m2 + c * m10;
+        m[11] = s * m3 + c * m11;
     }
 
     /**
@@ -287,16 +504,77 @@ public class Matrix4 {
      * @param angle The angle (in radians) by which to rotate.
      */
     public void rotateZ(double angle) {
-        multiply(getRotatedZ(angle));
+        final double c = Math.cos(angle);
+        final double s = Math.sin(angle);
+        final double m0 = m[0], m1 = m[1], m2 = m[2], m3 = m[3];
+        final double m4 = m[4], m5 = m[5], m6 = m[6], m7 = m[7];
+        m[0] = c * m0 + s * m4;
+        m[1] = c * m1 + s * m5;
+        m[2] = c * m2 + s * m6;
+        m[3] = c * m3 + s * m7;
+        m[4] = c * m4 - s * m0;
+        m[5] = c * m5 - s * m1;
+        m[6] = c * m6 - s * m2;
+        m[7] = c * m7 - s * m3;
     }
 
-    /*
+    /**
+     * Rotates the transformation matrix around the given local axis.
+     * @param axis The rotation axis. Does not have to be normalized.
+     * @param angle The angle (in radians) by which to rotate.
+     */
+    public void rotate(@NotNull Vector3 axis, double angle) {
+        final double length = axis.length();
+        if (length == 0) {
+            return;
+        }
+        final double x = axis.x / length, y = axis.y / length, z = axis.z / length;
+        final double c = Math.cos(angle);
+        final double s = Math.sin(angle);
+        final double t = 1 - c;
+        rotate(
+                t * x * x + c, t * x * y + s * z, t * x * z - s * y,
+                t * x * y - s * z, t * y * y + c, t * y * z + s * x,
+                t * x * z + s * y, t * y * z - s * x, t * z * z + c
+        );
+    }
 
-    public void rotate(Vector3 axis, double angle) {
-        // TODO: Implement
+    /**
+     * Rotates the transformation matrix by the given quaternion.
+     * @param rotation The rotation.
+     */
+    public void rotate(@NotNull Quaternion rotation) {
+        final double x = rotation.x, y = rotation.y, z = rotation.z, w = rotation.w;
+        rotate(
+                1 - 2 * (y * y + z * z), 2 * (x * y + w * z), 2 * (x * z - w * y),
+                2 * (x * y - w * z), 1 - 2 * (x * x + z * z), 2 * (y * z + w * x),
+                2 * (x * z + w * y), 2 * (y * z - w * x), 1 - 2 * (x * x + y * y)
+        );
     }
 
+    /**
+     * Multiplies the matrix by the given 3x3 rotation (this * rotation), where
+     * rXY is row Y of column X of the rotation.
      */
+    private void rotate(double r00, double r01, double r02,
+                        double r10, double r11, double r12,
+                        double r20, double r21, double r22) {
+        final double m0 = m[0], m1 = m[1], m2 = m[2], m3 = m[3];
+        final double m4 = m[4], m5 = m[5], m6 = m[6], m7 = m[7];
+        final double m8 = m[8], m9 = m[9], m10 = m[10], m11 = m[11];
+        m[0] = m0 * r00 + m4 * r01 + m8 * r02;
+        m[1] = m1 * r00 + m5 * r01 + m9 * r02;
+        m[2] = m2 * r00 + m6 * r01 + m10 * r02;
+        m[3] = m3 * r00 + m7 * r01 + m11 * r02;
+        m[4] = m0 * r10 + m4 * r11 + m8 * r12;
+        m[5] = m1 * r10 + m5 * r11 + m9 * r12;
+        m[6] = m2 * r10 + m6 * r11 + m10 * r12;
+        m[7] = m3 * r10 + m7 * r11 + m11 * r12;
+        m[8] = m0 * r20 + m4 * r21 + m8 * r22;
+        m[9] = m1 * r20 + m5 * r21 + m9 * r22;
+        m[10] = m2 * r20 + m6 * r21 + m10 * r22;
+        m[11] = m3 * r20 + m7 * r21 + m11 * r22;
+    }
 
     /**
      * Returns a rotation matrix for a specified rotation along the x-Axis.
@@ -307,13 +585,8 @@ public class Matrix4 {
      * @return A rotation matrix.
      */
     public static Matrix4 getRotatedX(double angle) {
-        Matrix4 matrix = new Matrix4();
-        matrix.fillDiagonal(1);
-        matrix.setValue(0, 0, 1.0);
-        matrix.setValue(1, 1, java.lang.Math.cos(angle));
-        matrix.setValue(1, 2, java.lang.Math.sin(angle));
-        matrix.setValue(2, 1, -java.lang.Math.sin(angle));
-        matrix.setValue(2, 2, java.lang.Math.cos(angle));
+        Matrix4 matrix = transform();
+        matrix.rotateX(angle);
         return matrix;
     }
 
@@ -326,13 +599,8 @@ public class Matrix4 {
      * @return A rotation matrix.
      */
     public static Matrix4 getRotatedY(double angle) {
-        Matrix4 matrix = new Matrix4();
-        matrix.fillDiagonal(1);
-        matrix.setValue(0, 0, java.lang.Math.cos(angle));
-        matrix.setValue(0, 2, -java.lang.Math.sin(angle));
-        matrix.setValue(1, 1, 1.0);
-        matrix.setValue(2, 0, java.lang.Math.sin(angle));
-        matrix.setValue(2, 2, java.lang.Math.cos(angle));
+        Matrix4 matrix = transform();
+        matrix.rotateY(angle);
         return matrix;
     }
 
@@ -345,64 +613,63 @@ public class Matrix4 {
      * @return A rotation matrix.
      */
     public static Matrix4 getRotatedZ(double angle) {
-        Matrix4 matrix = new Matrix4();
-        matrix.fillDiagonal(1);
-        matrix.setValue(0, 0, java.lang.Math.cos(angle));
-        matrix.setValue(0, 1, java.lang.Math.sin(angle));
-        matrix.setValue(1, 0, -java.lang.Math.sin(angle));
-        matrix.setValue(1, 1, java.lang.Math.cos(angle));
-        matrix.setValue(2, 2, 1.0);
+        Matrix4 matrix = transform();
+        matrix.rotateZ(angle);
         return matrix;
     }
 
     public void setX(@NotNull Vector3 xVector) {
-        matrix[0][0] = xVector.x;
-        matrix[0][1] = xVector.y;
-        matrix[0][2] = xVector.z;
+        m[0] = xVector.x;
+        m[1] = xVector.y;
+        m[2] = xVector.z;
     }
     public void setY(@NotNull Vector3 yVector) {
-        matrix[1][0] = yVector.x;
-        matrix[1][1] = yVector.y;
-        matrix[1][2] = yVector.z;
+        m[4] = yVector.x;
+        m[5] = yVector.y;
+        m[6] = yVector.z;
     }
     public void setZ(@NotNull Vector3 zVector) {
-        matrix[2][0] = zVector.x;
-        matrix[2][1] = zVector.y;
-        matrix[2][2] = zVector.z;
+        m[8] = zVector.x;
+        m[9] = zVector.y;
+        m[10] = zVector.z;
     }
 
     public void setOrigin(@NotNull Vector3 origin) {
-        matrix[3][0] = origin.x;
-        matrix[3][1] = origin.y;
-        matrix[3][2] = origin.z;
+        m[12] = origin.x;
+        m[13] = origin.y;
+        m[14] = origin.z;
     }
 
     public Vector3 getX() {
-        return new Vector3(
-                matrix[0][0],
-                matrix[0][1],
-                matrix[0][2]
-        );
+        return new Vector3(m[0], m[1], m[2]);
+    }
+
+    public Vector3 getX(@NotNull Vector3 dest) {
+        return dest.set(m[0], m[1], m[2]);
     }
 
     public Vector3 getY() {
-        return new Vector3(
-                matrix[1][0],
-                matrix[1][1],
-                matrix[1][2]
-        );
+        return new Vector3(m[4], m[5], m[6]);
+    }
+
+    public Vector3 getY(@NotNull Vector3 dest) {
+        return dest.set(m[4], m[5], m[6]);
     }
 
     public Vector3 getZ() {
-        return new Vector3(
-                matrix[2][0],
-                matrix[2][1],
-                matrix[2][2]
-        );
+        return new Vector3(m[8], m[9], m[10]);
+    }
+
+    public Vector3 getZ(@NotNull Vector3 dest) {
+        return dest.set(m[8], m[9], m[10]);
     }
 
     public Vector3 getOrigin() {
-        return new Vector3(matrix[3][0], matrix[3][1], matrix[3][2]);
+        return new Vector3(m[12], m[13], m[14]);
+    }
+
+    public Vector3 getOrigin(@NotNull Vector3 dest) {
+        return dest.set(m[12], m[13], m[14]);
     }
 
     /**
@@ -413,11 +680,11 @@ public class Matrix4 {
      * @return The value at the given coordinates.
      */
     public double getValue(int ix, int iy) {
-        if (ix > (matrix.length - 1) || iy > (matrix.length - 1)) {
+        if (ix < 0 || ix > 3 || iy < 0 || iy > 3) {
             // TODO: Print index out of bounds error
             return 0;
         }
-        return matrix[ix][iy];
+        return m[ix * 4 + iy];
     }
 
     /**
@@ -428,41 +695,188 @@ public class Matrix4 {
      * @param value The value to set.
      */
     public void setValue(int ix, int iy, double value) {
-        if (ix > (matrix.length - 1) || iy > (matrix.length - 1)) {
+        if (ix < 0 || ix > 3 || iy < 0 || iy > 3) {
             // TODO: Print index out of bounds error
             return;
         }
-        matrix[ix][iy] = value;
+        m[ix * 4 + iy] = value;
     }
 
     public void transpose() {
-        Matrix4 matrix4 = this.transposed();
-        for (int x = 0; x < 4; x++) {
-            for (int y = 0; y < 4; y++) {
-                this.matrix[x][y] = matrix4.getValue(x, y);
-            }
-        }
+        double t;
+        t = m[1]; m[1] = m[4]; m[4] = t;
+        t = m[2]; m[2] = m[8]; m[8] = t;
+        t = m[3]; m[3] = m[12]; m[12] = t;
+        t = m[6]; m[6] = m[9]; m[9] = t;
+        t = m[7]; m[7] = m[13]; m[13] = t;
+        t = m[11]; m[11] = m[14]; m[14] = t;
     }
 
     public Matrix4 transposed() {
-        Matrix4 matrix = new Matrix4();
-        for (int x = 0; x < 4; x++) {
-            for (int y = 0; y < 4; y++) {
-                matrix.setValue(x, y, this.matrix[y][x]);
-            }
-        }
+        Matrix4 matrix = new Matrix4(this);
+        matrix.transpose();
         return matrix;
     }
 
+    /**
+     * Inverts the matrix. Works for any invertible matrix, including projections.
+     * If the matrix is singular, it is left unchanged.
+     * @return True if the matrix was inverted, false if it is singular.
+     */
+    public boolean invert() {
+        final double a00 = m[0], a01 = m[1], a02 = m[2], a03 = m[3];
+        final double a10 = m[4], a11 = m[5], a12 = m[6], a13 = m[7];
+        final double a20 = m[8], a21 = m[9], a22 = m[10], a23 = m[11];
+        final double a30 = m[12], a31 = m[13], a32 = m[14], a33 = m[15];
+        // 2x2 sub-determinants of the first two and the last two columns
+        final double s0 = a00 * a11 - a10 * a01;
+        final double s1 = a00 * a12 - a10 * a02;
+        final double s2 = a00 * a13 - a10 * a03;
+        final double s3 = a01 * a12 - a11 * a02;
+        final double s4 = a01 * a13 - a11 * a03;
+        final double s5 = a02 * a13 - a12 * a03;
+        final double c5 = a22 * a33 - a32 * a23;
+        final double c4 = a21 * a33 - a31 * a23;
+        final double c3 = a21 * a32 - a31 * a22;
+        final double c2 = a20 * a33 - a30 * a23;
+        final double c1 = a20 * a32 - a30 * a22;
+        final double c0 = a20 * a31 - a30 * a21;
+        final double det = s0 * c5 - s1 * c4 + s2 * c3 + s3 * c2 - s4 * c1 + s5 * c0;
+        if (det == 0) {
+            return false;
+        }
+        final double invDet = 1.0 / det;
+        m[0] = (a11 * c5 - a12 * c4 + a13 * c3) * invDet;
+        m[1] = (-a01 * c5 + a02 * c4 - a03 * c3) * invDet;
+        m[2] = (a31 * s5 - a32 * s4 + a33 * s3) * invDet;
+        m[3] = (-a21 * s5 + a22 * s4 - a23 * s3) * invDet;
+        m[4] = (-a10 * c5 + a12 * c2 - a13 * c1) * invDet;
+        m[5] = (a00 * c5 - a02 * c2 + a03 * c1) * invDet;
+        m[6] = (-a30 * s5 + a32 * s2 - a33 * s1) * invDet;
+        m[7] = (a20 * s5 - a22 * s2 + a23 * s1) * invDet;
+        m[8] = (a10 * c4 - a11 * c2 + a13 * c0) * invDet;
+        m[9] = (-a00 * c4 + a01 * c2 - a03 * c0) * invDet;
+        m[10] = (a30 * s4 - a31 * s2 + a33 * s0) * invDet;
+        m[11] = (-a20 * s4 + a21 * s2 - a23 * s0) * invDet;
+        m[12] = (-a10 * c3 + a11 * c1 - a12 * c0) * invDet;
+        m[13] = (a00 * c3 - a01 * c1 + a02 * c0) * invDet;
+        m[14] = (-a30 * s3 + a31 * s1 - a32 * s0) * invDet;
+        m[15] = (a20 * s3 - a21 * s1 + a22 * s0) * invDet;
+        return true;
+    }
+
+    /**
+     * Returns the inverse of the matrix, see invert().
+     * @return The inverted matrix, or null if the matrix is singular.
+     */
+    public Matrix4 inverted() {
+        Matrix4 matrix = new Matrix4(this);
+        return matrix.invert() ? matrix : null;
+    }
+
+    /**
+     * Inverts the matrix, assuming it is an affine transformation (rotation, scale and
+     * translation, with a bottom row of 0, 0, 0, 1). Considerably cheaper than invert(),
+     * but gives wrong results for other matrices such as projections.
+     * If the matrix is singular, it is left unchanged.
+     * @return True if the matrix was inverted, false if it is singular.
+     */
+    public boolean invertAffine() {
+        final double a00 = m[0], a10 = m[1], a20 = m[2];
+        final double a01 = m[4], a11 = m[5], a21 = m[6];
+        final double a02 = m[8], a12 = m[9], a22 = m[10];
+        final double c00 = a11 * a22 - a12 * a21;
+        final double c01 = a12 * a20 - a10 * a22;
+        final double c02 = a10 * a21 - a11 * a20;
+        final double det = a00 * c00 + a01 * c01 + a02 * c02;
+        if (det == 0) {
+            return false;
+        }
+        final double invDet = 1.0 / det;
+        // inverse = transposed cofactor matrix / det
+        final double i00 = c00 * invDet;
+        final double i01 = (a02 * a21 - a01 * a22) * invDet;
+        final double i02 = (a01 * a12 - a02 * a11) * invDet;
+        final double i10 = c01 * invDet;
+        final double i11 = (a00 * a22 - a02 * a20) * invDet;
+        final double i12 = (a02 * a10 - a00 * a12) * invDet;
+        final double i20 = c02 * invDet;
+        final double i21 = (a01 * a20 - a00 * a21) * invDet;
+        final double i22 = (a00 * a11 - a01 * a10) * invDet;
+        final double tx = m[12], ty = m[13], tz = m[14];
+        m[0] = i00;
+        m[1] = i10;
+        m[2] = i20;
+        m[4] = i01;
+        m[5] = i11;
+        m[6] = i21;
+        m[8] = i02;
+        m[9] = i12;
+        m[10] = i22;
+        m[12] = -(i00 * tx + i01 * ty + i02 * tz);
+        m[13] = -(i10 * tx + i11 * ty + i12 * tz);
+        m[14] = -(i20 * tx + i21 * ty + i22 * tz);
+        return true;
+    }
+
+    /**
+     * Returns the inverse of the matrix, assuming it is an affine transformation, see invertAffine().
+     * @return The inverted matrix, or null if the matrix is singular.
+     */
+    public Matrix4 invertedAffine() {
+        Matrix4 matrix = new Matrix4(this);
+        return matrix.invertAffine() ? matrix : null;
+    }
+
+    /**
+     * Computes the normal matrix of this transformation matrix, i.e. the transposed inverse of
+     * its upper 3x3 part, which transforms normals correctly under non-uniform scale.
+     * The result is stored in the upper 3x3 part of dest, the rest of dest is set to the identity.
+     * If the matrix is singular, the unscaled cofactor matrix is used, which still points normals
+     * in the right direction as long as they are normalized afterwards.
+     * @param dest The matrix to store the normal matrix in. May be this matrix.
+     * @return The dest matrix.
+     */
+    public Matrix4 getNormalMatrix(@NotNull Matrix4 dest) {
+        final double a00 = m[0], a10 = m[1], a20 = m[2];
+        final double a01 = m[4], a11 = m[5], a21 = m[6];
+        final double a02 = m[8], a12 = m[9], a22 = m[10];
+        // transposed inverse = cofactor matrix / det
+        final double c00 = a11 * a22 - a12 * a21;
+        final double c01 = a12 * a20 - a10 * a22;
+        final double c02 = a10 * a21 - a11 * a20;
+        final double det = a00 * c00 + a01 * c01 + a02 * c02;
+        final double invDet = det == 0 ? 1.0 : 1.0 / det;
+        final double[] d = dest.m;
+        d[0] = c00 * invDet;
+        d[1] = (a02 * a21 - a01 * a22) * invDet;
+        d[2] = (a01 * a12 - a02 * a11) * invDet;
+        d[3] = 0;
+        d[4] = c01 * invDet;
+        d[5] = (a00 * a22 - a02 * a20) * invDet;
+        d[6] = (a02 * a10 - a00 * a12) * invDet;
+        d[7] = 0;
+        d[8] = c02 * invDet;
+        d[9] = (a01 * a20 - a00 * a21) * invDet;
+        d[10] = (a00 * a11 - a01 * a10) * invDet;
+        d[11] = 0;
+        d[12] = 0;
+        d[13] = 0;
+        d[14] = 0;
+        d[15] = 1;
+        return dest;
+    }
+
     /**
      * Fills the matrix diagonally with the specified value.
      * Used for constructing identity matrices.
      * @param value The value to set.
      */
     private void fillDiagonal(double value) {
-        for (int d = 0; d < 4; d++) {
-            matrix[d][d] = value;
-        }
+        m[0] = value;
+        m[5] = value;
+        m[10] = value;
+        m[15] = value;
     }
 
     /**
@@ -477,11 +891,23 @@ public class Matrix4 {
      * @param value The value to set.
      */
     private void fill(double value) {
-        for (int x = 0; x < 4; x++) {
-            for (int y = 0; y < 4; y++) {
-                matrix[x][y] = value;
-            }
+        java.util.Arrays.fill(m, value);
+    }
+
+    /**
+     * Two matrices are equal if all of their values are equal.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
         }
+        return o instanceof Matrix4 matrix && java.util.Arrays.equals(m, matrix.m);
+    }
+
+    @Override
+    public int hashCode() {
+        return java.util.Arrays.hashCode(m);
     }
 
     @Override
@@ -490,7 +916,7 @@ public class Matrix4 {
         stringBuilder.append("-----------------------\n");
         for (int y = 0; y < 4; y++) {
             for (int x = 0; x < 4; x++) {
-                stringBuilder.append(matrix[x][y]);
+                stringBuilder.append(m[x * 4 + y]);
                 stringBuilder.append("\t");
             }
             if (y < 3) {
@@ -499,4 +925,4 @@ public class Matrix4 {
         }
         return stringBuilder.toString();
     }
-}
+}
\ No newline at end of file
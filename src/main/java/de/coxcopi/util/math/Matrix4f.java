@@ -0,0 +1,204 @@
+package de.coxcopi.util.math;
+
+import org.jetbrains.annotations.NotNull;
+import org.lwjgl.system.MemoryStack;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Single-precision counterpart of Matrix4, used for uploading matrices to OpenGL.
+ * Values are stored in column-major order, exactly as OpenGL expects them, so
+ * writing the matrix to a buffer is a plain copy.
+ */
+public class Matrix4f {
+
+    /**
+     * The matrix's internal values. Uses the same layout as Matrix4.
+     */
+    final float[] m = new float[16];
+
+    /**
+     * Constructs an empty matrix (filled with value 0).
+     */
+    public Matrix4f() {
+    }
+
+    /**
+     * Constructs a new matrix from a given matrix. Returns an exact copy.
+     * @param matrix The copied matrix.
+     */
+    public Matrix4f(@NotNull Matrix4f matrix) {
+        System.arraycopy(matrix.m, 0, m, 0, 16);
+    }
+
+    /**
+     * Constructs a new single-precision matrix from a double-precision matrix.
+     * @param matrix The converted matrix.
+     */
+    public Matrix4f(@NotNull Matrix4 matrix) {
+        set(matrix);
+    }
+
+    /**
+     * Creates an identity matrix.
+     * @return A transformation matrix.
+     */
+    public static Matrix4f transform() {
+        final Matrix4f matrix = new Matrix4f();
+        matrix.setIdentity();
+        return matrix;
+    }
+
+    /**
+     * Resets the matrix to the identity matrix.
+     */
+    public void setIdentity() {
+        java.util.Arrays.fill(m, 0);
+        m[0] = 1;
+        m[5] = 1;
+        m[10] = 1;
+        m[15] = 1;
+    }
+
+    /**
+     * Copies all values of the given matrix into this matrix.
+     * @param matrix The matrix to copy from.
+     */
+    public void set(@NotNull Matrix4f matrix) {
+        System.arraycopy(matrix.m, 0, m, 0, 16);
+    }
+
+    /**
+     * Copies all values of the given double-precision matrix into this matrix.
+     * @param matrix The matrix to copy from.
+     */
+    public void set(@NotNull Matrix4 matrix) {
+        final double[] d = matrix.m;
+        for (int i = 0; i < 16; i++) {
+            m[i] = (float) d[i];
+        }
+    }
+
+    /**
+     * Multiplies the matrix by another matrix (this * matrix).
+     * @param matrix The matrix which to multiply with.
+     */
+    public void multiply(@NotNull Matrix4f matrix) {
+        multiply(this, matrix, this);
+    }
+
+    /**
+     * Computes a * b and writes the result to dest. Dest may be the same matrix as a or b.
+     * @param a The left matrix.
+     * @param b The right matrix.
+     * @param dest The matrix to store the result in.
+     * @return The dest matrix.
+     */
+    public static Matrix4f multiply(@NotNull Matrix4f a, @NotNull Matrix4f b, @NotNull Matrix4f dest) {
+        final float[] l = a.m;
+        final float[] r = b.m;
+        final float a00 = l[0], a01 = l[1], a02 = l[2], a03 = l[3];
+        final float a10 = l[4], a11 = l[5], a12 = l[6], a13 = l[7];
+        final float a20 = l[8], a21 = l[9], a22 = l[10], a23 = l[11];
+        final float a30 = l[12], a31 = l[13], a32 = l[14], a33 = l[15];
+        final float b00 = r[0], b01 = r[1], b02 = r[2], b03 = r[3];
+        final float b10 = r[4], b11 = r[5], b12 = r[6], b13 = r[7];
+        final float b20 = r[8], b21 = r[9], b22 = r[10], b23 = r[11];
+        final float b30 = r[12], b31 = r[13], b32 = r[14], b33 = r[15];
+        final float[] d = dest.m;
+        d[0] = a00 * b00 + a10 * b01 + a20 * b02 + a30 * b03;
+        d[1] = a01 * b00 + a11 * b01 + a21 * b02 + a31 * b03;
+        d[2] = a02 * b00 + a12 * b01 + a22 * b02 + a32 * b03;
+        d[3] = a03 * b00 + a13 * b01 + a23 * b02 + a33 * b03;
+        d[4] = a00 * b10 + a10 * b11 + a20 * b12 + a30 * b13;
+        d[5] = a01 * b10 + a11 * b11 + a21 * b12 + a31 * b13;
+        d[6] = a02 * b10 + a12 * b11 + a22 * b12 + a32 * b13;
+        d[7] = a03 * b10 + a13 * b11 + a23 * b12 + a33 * b13;
+        d[8] = a00 * b20 + a10 * b21 + a20 * b22 + a30 * b23;
+        d[9] = a01 * b20 + a11 * b21 + a21 * b22 + a31 * b23;
+        d[10] = a02 * b20 + a12 * b21 + a22 * b22 + a32 * b23;
+        d[11] = a03 * b20 + a13 * b21 + a23 * b22 + a33 * b23;
+        d[12] = a00 * b30 + a10 * b31 + a20 * b32 + a30 * b33;
+        d[13] = a01 * b30 + a11 * b31 + a21 * b32 + a31 * b33;
+        d[14] = a02 * b30 + a12 * b31 + a22 * b32 + a32 * b33;
+        d[15] = a03 * b30 + a13 * b31 + a23 * b32 + a33 * b33;
+        return dest;
+    }
+
+    /**
+     * Returns the matrix value at the given x and y coordinates.
+     * @param ix The row index.
+     * @param iy The column index.
+     * @return The value at the given coordinates.
+     */
+    public float getValue(int ix, int iy) {
+        return m[ix * 4 + iy];
+    }
+
+    /**
+     * Sets the matrix value at the given x and y coordinates.
+     * @param ix The row index.
+     * @param iy The column index.
+     * @param value The value to set.
+     */
+    public void setValue(int ix, int iy, float value) {
+        m[ix * 4 + iy] = value;
+    }
+
+    /**
+     * Writes the matrix into the given buffer in column-major order.
+     * The values are stored starting at the buffer's current position, which is left unchanged.
+     * @param buffer The buffer to write to. Has to have at least 16 elements remaining.
+     * @return The given buffer.
+     */
+    public FloatBuffer get(@NotNull FloatBuffer buffer) {
+        return get(buffer.position(), buffer);
+    }
+
+    /**
+     * Writes the matrix into the given buffer in column-major order, starting at the given
+     * absolute index. The buffer's position is left unchanged.
+     * @param index The index of the first value.
+     * @param buffer The buffer to write to.
+     * @return The given buffer.
+     */
+    public FloatBuffer get(int index, @NotNull FloatBuffer buffer) {
+        buffer.put(index, m);
+        return buffer;
+    }
+
+    /**
+     * Allocates a 16-element slice on the given stack and writes the matrix into it.
+     * @param stack The stack to allocate on.
+     * @return A buffer containing the matrix, valid until the stack frame is popped.
+     */
+    public FloatBuffer get(@NotNull MemoryStack stack) {
+        return get(stack.mallocFloat(16));
+    }
+
+    /**
+     * Copies the matrix values into the given array in column-major order.
+     * @param array The array to write to. Has to have at least 16 elements.
+     * @return The given array.
+     */
+    public float[] get(float @NotNull [] array) {
+        System.arraycopy(m, 0, array, 0, 16);
+        return array;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append("-----------------------\n");
+        for (int y = 0; y < 4; y++) {
+            for (int x = 0; x < 4; x++) {
+                stringBuilder.append(m[x * 4 + y]);
+                stringBuilder.append("\t");
+            }
+            if (y < 3) {
+                stringBuilder.append("\n");
+            }
+        }
+        return stringBuilder.toString();
+    }
+}
\ No newline at end of file
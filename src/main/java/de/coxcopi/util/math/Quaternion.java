@@ -0,0 +1,278 @@
+package de.coxcopi.util.math;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Unit quaternion used to represent rotations.
+ * Unlike repeatedly multiplying rotation matrices, rotating a quaternion and
+ * re-normalizing it does not accumulate skew or scale over time.
+ */
+public class Quaternion {
+
+    public double x;
+    public double y;
+    public double z;
+    public double w;
+
+    /**
+     * Constructs an identity quaternion (no rotation).
+     */
+    public Quaternion() {
+        this.w = 1;
+    }
+
+    /**
+     * Constructs a new quaternion with the specified values.
+     */
+    public Quaternion(double x, double y, double z, double w) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.w = w;
+    }
+
+    /**
+     * Constructs a new quaternion from a given quaternion. Returns an exact copy.
+     * @param quaternion The copied quaternion.
+     */
+    public Quaternion(@NotNull Quaternion quaternion) {
+        set(quaternion);
+    }
+
+    /**
+     * Creates a quaternion describing a rotation around the given axis.
+     * @param axis The rotation axis. Does not have to be normalized.
+     * @param angle The rotation angle (in radians).
+     * @return A rotation quaternion.
+     */
+    public static Quaternion fromAxisAngle(@NotNull Vector3 axis, double angle) {
+        return new Quaternion().setAxisAngle(axis, angle);
+    }
+
+    public Quaternion set(double x, double y, double z, double w) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.w = w;
+        return this;
+    }
+
+    public Quaternion set(@NotNull Quaternion quaternion) {
+        return set(quaternion.x, quaternion.y, quaternion.z, quaternion.w);
+    }
+
+    /**
+     * Resets the quaternion to the identity rotation.
+     * @return This quaternion.
+     */
+    public Quaternion setIdentity() {
+        return set(0, 0, 0, 1);
+    }
+
+    /**
+     * Sets the quaternion to a rotation around the given axis.
+     * @param axis The rotation axis. Does not have to be normalized.
+     * @param angle The rotation angle (in radians).
+     * @return This quaternion.
+     */
+    public Quaternion setAxisAngle(@NotNull Vector3 axis, double angle) {
+        final double length = axis.length();
+        if (length == 0) {
+            return setIdentity();
+        }
+        final double s = Math.sin(angle * 0.5) / length;
+        return set(axis.x * s, axis.y * s, axis.z * s, Math.cos(angle * 0.5));
+    }
+
+    /**
+     * Sets the quaternion from an orthonormal basis, i.e. the rotation that maps the
+     * global x, y and z axes onto the given axes.
+     * @param xAxis The rotated x-axis.
+     * @param yAxis The rotated y-axis.
+     * @param zAxis The rotated z-axis.
+     * @return This quaternion.
+     */
+    public Quaternion setFromAxes(@NotNull Vector3 xAxis, @NotNull Vector3 yAxis, @NotNull Vector3 zAxis) {
+        final double m00 = xAxis.x, m10 = xAxis.y, m20 = xAxis.z;
+        final double m01 = yAxis.x, m11 = yAxis.y, m21 = yAxis.z;
+        final double m02 = zAxis.x, m12 = zAxis.y, m22 = zAxis.z;
+        final double trace = m00 + m11 + m22;
+        if (trace > 0) {
+            final double s = 0.5 / Math.sqrt(trace + 1.0);
+            set((m21 - m12) * s, (m02 - m20) * s, (m10 - m01) * s, 0.25 / s);
+        } else if (m00 > m11 && m00 > m22) {
+            final double s = 2.0 * Math.sqrt(1.0 + m00 - m11 - m22);
+            set(0.25 * s, (m01 + m10) / s, (m02 + m20) / s, (m21 - m12) / s);
+        } else if (m11 > m22) {
+            final double s = 2.0 * Math.sqrt(1.0 + m11 - m00 - m22);
+            set((m01 + m10) / s, 0.25 * s, (m12 + m21) / s, (m02 - m20) / s);
+        } else {
+            final double s = 2.0 * Math.sqrt(1.0 + m22 - m00 - m11);
+            set((m02 + m20) / s, (m12 + m21) / s, 0.25 * s, (m10 - m01) / s);
+        }
+        normalize();
+        return this;
+    }
+
+    public double length() {
+        return Math.sqrt(x * x + y * y + z * z + w * w);
+    }
+
+    /**
+     * Normalizes the quaternion so that its length is 1.
+     */
+    public void normalize() {
+        final double length = length();
+        if (length == 0) {
+            setIdentity();
+            return;
+        }
+        final double inv = 1.0 / length;
+        x *= inv;
+        y *= inv;
+        z *= inv;
+        w *= inv;
+    }
+
+    /**
+     * Conjugates the quaternion. For unit quaternions this is the inverse rotation.
+     */
+    public void conjugate() {
+        x = -x;
+        y = -y;
+        z = -z;
+    }
+
+    /**
+     * Multiplies the quaternion by another quaternion (this * quaternion).
+     * The resulting rotation first applies the given rotation, then this one.
+     * @param quaternion The quaternion to multiply with.
+     */
+    public void multiply(@NotNull Quaternion quaternion) {
+        multiply(quaternion.x, quaternion.y, quaternion.z, quaternion.w);
+    }
+
+    private void multiply(double rx, double ry, double rz, double rw) {
+        final double qx = x, qy = y, qz = z, qw = w;
+        x = qw * rx + qx * rw + qy * rz - qz * ry;
+        y = qw * ry - qx * rz + qy * rw + qz * rx;
+        z = qw * rz + qx * ry - qy * rx + qz * rw;
+        w = qw * rw - qx * rx - qy * ry - qz * rz;
+    }
+
+    /**
+     * Rotates the quaternion around the given local axis.
+     * @param axis The rotation axis. Does not have to be normalized.
+     * @param angle The angle (in radians) by which to rotate.
+     */
+    public void rotate(@NotNull Vector3 axis, double angle) {
+        final double length = axis.length();
+        if (length == 0) {
+            return;
+        }
+        final double s = Math.sin(angle * 0.5) / length;
+        multiply(axis.x * s, axis.y * s, axis.z * s, Math.cos(angle * 0.5));
+        normalize();
+    }
+
+    /**
+     * Rotates the quaternion on the local x-Axis.
+     * @param angle The angle (in radians) by which to rotate.
+     */
+    public void rotateX(double angle) {
+        multiply(Math.sin(angle * 0.5), 0, 0, Math.cos(angle * 0.5));
+        normalize();
+    }
+
+    /**
+     * Rotates the quaternion on the local y-Axis.
+     * @param angle The angle (in radians) by which to rotate.
+     */
+    public void rotateY(double angle) {
+        multiply(0, Math.sin(angle * 0.5), 0, Math.cos(angle * 0.5));
+        normalize();
+    }
+
+    /**
+     * Rotates the quaternion on the local z-Axis.
+     * @param angle The angle (in radians) by which to rotate.
+     */
+    public void rotateZ(double angle) {
+        multiply(0, 0, Math.sin(angle * 0.5), Math.cos(angle * 0.5));
+        normalize();
+    }
+
+    /**
+     * Rotates the given vector by this quaternion and stores the result in dest.
+     * @param vector The vector to rotate.
+     * @param dest The vector to store the result in. May be the given vector.
+     * @return The dest vector.
+     */
+    public Vector3 transform(@NotNull Vector3 vector, @NotNull Vector3 dest) {
+        // v' = v + 2w(q x v) + 2(q x (q x v))
+        final double tx = 2 * (y * vector.z - z * vector.y);
+        final double ty = 2 * (z * vector.x - x * vector.z);
+        final double tz = 2 * (x * vector.y - y * vector.x);
+        return dest.set(
+                vector.x + w * tx + (y * tz - z * ty),
+                vector.y + w * ty + (z * tx - x * tz),
+                vector.z + w * tz + (x * ty - y * tx)
+        );
+    }
+
+    /**
+     * Spherically interpolates between this quaternion and the given quaternion by factor t.
+     * @param quaternion The quaternion to interpolate to.
+     * @param t The interpolation factor (usually between 0 and 1).
+     */
+    public void slerp(@NotNull Quaternion quaternion, double t) {
+        double bx = quaternion.x, by = quaternion.y, bz = quaternion.z, bw = quaternion.w;
+        double cos = x * bx + y * by + z * bz + w * bw;
+        // Take the shorter path
+        if (cos < 0) {
+            cos = -cos;
+            bx = -bx;
+            by = -by;
+            bz = -bz;
+            bw = -bw;
+        }
+        double s0 = 1 - t;
+        double s1 = t;
+        if (cos < 0.9995) {
+            final double angle = Math.acos(cos);
+            final double sin = Math.sin(angle);
+            s0 = Math.sin((1 - t) * angle) / sin;
+            s1 = Math.sin(t * angle) / sin;
+        }
+        set(s0 * x + s1 * bx, s0 * y + s1 * by, s0 * z + s1 * bz, s0 * w + s1 * bw);
+        normalize();
+    }
+
+    /**
+     * Writes the rotation described by this quaternion into the rotation part of the
+     * given matrix. The matrix's origin and last row are left untouched.
+     * @param dest The matrix to write to.
+     * @return The dest matrix.
+     */
+    public Matrix4 toRotationMatrix(@NotNull Matrix4 dest) {
+        final double xx = x * x, yy = y * y, zz = z * z;
+        final double xy = x * y, xz = x * z, yz = y * z;
+        final double wx = w * x, wy = w * y, wz = w * z;
+        final double[] m = dest.m;
+        m[0] = 1 - 2 * (yy + zz);
+        m[1] = 2 * (xy + wz);
+        m[2] = 2 * (xz - wy);
+        m[4] = 2 * (xy - wz);
+        m[5] = 1 - 2 * (xx + zz);
+        m[6] = 2 * (yz + wx);
+        m[8] = 2 * (xz + wy);
+        m[9] = 2 * (yz - wx);
+        m[10] = 1 - 2 * (xx + yy);
+        return dest;
+    }
+
+    @Override
+    public String toString() {
+        return "Quaternion(" + x + ", " + y + ", " + z + ", " + w + ")";
+    }
+}
@@ -0,0 +1,171 @@
+package de.coxcopi.util.math;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Transform component storing translation, rotation and scale separately.
+ * The combined transformation matrix (translation * rotation * scale) is only
+ * recomposed when one of the components has changed, so reading the matrix of a
+ * static object every frame costs nothing but a dirty check.
+ * <p>
+ * NOTE: The getters return the internal component objects. If they are modified
+ * directly, markDirty() has to be called afterwards.
+ */
+public class Transform {
+
+    private final Vector3 translation = new Vector3();
+    private final Quaternion rotation = new Quaternion();
+    private final Vector3 scale = new Vector3(1);
+    private final Matrix4 matrix = Matrix4.transform();
+    private boolean dirty = false;
+
+    /**
+     * Constructs an identity transform.
+     */
+    public Transform() {
+    }
+
+    /**
+     * Constructs a new transform with the given components.
+     * @param translation The translation.
+     * @param rotation The rotation.
+     * @param scale The scale.
+     */
+    public Transform(@NotNull Vector3 translation, @NotNull Quaternion rotation, @NotNull Vector3 scale) {
+        this.translation.set(translation);
+        this.rotation.set(rotation);
+        this.scale.set(scale);
+        this.dirty = true;
+    }
+
+    public Vector3 getTranslation() {
+        return translation;
+    }
+
+    public Quaternion getRotation() {
+        return rotation;
+    }
+
+    public Vector3 getScale() {
+        return scale;
+    }
+
+    public void setTranslation(@NotNull Vector3 translation) {
+        this.translation.set(translation);
+        dirty = true;
+    }
+
+    public void setTranslation(double x, double y, double z) {
+        translation.set(x, y, z);
+        dirty = true;
+    }
+
+    /**
+     * Translates (offsets / moves) the transform.
+     * @param vector Vector by which to translate.
+     */
+    public void translate(@NotNull Vector3 vector) {
+        translation.translate(vector);
+        dirty = true;
+    }
+
+    public void setRotation(@NotNull Quaternion rotation) {
+        this.rotation.set(rotation);
+        this.rotation.normalize();
+        dirty = true;
+    }
+
+    /**
+     * Rotates the transform around the given local axis.
+     * @param axis The rotation axis.
+     * @param angle The angle (in radians) by which to rotate.
+     */
+    public void rotate(@NotNull Vector3 axis, double angle) {
+        rotation.rotate(axis, angle);
+        dirty = true;
+    }
+
+    /**
+     * Rotates the transform on the local x-Axis.
+     * @param angle The angle (in radians) by which to rotate.
+     */
+    public void rotateX(double angle) {
+        rotation.rotateX(angle);
+        dirty = true;
+    }
+
+    /**
+     * Rotates the transform on the local y-Axis.
+     * @param angle The angle (in radians) by which to rotate.
+     */
+    public void rotateY(double angle) {
+        rotation.rotateY(angle);
+        dirty = true;
+    }
+
+    /**
+     * Rotates the transform on the local z-Axis.
+     * @param angle The angle (in radians) by which to rotate.
+     */
+    public void rotateZ(double angle) {
+        rotation.rotateZ(angle);
+        dirty = true;
+    }
+
+    public void setScale(double s) {
+        scale.set(s, s, s);
+        dirty = true;
+    }
+
+    public void setScale(@NotNull Vector3 scale) {
+        this.scale.set(scale);
+        dirty = true;
+    }
+
+    /**
+     * Marks the transform as changed, so that the matrix is recomposed on its next access.
+     * Only needs to be called after modifying the components returned by the getters.
+     */
+    public void markDirty() {
+        dirty = true;
+    }
+
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Returns the transformation matrix, recomposing it first if any component has changed.
+     * The same matrix instance is returned on every call, so it may be shared (e.g. as a
+     * Mesh's transform) and stays valid as long as this method is called before it is read.
+     * @return The transformation matrix.
+     */
+    public Matrix4 getMatrix() {
+        if (dirty) {
+            recompose();
+        }
+        return matrix;
+    }
+
+    private void recompose() {
+        rotation.toRotationMatrix(matrix);
+        final double[] m = matrix.m;
+        m[0] *= scale.x;
+        m[1] *= scale.x;
+        m[2] *= scale.x;
+        m[3] = 0;
+        m[4] *= scale.y;
+        m[5] *= scale.y;
+        m[6] *= scale.y;
+        m[7] = 0;
+        m[8] *= scale.z;
+        m[9] *= scale.z;
+        m[10] *= scale.z;
+        m[11] = 0;
+        m[12] = translation.x;
+        m[13] = translation.y;
+        m[14] = translation.z;
+        m[15] = 1;
+        dirty = false;
+    }
+}
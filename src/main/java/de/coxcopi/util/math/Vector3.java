@@ -111,6 +111,32 @@ public class Vector3 {
         this.z = a;
     }
 
+    /**
+     * Sets the vector's components.
+     * @param x X component.
+     * @param y Y component.
+     * @param z Z component.
+     * @return This vector.
+     */
+    public Vector3 set(double x, double y, double z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        return this;
+    }
+
+    /**
+     * Copies the components of the given vector.
+     * @param vector The vector to copy from.
+     * @return This vector.
+     */
+    public Vector3 set(@NotNull Vector3 vector) {
+        this.x = vector.x;
+        this.y = vector.y;
+        this.z = vector.z;
+        return this;
+    }
+
     public static Vector3 sphericalToCartesian(double radius, double theta, double phi) {
         final double x = radius * java.lang.Math.cos(theta) * java.lang.Math.cos(phi);
         final double y = -radius * java.lang.Math.sin(theta) * java.lang.Math.sin(phi);
@@ -160,6 +186,17 @@ public class Vector3 {
         return multiplied(1.0 / length());
     }
 
+    /**
+     * Normalizes the vector and stores the result in dest.
+     * @param dest The vector to store the result in. May be this vector.
+     * @return The dest vector.
+     */
+    public Vector3 normalized(@NotNull Vector3 dest) {
+        dest.set(this);
+        dest.normalize();
+        return dest;
+    }
+
     /**
      * Multiplies the vector by another vector.
      * @param vector The vector to multiply with.
@@ -201,6 +238,16 @@ public class Vector3 {
         return new Vector3(x * vector.x, y * vector.y, z * vector.z);
     }
 
+    /**
+     * Multiplies the vector with another vector and stores the result in dest.
+     * @param vector The vector to multiply with.
+     * @param dest The vector to store the result in. May be this vector or the given vector.
+     * @return The dest vector.
+     */
+    public Vector3 multiplied(@NotNull Vector3 vector, @NotNull Vector3 dest) {
+        return dest.set(x * vector.x, y * vector.y, z * vector.z);
+    }
+
     /**
      * Multiplies the vector with the specified values.
      * @param x X Factor.
@@ -221,6 +268,16 @@ public class Vector3 {
         return new Vector3(x * a, y * a, z * a);
     }
 
+    /**
+     * Multiplies the vectors' values with a and stores the result in dest.
+     * @param a The value to multiply with.
+     * @param dest The vector to store the result in. May be this vector.
+     * @return The dest vector.
+     */
+    public Vector3 multiplied(double a, @NotNull Vector3 dest) {
+        return dest.set(x * a, y * a, z * a);
+    }
+
     /**
      * Translates (adds to) the vector by another vector.
      * @param vector The translation vector.
@@ -243,6 +300,16 @@ public class Vector3 {
         this.z += z;
     }
 
+    /**
+     * Subtracts another vector from the vector.
+     * @param vector The vector to subtract.
+     */
+    public void subtract(@NotNull Vector3 vector) {
+        x -= vector.x;
+        y -= vector.y;
+        z -= vector.z;
+    }
+
     /**
      * Translates (adds to) the vector by another vector.
      * @param vector The translation vector.
@@ -252,6 +319,16 @@ public class Vector3 {
         return new Vector3(x + vector.x, y + vector.y, z + vector.z);
     }
 
+    /**
+     * Translates (adds to) the vector by another vector and stores the result in dest.
+     * @param vector The translation vector.
+     * @param dest The vector to store the result in. May be this vector or the given vector.
+     * @return The dest vector.
+     */
+    public Vector3 translated(@NotNull Vector3 vector, @NotNull Vector3 dest) {
+        return dest.set(x + vector.x, y + vector.y, z + vector.z);
+    }
+
     /**
      * Translates (adds to) the vector by the specified values.
      * @param x Translation in x direction.
@@ -280,6 +357,15 @@ public class Vector3 {
         return new Vector3(-x, -y, -z);
     }
 
+    /**
+     * Inverts (negates) the vector and stores the result in dest.
+     * @param dest The vector to store the result in. May be this vector.
+     * @return The dest vector.
+     */
+    public Vector3 inverted(@NotNull Vector3 dest) {
+        return dest.set(-x, -y, -z);
+    }
+
     /**
      * Calculates the dot product between this vector and the given vector.
      * @param vector The vector to calculate the dot product with.
@@ -307,6 +393,16 @@ public class Vector3 {
         return new Vector3(y * vector.z - z * vector.y, z * vector.x - x * vector.z, x * vector.y - y * vector.x);
     }
 
+    /**
+     * Calculates the cross product between this vector and the given vector and stores it in dest.
+     * @param vector The vector to calculate the cross product with.
+     * @param dest The vector to store the result in. May be this vector or the given vector.
+     * @return The dest vector.
+     */
+    public Vector3 cross(@NotNull Vector3 vector, @NotNull Vector3 dest) {
+        return cross(this, vector, dest);
+    }
+
     /**
      * Linearly interpolates between this vector and the specified vector by factor t.
      * @param vector The vector to lerp to.
@@ -336,6 +432,46 @@ public class Vector3 {
         return new Vector3((a.x + b.x) / 2, (a.y + b.y) / 2, (a.z + b.z) / 2);
     }
 
+    /**
+     * Calculates a + b and stores the result in dest. Dest may be a or b.
+     * @return The dest vector.
+     */
+    public static Vector3 add(@NotNull Vector3 a, @NotNull Vector3 b, @NotNull Vector3 dest) {
+        return dest.set(a.x + b.x, a.y + b.y, a.z + b.z);
+    }
+
+    /**
+     * Calculates a - b and stores the result in dest. Dest may be a or b.
+     * @return The dest vector.
+     */
+    public static Vector3 subtract(@NotNull Vector3 a, @NotNull Vector3 b, @NotNull Vector3 dest) {
+        return dest.set(a.x - b.x, a.y - b.y, a.z - b.z);
+    }
+
+    /**
+     * Calculates a * s and stores the result in dest. Dest may be a.
+     * @return The dest vector.
+     */
+    public static Vector3 scale(@NotNull Vector3 a, double s, @NotNull Vector3 dest) {
+        return dest.set(a.x * s, a.y * s, a.z * s);
+    }
+
+    /**
+     * Calculates the cross product a x b and stores the result in dest. Dest may be a or b.
+     * @return The dest vector.
+     */
+    public static Vector3 cross(@NotNull Vector3 a, @NotNull Vector3 b, @NotNull Vector3 dest) {
+        return dest.set(a.y * b.z - a.z * b.y, a.z * b.x - a.x * b.z, a.x * b.y - a.y * b.x);
+    }
+
+    /**
+     * Calculates a + (b - a) * t and stores the result in dest. Dest may be a or b.
+     * @return The dest vector.
+     */
+    public static Vector3 lerp(@NotNull Vector3 a, @NotNull Vector3 b, double t, @NotNull Vector3 dest) {
+        return dest.set(MathUtils.lerp(a.x, b.x, t), MathUtils.lerp(a.y, b.y, t), MathUtils.lerp(a.z, b.z, t));
+    }
+
     public float[] toFloatArray() {
         return new float[] {(float) x, (float) y, (float) z};
     }
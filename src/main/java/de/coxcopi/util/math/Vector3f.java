@@ -0,0 +1,127 @@
+package de.coxcopi.util.math;
+
+import org.jetbrains.annotations.NotNull;
+import org.lwjgl.system.MemoryStack;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Single-precision counterpart of Vector3, used for uploading vectors to OpenGL.
+ */
+public class Vector3f {
+
+    /**
+     * The vector's x component.
+     */
+    public float x;
+    /**
+     * The vector's y component.
+     */
+    public float y;
+    /**
+     * The vector's z component.
+     */
+    public float z;
+
+    /**
+     * Constructs an empty vector.
+     */
+    public Vector3f() {
+    }
+
+    /**
+     * Constructs a new vector with the specified values.
+     * @param x X component.
+     * @param y Y component.
+     * @param z Z component.
+     */
+    public Vector3f(float x, float y, float z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    /**
+     * Constructs a new single-precision vector from a double-precision vector.
+     * @param vector The converted vector.
+     */
+    public Vector3f(@NotNull Vector3 vector) {
+        set(vector);
+    }
+
+    /**
+     * Sets the vector's components.
+     * @param x X component.
+     * @param y Y component.
+     * @param z Z component.
+     * @return This vector.
+     */
+    public Vector3f set(float x, float y, float z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        return this;
+    }
+
+    /**
+     * Copies the components of the given double-precision vector.
+     * @param vector The vector to copy from.
+     * @return This vector.
+     */
+    public Vector3f set(@NotNull Vector3 vector) {
+        x = (float) vector.x;
+        y = (float) vector.y;
+        z = (float) vector.z;
+        return this;
+    }
+
+    /**
+     * Copies the components of the given vector.
+     * @param vector The vector to copy from.
+     * @return This vector.
+     */
+    public Vector3f set(@NotNull Vector3f vector) {
+        x = vector.x;
+        y = vector.y;
+        z = vector.z;
+        return this;
+    }
+
+    /**
+     * Writes the vector into the given buffer, starting at the buffer's current position,
+     * which is left unchanged.
+     * @param buffer The buffer to write to. Has to have at least 3 elements remaining.
+     * @return The given buffer.
+     */
+    public FloatBuffer get(@NotNull FloatBuffer buffer) {
+        return get(buffer.position(), buffer);
+    }
+
+    /**
+     * Writes the vector into the given buffer, starting at the given absolute index.
+     * The buffer's position is left unchanged.
+     * @param index The index of the x component.
+     * @param buffer The buffer to write to.
+     * @return The given buffer.
+     */
+    public FloatBuffer get(int index, @NotNull FloatBuffer buffer) {
+        buffer.put(index, x);
+        buffer.put(index + 1, y);
+        buffer.put(index + 2, z);
+        return buffer;
+    }
+
+    /**
+     * Allocates a 3-element slice on the given stack and writes the vector into it.
+     * @param stack The stack to allocate on.
+     * @return A buffer containing the vector, valid until the stack frame is popped.
+     */
+    public FloatBuffer get(@NotNull MemoryStack stack) {
+        return get(stack.mallocFloat(3));
+    }
+
+    @Override
+    public String toString() {
+        return "Vector3f(" + x + ", " + y + ", " + z + ")";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,142 @@
+package de.coxcopi.util.math.simd;
+
+/**
+ * Batch math kernels for transforming large numbers of matrices and vectors at once,
+ * e.g. instance matrices or CPU-skinned vertices.
+ * <p>
+ * The kernels run on the JDK Vector API if the jdk.incubator.vector module is present
+ * (run with --add-modules jdk.incubator.vector) and fall back to plain Java loops otherwise.
+ * Both paths produce identical results. The vectorized path can be disabled with
+ * -Dde.coxcopi.simd.disabled=true.
+ * <p>
+ * Matrices are stored as 16 consecutive floats in column-major order (the same layout
+ * as Matrix4f), vectors as 3 consecutive floats (x, y, z). Unless noted otherwise, dest
+ * may be the same array (at the same offset) as the input it replaces.
+ */
+public final class BatchTransforms {
+
+    private static final boolean VECTORIZED = !Boolean.getBoolean("de.coxcopi.simd.disabled")
+            && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private BatchTransforms() {
+    }
+
+    /**
+     * @return True if the kernels run on the Vector API, false if the scalar fallback is used.
+     */
+    public static boolean isVectorized() {
+        return VECTORIZED;
+    }
+
+    /**
+     * Computes dest[i] = a[i] * b[i] for count matrices.
+     * @param a The left matrices.
+     * @param aOffset Index of the first value of the first left matrix.
+     * @param b The right matrices.
+     * @param bOffset Index of the first value of the first right matrix.
+     * @param dest The array to store the products in.
+     * @param destOffset Index of the first value of the first product.
+     * @param count The amount of matrices.
+     */
+    public static void multiplyMatrices(float[] a, int aOffset, float[] b, int bOffset, float[] dest, int destOffset, int count) {
+        if (VECTORIZED) {
+            VectorKernels.multiplyMatrices(a, aOffset, b, bOffset, dest, destOffset, count);
+        } else {
+            ScalarKernels.multiplyMatrices(a, aOffset, b, bOffset, dest, destOffset, count);
+        }
+    }
+
+    /**
+     * Computes dest[i] = left * b[i] for count matrices, e.g. to apply a parent transform
+     * to all of its children. Dest must not overlap left.
+     * @param left The single left matrix.
+     * @param leftOffset Index of the first value of the left matrix.
+     * @param b The right matrices.
+     * @param bOffset Index of the first value of the first right matrix.
+     * @param dest The array to store the products in.
+     * @param destOffset Index of the first value of the first product.
+     * @param count The amount of matrices in b.
+     */
+    public static void premultiplyMatrices(float[] left, int leftOffset, float[] b, int bOffset, float[] dest, int destOffset, int count) {
+        if (VECTORIZED) {
+            VectorKernels.premultiplyMatrices(left, leftOffset, b, bOffset, dest, destOffset, count);
+        } else {
+            ScalarKernels.premultiplyMatrices(left, leftOffset, b, bOffset, dest, destOffset, count);
+        }
+    }
+
+    /**
+     * Transforms count points (w = 1) by the given matrix.
+     * @param matrix The transformation matrix.
+     * @param matrixOffset Index of the first value of the matrix.
+     * @param src The packed points.
+     * @param srcOffset Index of the x component of the first point.
+     * @param dest The array to store the transformed points in.
+     * @param destOffset Index of the x component of the first transformed point.
+     * @param count The amount of points.
+     */
+    public static void transformPoints(float[] matrix, int matrixOffset, float[] src, int srcOffset, float[] dest, int destOffset, int count) {
+        if (VECTORIZED) {
+            VectorKernels.transformPoints(matrix, matrixOffset, src, srcOffset, dest, destOffset, count);
+        } else {
+            ScalarKernels.transformPoints(matrix, matrixOffset, src, srcOffset, dest, destOffset, count);
+        }
+    }
+
+    /**
+     * Transforms count directions (w = 0) by the upper 3x3 part of the given matrix.
+     * Pass a normal matrix (the transposed inverse of the model matrix) to transform
+     * normals correctly under non-uniform scale. The results are not re-normalized.
+     * @param matrix The transformation matrix.
+     * @param matrixOffset Index of the first value of the matrix.
+     * @param src The packed directions.
+     * @param srcOffset Index of the x component of the first direction.
+     * @param dest The array to store the transformed directions in.
+     * @param destOffset Index of the x component of the first transformed direction.
+     * @param count The amount of directions.
+     */
+    public static void transformNormals(float[] matrix, int matrixOffset, float[] src, int srcOffset, float[] dest, int destOffset, int count) {
+        if (VECTORIZED) {
+            VectorKernels.transformNormals(matrix, matrixOffset, src, srcOffset, dest, destOffset, count);
+        } else {
+            ScalarKernels.transformNormals(matrix, matrixOffset, src, srcOffset, dest, destOffset, count);
+        }
+    }
+
+    /**
+     * Computes dest[i] = dot(a[i], b[i]) for count vector pairs. Dest holds one float
+     * per pair and must not overlap a or b.
+     * @param a The first packed vectors.
+     * @param aOffset Index of the x component of the first vector in a.
+     * @param b The second packed vectors.
+     * @param bOffset Index of the x component of the first vector in b.
+     * @param dest The array to store the dot products in.
+     * @param destOffset Index of the first dot product.
+     * @param count The amount of vector pairs.
+     */
+    public static void dot(float[] a, int aOffset, float[] b, int bOffset, float[] dest, int destOffset, int count) {
+        if (VECTORIZED) {
+            VectorKernels.dot(a, aOffset, b, bOffset, dest, destOffset, count);
+        } else {
+            ScalarKernels.dot(a, aOffset, b, bOffset, dest, destOffset, count);
+        }
+    }
+
+    /**
+     * Computes dest[i] = cross(a[i], b[i]) for count vector pairs.
+     * @param a The first packed vectors.
+     * @param aOffset Index of the x component of the first vector in a.
+     * @param b The second packed vectors.
+     * @param bOffset Index of the x component of the first vector in b.
+     * @param dest The array to store the cross products in.
+     * @param destOffset Index of the x component of the first cross product.
+     * @param count The amount of vector pairs.
+     */
+    public static void cross(float[] a, int aOffset, float[] b, int bOffset, float[] dest, int destOffset, int count) {
+        if (VECTORIZED) {
+            VectorKernels.cross(a, aOffset, b, bOffset, dest, destOffset, count);
+        } else {
+            ScalarKernels.cross(a, aOffset, b, bOffset, dest, destOffset, count);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package de.coxcopi.util.math.simd;
+
+/**
+ * Plain Java implementations of the batch kernels. Used whenever the Vector API is
+ * not available, and for the tail elements that don't fill a whole vector.
+ * <p>
+ * Matrices are stored as 16 consecutive floats in column-major order (the same layout
+ * as Matrix4f), vectors as 3 consecutive floats (x, y, z).
+ */
+public final class ScalarKernels {
+
+    private ScalarKernels() {
+    }
+
+    /**
+     * Computes dest[i] = a[i] * b[i] for count matrices.
+     */
+    public static void multiplyMatrices(float[] a, int aOffset, float[] b, int bOffset, float[] dest, int destOffset, int count) {
+        for (int n = 0; n < count; n++) {
+            multiplyMatrix(a, aOffset + n * 16, b, bOffset + n * 16, dest, destOffset + n * 16);
+        }
+    }
+
+    /**
+     * Computes dest[i] = left * b[i] for count matrices, where left is a single matrix.
+     */
+    public static void premultiplyMatrices(float[] left, int leftOffset, float[] b, int bOffset, float[] dest, int destOffset, int count) {
+        for (int n = 0; n < count; n++) {
+            multiplyMatrix(left, leftOffset, b, bOffset + n * 16, dest, destOffset + n * 16);
+        }
+    }
+
+    /**
+     * Computes a single matrix product. Dest may overlap a or b.
+     */
+    public static void multiplyMatrix(float[] a, int ao, float[] b, int bo, float[] dest, int o) {
+        final float a00 = a[ao], a01 = a[ao + 1], a02 = a[ao + 2], a03 = a[ao + 3];
+        final float a10 = a[ao + 4], a11 = a[ao + 5], a12 = a[ao + 6], a13 = a[ao + 7];
+        final float a20 = a[ao + 8], a21 = a[ao + 9], a22 = a[ao + 10], a23 = a[ao + 11];
+        final float a30 = a[ao + 12], a31 = a[ao + 13], a32 = a[ao + 14], a33 = a[ao + 15];
+        for (int c = 0; c < 4; c++) {
+            final float b0 = b[bo + c * 4], b1 = b[bo + c * 4 + 1], b2 = b[bo + c * 4 + 2], b3 = b[bo + c * 4 + 3];
+            dest[o + c * 4] = a00 * b0 + a10 * b1 + a20 * b2 + a30 * b3;
+            dest[o + c * 4 + 1] = a01 * b0 + a11 * b1 + a21 * b2 + a31 * b3;
+            dest[o + c * 4 + 2] = a02 * b0 + a12 * b1 + a22 * b2 + a32 * b3;
+            dest[o + c * 4 + 3] = a03 * b0 + a13 * b1 + a23 * b2 + a33 * b3;
+        }
+    }
+
+    /**
+     * Transforms count points (w = 1) by the given matrix.
+     */
+    public static void transformPoints(float[] matrix, int matrixOffset, float[] src, int srcOffset, float[] dest, int destOffset, int count) {
+        final float[] m = matrix;
+        final int mo = matrixOffset;
+        for (int i = 0; i < count; i++) {
+            final int s = srcOffset + i * 3;
+            final int d = destOffset + i * 3;
+            final float x = src[s], y = src[s + 1], z = src[s + 2];
+            dest[d] = m[mo] * x + m[mo + 4] * y + m[mo + 8] * z + m[mo + 12];
+            dest[d + 1] = m[mo + 1] * x + m[mo + 5] * y + m[mo + 9] * z + m[mo + 13];
+            dest[d + 2] = m[mo + 2] * x + m[mo + 6] * y + m[mo + 10] * z + m[mo + 14];
+        }
+    }
+
+    /**
+     * Transforms count directions (w = 0) by the upper 3x3 part of the given matrix.
+     * Pass a normal matrix (the transposed inverse) to transform normals correctly
+     * under non-uniform scale.
+     */
+    public static void transformNormals(float[] matrix, int matrixOffset, float[] src, int srcOffset, float[] dest, int destOffset, int count) {
+        final float[] m = matrix;
+        final int mo = matrixOffset;
+        for (int i = 0; i < count; i++) {
+            final int s = srcOffset + i * 3;
+            final int d = destOffset + i * 3;
+            final float x = src[s], y = src[s + 1], z = src[s + 2];
+            dest[d] = m[mo] * x + m[mo + 4] * y + m[mo + 8] * z;
+            dest[d + 1] = m[mo + 1] * x + m[mo + 5] * y + m[mo + 9] * z;
+            dest[d + 2] = m[mo + 2] * x + m[mo + 6] * y + m[mo + 10] * z;
+        }
+    }
+
+    /**
+     * Computes dest[i] = dot(a[i], b[i]) for count vectors. Dest holds one float per vector.
+     */
+    public static void dot(float[] a, int aOffset, float[] b, int bOffset, float[] dest, int destOffset, int count) {
+        for (int i = 0; i < count; i++) {
+            final int ai = aOffset + i * 3;
+            final int bi = bOffset + i * 3;
+            dest[destOffset + i] = a[ai] * b[bi] + a[ai + 1] * b[bi + 1] + a[ai + 2] * b[bi + 2];
+        }
+    }
+
+    /**
+     * Computes dest[i] = cross(a[i], b[i]) for count vectors.
+     */
+    public static void cross(float[] a, int aOffset, float[] b, int bOffset, float[] dest, int destOffset, int count) {
+        for (int i = 0; i < count; i++) {
+            final int ai = aOffset + i * 3;
+            final int bi = bOffset + i * 3;
+            final int d = destOffset + i * 3;
+            final float ax = a[ai], ay = a[ai + 1], az = a[ai + 2];
+            final float bx = b[bi], by = b[bi + 1], bz = b[bi + 2];
+            dest[d] = ay * bz - az * by;
+            dest[d + 1] = az * bx - ax * bz;
+            dest[d + 2] = ax * by - ay * bx;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package de.coxcopi.util.math.simd;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Batch kernels built on the (incubating) JDK Vector API. Uses the same data layout as
+ * ScalarKernels and produces bit-identical results, since every lane performs the same
+ * float operations in the same order as the scalar code.
+ * <p>
+ * NOTE: This class must only be loaded if the jdk.incubator.vector module is present.
+ * Use BatchTransforms, which falls back to ScalarKernels otherwise.
+ */
+final class VectorKernels {
+
+    /**
+     * Four lanes hold exactly one matrix column.
+     */
+    private static final VectorSpecies<Float> COLUMN = FloatVector.SPECIES_128;
+    /**
+     * Widest species supported by the CPU, used for the vec3 kernels.
+     */
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+    /**
+     * Gather / scatter offsets for one component of packed xyz vectors (0, 3, 6, ...).
+     */
+    private static final int[] XYZ_INDEX_MAP = new int[SPECIES.length()];
+
+    static {
+        for (int i = 0; i < XYZ_INDEX_MAP.length; i++) {
+            XYZ_INDEX_MAP[i] = i * 3;
+        }
+    }
+
+    private VectorKernels() {
+    }
+
+    static void multiplyMatrices(float[] a, int aOffset, float[] b, int bOffset, float[] dest, int destOffset, int count) {
+        for (int n = 0; n < count; n++) {
+            final int ao = aOffset + n * 16;
+            multiplyMatrix(
+                    FloatVector.fromArray(COLUMN, a, ao),
+                    FloatVector.fromArray(COLUMN, a, ao + 4),
+                    FloatVector.fromArray(COLUMN, a, ao + 8),
+                    FloatVector.fromArray(COLUMN, a, ao + 12),
+                    b, bOffset + n * 16, dest, destOffset + n * 16
+            );
+        }
+    }
+
+    static void premultiplyMatrices(float[] left, int leftOffset, float[] b, int bOffset, float[] dest, int destOffset, int count) {
+        final FloatVector c0 = FloatVector.fromArray(COLUMN, left, leftOffset);
+        final FloatVector c1 = FloatVector.fromArray(COLUMN, left, leftOffset + 4);
+        final FloatVector c2 = FloatVector.fromArray(COLUMN, left, leftOffset + 8);
+        final FloatVector c3 = FloatVector.fromArray(COLUMN, left, leftOffset + 12);
+        for (int n = 0; n < count; n++) {
+            multiplyMatrix(c0, c1, c2, c3, b, bOffset + n * 16, dest, destOffset + n * 16);
+        }
+    }
+
+    /**
+     * Multiplies the matrix given by its columns c0 to c3 with the matrix at b[bo].
+     * All columns of the result are computed before any is stored, so dest may overlap b.
+     */
+    private static void multiplyMatrix(FloatVector c0, FloatVector c1, FloatVector c2, FloatVector c3,
+                                       float[] b, int bo, float[] dest, int o) {
+        final FloatVector r0 = c0.mul(b[bo]).add(c1.mul(b[bo + 1])).add(c2.mul(b[bo + 2])).add(c3.mul(b[bo + 3]));
+        final FloatVector r1 = c0.mul(b[bo + 4]).add(c1.mul(b[bo + 5])).add(c2.mul(b[bo + 6])).add(c3.mul(b[bo + 7]));
+        final FloatVector r2 = c0.mul(b[bo + 8]).add(c1.mul(b[bo + 9])).add(c2.mul(b[bo + 10])).add(c3.mul(b[bo + 11]));
+        final FloatVector r3 = c0.mul(b[bo + 12]).add(c1.mul(b[bo + 13])).add(c2.mul(b[bo + 14])).add(c3.mul(b[bo + 15]));
+        r0.intoArray(dest, o);
+        r1.intoArray(dest, o + 4);
+        r2.intoArray(dest, o + 8);
+        r3.intoArray(dest, o + 12);
+    }
+
+    static void transformPoints(float[] m, int mo, float[] src, int srcOffset, float[] dest, int destOffset, int count) {
+        final int upperBound = SPECIES.loopBound(count);
+        int i = 0;
+        if (upperBound > 0) {
+            final FloatVector m0 = FloatVector.broadcast(SPECIES, m[mo]), m1 = FloatVector.broadcast(SPECIES, m[mo + 1]), m2 = FloatVector.broadcast(SPECIES, m[mo + 2]);
+            final FloatVector m4 = FloatVector.broadcast(SPECIES, m[mo + 4]), m5 = FloatVector.broadcast(SPECIES, m[mo + 5]), m6 = FloatVector.broadcast(SPECIES, m[mo + 6]);
+            final FloatVector m8 = FloatVector.broadcast(SPECIES, m[mo + 8]), m9 = FloatVector.broadcast(SPECIES, m[mo + 9]), m10 = FloatVector.broadcast(SPECIES, m[mo + 10]);
+            final FloatVector m12 = FloatVector.broadcast(SPECIES, m[mo + 12]), m13 = FloatVector.broadcast(SPECIES, m[mo + 13]), m14 = FloatVector.broadcast(SPECIES, m[mo + 14]);
+            for (; i < upperBound; i += SPECIES.length()) {
+                final int s = srcOffset + i * 3;
+                final int d = destOffset + i * 3;
+                final FloatVector x = FloatVector.fromArray(SPECIES, src, s, XYZ_INDEX_MAP, 0);
+                final FloatVector y = FloatVector.fromArray(SPECIES, src, s + 1, XYZ_INDEX_MAP, 0);
+                final FloatVector z = FloatVector.fromArray(SPECIES, src, s + 2, XYZ_INDEX_MAP, 0);
+                x.mul(m0).add(y.mul(m4)).add(z.mul(m8)).add(m12).intoArray(dest, d, XYZ_INDEX_MAP, 0);
+                x.mul(m1).add(y.mul(m5)).add(z.mul(m9)).add(m13).intoArray(dest, d + 1, XYZ_INDEX_MAP, 0);
+                x.mul(m2).add(y.mul(m6)).add(z.mul(m10)).add(m14).intoArray(dest, d + 2, XYZ_INDEX_MAP, 0);
+            }
+        }
+        ScalarKernels.transformPoints(m, mo, src, srcOffset + i * 3, dest, destOffset + i * 3, count - i);
+    }
+
+    static void transformNormals(float[] m, int mo, float[] src, int srcOffset, float[] dest, int destOffset, int count) {
+        final int upperBound = SPECIES.loopBound(count);
+        int i = 0;
+        if (upperBound > 0) {
+            final FloatVector m0 = FloatVector.broadcast(SPECIES, m[mo]), m1 = FloatVector.broadcast(SPECIES, m[mo + 1]), m2 = FloatVector.broadcast(SPECIES, m[mo + 2]);
+            final FloatVector m4 = FloatVector.broadcast(SPECIES, m[mo + 4]), m5 = FloatVector.broadcast(SPECIES, m[mo + 5]), m6 = FloatVector.broadcast(SPECIES, m[mo + 6]);
+            final FloatVector m8 = FloatVector.broadcast(SPECIES, m[mo + 8]), m9 = FloatVector.broadcast(SPECIES, m[mo + 9]), m10 = FloatVector.broadcast(SPECIES, m[mo + 10]);
+            for (; i < upperBound; i += SPECIES.length()) {
+                final int s = srcOffset + i * 3;
+                final int d = destOffset + i * 3;
+                final FloatVector x = FloatVector.fromArray(SPECIES, src, s, XYZ_INDEX_MAP, 0);
+                final FloatVector y = FloatVector.fromArray(SPECIES, src, s + 1, XYZ_INDEX_MAP, 0);
+                final FloatVector z = FloatVector.fromArray(SPECIES, src, s + 2, XYZ_INDEX_MAP, 0);
+                x.mul(m0).add(y.mul(m4)).add(z.mul(m8)).intoArray(dest, d, XYZ_INDEX_MAP, 0);
+                x.mul(m1).add(y.mul(m5)).add(z.mul(m9)).intoArray(dest, d + 1, XYZ_INDEX_MAP, 0);
+                x.mul(m2).add(y.mul(m6)).add(z.mul(m10)).intoArray(dest, d + 2, XYZ_INDEX_MAP, 0);
+            }
+        }
+        ScalarKernels.transformNormals(m, mo, src, srcOffset + i * 3, dest, destOffset + i * 3, count - i);
+    }
+
+    static void dot(float[] a, int aOffset, float[] b, int bOffset, float[] dest, int destOffset, int count) {
+        final int upperBound = SPECIES.loopBound(count);
+        int i = 0;
+        for (; i < upperBound; i += SPECIES.length()) {
+            final int ai = aOffset + i * 3;
+            final int bi = bOffset + i * 3;
+            final FloatVector ax = FloatVector.fromArray(SPECIES, a, ai, XYZ_INDEX_MAP, 0);
+            final FloatVector ay = FloatVector.fromArray(SPECIES, a, ai + 1, XYZ_INDEX_MAP, 0);
+            final FloatVector az = FloatVector.fromArray(SPECIES, a, ai + 2, XYZ_INDEX_MAP, 0);
+            final FloatVector bx = FloatVector.fromArray(SPECIES, b, bi, XYZ_INDEX_MAP, 0);
+            final FloatVector by = FloatVector.fromArray(SPECIES, b, bi + 1, XYZ_INDEX_MAP, 0);
+            final FloatVector bz = FloatVector.fromArray(SPECIES, b, bi + 2, XYZ_INDEX_MAP, 0);
+            ax.mul(bx).add(ay.mul(by)).add(az.mul(bz)).intoArray(dest, destOffset + i);
+        }
+        ScalarKernels.dot(a, aOffset + i * 3, b, bOffset + i * 3, dest, destOffset + i, count - i);
+    }
+
+    static void cross(float[] a, int aOffset, float[] b, int bOffset, float[] dest, int destOffset, int count) {
+        final int upperBound = SPECIES.loopBound(count);
+        int i = 0;
+        for (; i < upperBound; i += SPECIES.length()) {
+            final int ai = aOffset + i * 3;
+            final int bi = bOffset + i * 3;
+            final int d = destOffset + i * 3;
+            final FloatVector ax = FloatVector.fromArray(SPECIES, a, ai, XYZ_INDEX_MAP, 0);
+            final FloatVector ay = FloatVector.fromArray(SPECIES, a, ai + 1, XYZ_INDEX_MAP, 0);
+            final FloatVector az = FloatVector.fromArray(SPECIES, a, ai + 2, XYZ_INDEX_MAP, 0);
+            final FloatVector bx = FloatVector.fromArray(SPECIES, b, bi, XYZ_INDEX_MAP, 0);
+            final FloatVector by = FloatVector.fromArray(SPECIES, b, bi + 1, XYZ_INDEX_MAP, 0);
+            final FloatVector bz = FloatVector.fromArray(SPECIES, b, bi + 2, XYZ_INDEX_MAP, 0);
+            ay.mul(bz).sub(az.mul(by)).intoArray(dest, d, XYZ_INDEX_MAP, 0);
+            az.mul(bx).sub(ax.mul(bz)).intoArray(dest, d + 1, XYZ_INDEX_MAP, 0);
+            ax.mul(by).sub(ay.mul(bx)).intoArray(dest, d + 2, XYZ_INDEX_MAP, 0);
+        }
+        ScalarKernels.cross(a, aOffset + i * 3, b, bOffset + i * 3, dest, destOffset + i * 3, count - i);
+    }
+}
@@ -0,0 +1,28 @@
+#shader vertex
+#version 430 core
+layout(location = 0) in vec3 vertexPos;
+layout(location = 2) uniform mat4 modelMatrix;
+
+#include "include/frame_data.glsl"
+
+void main() {
+    gl_Position = projectionMatrix * viewMatrix * modelMatrix * vec4(vertexPos, 1.0);
+}
+
+#shader fragment
+#version 430 core
+
+struct Material {
+    vec3 ambient;
+    vec3 diffuse;
+    vec3 specular;
+    float shininess;
+};
+
+out vec4 fragColor;
+
+uniform Material material;
+
+void main() {
+    fragColor = vec4(material.diffuse, 1.0);
+}
@@ -0,0 +1,12 @@
+#ifndef FRAME_DATA_GLSL
+#define FRAME_DATA_GLSL
+
+// Per-frame data, see FrameUniforms
+layout(std140) uniform FrameData {
+    mat4 viewMatrix;
+    mat4 projectionMatrix;
+    vec3 viewPosition;
+    vec3 ambientLight;
+};
+
+#endif
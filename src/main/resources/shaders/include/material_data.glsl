@@ -0,0 +1,19 @@
+#ifndef MATERIAL_DATA_GLSL
+#define MATERIAL_DATA_GLSL
+
+// Parameters of all materials, see MaterialBuffer
+struct MaterialData {
+    vec3 ambient;
+    float shininess;
+    vec3 diffuse;
+    vec3 specular;
+};
+
+layout(std430) readonly buffer MaterialBuffer {
+    MaterialData materials[];
+};
+
+// The drawn material's slot in the buffer
+uniform int materialIndex;
+
+#endif
@@ -0,0 +1,112 @@
+package de.coxcopi.material.shader;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Checks include expansion, cycle detection, define injection and invalidation of ShaderPreprocessor,
+ * using the shaders in src/test/resources/shaders/preprocessor.
+ */
+class ShaderPreprocessorTest {
+
+    private static final String NESTED = "preprocessor/nested.glsl";
+    private static final String COMMON = "preprocessor/include/common.glsl";
+    private static final String MATH = "preprocessor/include/math.glsl";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void expandsNestedIncludes() {
+        final ShaderPreprocessor preprocessor = new ShaderPreprocessor();
+        final ShaderProgramSource source = preprocessor.process(NESTED);
+        assertNotNull(source);
+        assertEquals("""
+                #version 330 core
+                #ifndef COMMON_GLSL
+                #define COMMON_GLSL
+                vec4 transform(vec4 v) { return v; }
+                #endif
+                void main() { gl_Position = transform(vec4(0.0)); }
+
+                """, source.getVertexSource());
+        assertEquals("""
+                #version 330 core
+                #ifndef COMMON_GLSL
+                #define COMMON_GLSL
+                vec4 transform(vec4 v) { return v; }
+                #endif
+                out vec4 color;
+                void main() { color = vec4(1.0); }
+                """, source.getFragmentSource());
+        // Includes are resolved relative to the including file, and every file is read once
+        assertEquals(List.of(COMMON, COMMON), preprocessor.getIncludes(NESTED));
+        assertEquals(List.of(MATH), preprocessor.getIncludes(COMMON));
+        assertEquals(Set.of(COMMON, NESTED), preprocessor.getDependents(MATH));
+        assertEquals(3, preprocessor.getFilesRead());
+    }
+
+    @Test
+    void injectsDefinesAfterVersion() {
+        final ShaderPreprocessor preprocessor = new ShaderPreprocessor();
+        final ShaderProgramSource source = preprocessor.process(NESTED, Map.of("SHADOWS", "", "LIGHT_COUNT", "4"));
+        assertNotNull(source);
+        final String defines = "#version 330 core\n#define LIGHT_COUNT 4\n#define SHADOWS\n#ifndef COMMON_GLSL\n";
+        assertEquals(defines, source.getVertexSource().substring(0, defines.length()));
+        assertEquals(defines, source.getFragmentSource().substring(0, defines.length()));
+        // The same defines in a different order hit the cache, and nothing else differs from the plain source
+        assertSame(source, preprocessor.process(NESTED, Map.of("LIGHT_COUNT", "4", "SHADOWS", "")));
+        assertEquals(preprocessor.process(NESTED).getVertexSource().replace("#version 330 core\n", ""),
+                source.getVertexSource().replace(defines, "#ifndef COMMON_GLSL\n"));
+    }
+
+    @Test
+    void detectsIncludeCycles() {
+        final ShaderPreprocessor preprocessor = new ShaderPreprocessor();
+        assertNull(preprocessor.process("preprocessor/cycle_a.glsl"));
+        assertNull(preprocessor.process("preprocessor/include/cycle_b.glsl"));
+        // A cycle doesn't affect other shaders
+        assertNotNull(preprocessor.process(NESTED));
+    }
+
+    @Test
+    void invalidateDropsDependents() {
+        final ShaderPreprocessor preprocessor = new ShaderPreprocessor();
+        final ShaderProgramSource source = preprocessor.process(NESTED);
+        assertEquals(3, preprocessor.getFilesRead());
+        assertEquals(Set.of(MATH, COMMON, NESTED), preprocessor.invalidate(MATH));
+        // All three are read again, the unchanged content gives an equal result
+        assertEquals(source, preprocessor.process(NESTED));
+        assertEquals(6, preprocessor.getFilesRead());
+        // Only the file itself is dropped if nothing includes it
+        assertEquals(Set.of(NESTED), preprocessor.invalidate(NESTED));
+        preprocessor.process(NESTED);
+        assertEquals(7, preprocessor.getFilesRead());
+    }
+
+    @Test
+    void invalidatePicksUpChangedFiles() throws IOException {
+        Files.writeString(directory.resolve("shader.glsl"), "#shader vertex\n#version 330 core\n#include \"value.glsl\"\n");
+        Files.writeString(directory.resolve("value.glsl"), "const int VALUE = 1;\n");
+        final ShaderPreprocessor preprocessor = new ShaderPreprocessor(directory);
+        assertEquals("#version 330 core\nconst int VALUE = 1;\n", preprocessor.process("shader.glsl").getVertexSource());
+
+        Files.writeString(directory.resolve("value.glsl"), "const int VALUE = 2;\n");
+        // Still cached until invalidated
+        assertEquals("#version 330 core\nconst int VALUE = 1;\n", preprocessor.process("shader.glsl").getVertexSource());
+        assertEquals(Set.of("value.glsl", "shader.glsl"), preprocessor.invalidate("value.glsl"));
+        assertEquals("#version 330 core\nconst int VALUE = 2;\n", preprocessor.process("shader.glsl").getVertexSource());
+    }
+}
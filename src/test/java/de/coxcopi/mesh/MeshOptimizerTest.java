@@ -0,0 +1,129 @@
+package de.coxcopi.mesh;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that MeshOptimizer only reorders triangles (keeping their winding), that the simulated
+ * cache efficiency doesn't get worse, and that high-valence vertices don't make it quadratic.
+ */
+class MeshOptimizerTest {
+
+    @Test
+    void keepsTrianglesOfShuffledGrid() {
+        final int[] indices = shuffle(grid(100));
+        final int vertexCount = 100 * 100;
+        final int[] optimized = MeshOptimizer.optimizeVertexCache(indices, vertexCount);
+        assertArrayEquals(sortedTriangles(indices), sortedTriangles(optimized));
+        assertNotWorse(indices, optimized, vertexCount);
+    }
+
+    @Test
+    void keepsTrianglesOfFan() {
+        final int[] indices = shuffle(fan(10000));
+        final int[] optimized = MeshOptimizer.optimizeVertexCache(indices, 10002);
+        assertArrayEquals(sortedTriangles(indices), sortedTriangles(optimized));
+        assertNotWorse(indices, optimized, 10002);
+    }
+
+    @Test
+    void keepsDegenerateTriangles() {
+        final int[] indices = {0, 0, 1, 1, 2, 3, 3, 3, 3};
+        assertArrayEquals(sortedTriangles(indices), sortedTriangles(MeshOptimizer.optimizeVertexCache(indices, 4)));
+    }
+
+    @Test
+    void highValenceFanIsLinear() {
+        // Took minutes while every step rescored all triangles of the fan's center
+        final int[] indices = shuffle(fan(200000));
+        final int[] optimized = assertTimeout(Duration.ofSeconds(20), () -> MeshOptimizer.optimizeVertexCache(indices, 200002));
+        assertArrayEquals(sortedTriangles(indices), sortedTriangles(optimized));
+        assertNotWorse(indices, optimized, 200002);
+    }
+
+    @Test
+    void overdrawKeepsTriangles() {
+        final int[] indices = MeshOptimizer.optimizeVertexCache(shuffle(grid(50)), 50 * 50);
+        final float[] vertices = new float[50 * 50 * 3];
+        final Random random = new Random(7);
+        for (int i = 0; i < vertices.length; i++) {
+            vertices[i] = random.nextFloat();
+        }
+        final int[] optimized = MeshOptimizer.optimizeOverdraw(indices, vertices, 3, MeshOptimizer.DEFAULT_OVERDRAW_THRESHOLD);
+        assertArrayEquals(sortedTriangles(indices), sortedTriangles(optimized));
+    }
+
+    private static void assertNotWorse(int[] before, int[] after, int vertexCount) {
+        final double acmrBefore = MeshOptimizer.analyzeLru(before, vertexCount, MeshOptimizer.CACHE_SIZE).acmr;
+        final double acmrAfter = MeshOptimizer.analyzeLru(after, vertexCount, MeshOptimizer.CACHE_SIZE).acmr;
+        assertTrue(acmrAfter <= acmrBefore, "ACMR got worse: " + acmrBefore + " -> " + acmrAfter);
+    }
+
+    private static int[] fan(int triangles) {
+        final int[] indices = new int[triangles * 3];
+        for (int i = 0; i < triangles; i++) {
+            indices[i * 3] = 0;
+            indices[i * 3 + 1] = i + 1;
+            indices[i * 3 + 2] = i + 2;
+        }
+        return indices;
+    }
+
+    private static int[] grid(int width) {
+        final int[] indices = new int[(width - 1) * (width - 1) * 6];
+        int i = 0;
+        for (int y = 0; y < width - 1; y++) {
+            for (int x = 0; x < width - 1; x++) {
+                final int v = y * width + x;
+                indices[i++] = v;
+                indices[i++] = v + 1;
+                indices[i++] = v + width;
+                indices[i++] = v + 1;
+                indices[i++] = v + width + 1;
+                indices[i++] = v + width;
+            }
+        }
+        return indices;
+    }
+
+    private static int[] shuffle(int[] indices) {
+        final int[] result = indices.clone();
+        final Random random = new Random(5);
+        for (int t = result.length / 3 - 1; t > 0; t--) {
+            final int other = random.nextInt(t + 1);
+            for (int k = 0; k < 3; k++) {
+                final int swap = result[t * 3 + k];
+                result[t * 3 + k] = result[other * 3 + k];
+                result[other * 3 + k] = swap;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the triangles as sorted keys, each rotated so that its smallest index comes first.
+     * Rotating keeps the winding, so flipped triangles show up as differences.
+     */
+    private static long[] sortedTriangles(int[] indices) {
+        final long[] keys = new long[indices.length / 3];
+        for (int t = 0; t < keys.length; t++) {
+            int a = indices[t * 3], b = indices[t * 3 + 1], c = indices[t * 3 + 2];
+            while (a > b || a > c) {
+                final int swap = a;
+                a = b;
+                b = c;
+                c = swap;
+            }
+            keys[t] = ((long) a << 42) | ((long) b << 21) | c;
+        }
+        Arrays.sort(keys);
+        return keys;
+    }
+}
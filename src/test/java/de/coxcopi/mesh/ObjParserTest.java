@@ -0,0 +1,126 @@
+package de.coxcopi.mesh;
+
+import de.coxcopi.util.collection.IntList;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that parsing a file in parallel chunks gives exactly the same result as parsing it
+ * sequentially, with a small chunk size so that the generated file spans many chunks.
+ */
+class ObjParserTest {
+
+    private static final int CHUNK_SIZE = 4096;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void parallelMatchesSequential() throws IOException {
+        final IntList expectedCorners = new IntList();
+        final Path path = directory.resolve("generated.obj");
+        Files.writeString(path, generate(new Random(11), expectedCorners), StandardCharsets.US_ASCII);
+        assertTrue(Files.size(path) > CHUNK_SIZE * 16, "The file should span several chunks.");
+
+        final ObjParser.ObjData sequential = ObjParser.parse(path, false, CHUNK_SIZE);
+        final ObjParser.ObjData parallel = ObjParser.parse(path, true, CHUNK_SIZE);
+        assertArrayEquals(expectedCorners.toArray(), sequential.corners.toArray());
+        assertArrayEquals(expectedCorners.toArray(), parallel.corners.toArray());
+        assertArrayEquals(sequential.positions.toArray(), parallel.positions.toArray());
+        assertArrayEquals(sequential.uvs.toArray(), parallel.uvs.toArray());
+        assertArrayEquals(sequential.normals.toArray(), parallel.normals.toArray());
+
+        final MeshData sequentialMesh = VertexWelder.weld(sequential);
+        final MeshData parallelMesh = VertexWelder.weld(parallel);
+        assertArrayEquals(sequentialMesh.vertices, parallelMesh.vertices);
+        assertArrayEquals(sequentialMesh.indices, parallelMesh.indices);
+    }
+
+    /**
+     * Generates blocks of positions, texture coordinates and normals, each followed by faces in all
+     * four corner syntaxes with absolute and negative indices. Negative indices may point far back, into
+     * the blocks of earlier chunks. One polygon in the middle is longer than a chunk and the parser's
+     * input window, so it crosses chunk boundaries.
+     * @param expectedCorners Receives the triangulated corners (0-based position, uv and normal index,
+     * -1 if missing), the way ObjParser should return them.
+     */
+    private static String generate(Random random, IntList expectedCorners) {
+        final StringBuilder obj = new StringBuilder("# Generated by ObjParserTest\n");
+        int positions = 0, uvs = 0, normals = 0;
+        for (int block = 0; block < 400; block++) {
+            for (int i = 0; i < 20; i++) {
+                obj.append("v ").append(random.nextFloat() * 200 - 100).append(' ')
+                        .append(random.nextFloat()).append(' ').append(-random.nextFloat() * 1e-3f).append('\n');
+                obj.append("vt ").append(random.nextFloat()).append(' ').append(random.nextFloat()).append('\n');
+                obj.append("vn ").append(random.nextFloat()).append(' ').append(random.nextFloat()).append(' ').append(1).append('\n');
+            }
+            positions += 20;
+            uvs += 20;
+            normals += 20;
+            for (int i = 0; i < 20; i++) {
+                appendFace(obj, random, 3 + random.nextInt(3), random.nextInt(4), positions, uvs, normals, expectedCorners);
+            }
+            if (block == 200) {
+                appendFace(obj, random, 10000, 3, positions, uvs, normals, expectedCorners);
+            }
+        }
+        return obj.toString();
+    }
+
+    /**
+     * @param syntax 0: v, 1: v/vt, 2: v//vn, 3: v/vt/vn.
+     */
+    private static void appendFace(StringBuilder obj, Random random, int cornerCount, int syntax,
+                                   int positions, int uvs, int normals, IntList expectedCorners) {
+        final int[] face = new int[cornerCount * ObjParser.CORNER_SIZE];
+        obj.append('f');
+        for (int c = 0; c < cornerCount; c++) {
+            final int o = c * ObjParser.CORNER_SIZE;
+            obj.append(' ');
+            face[o] = appendIndex(obj, random, positions);
+            face[o + 1] = -1;
+            face[o + 2] = -1;
+            if (syntax != 0) {
+                obj.append('/');
+                if (syntax != 2) {
+                    face[o + 1] = appendIndex(obj, random, uvs);
+                }
+                if (syntax != 1) {
+                    obj.append('/');
+                    face[o + 2] = appendIndex(obj, random, normals);
+                }
+            }
+        }
+        obj.append('\n');
+        for (int i = 1; i < cornerCount - 1; i++) {
+            for (int c : new int[]{0, i, i + 1}) {
+                for (int k = 0; k < ObjParser.CORNER_SIZE; k++) {
+                    expectedCorners.add(face[c * ObjParser.CORNER_SIZE + k]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends a random index, negative every other time, and returns it 0-based.
+     */
+    private static int appendIndex(StringBuilder obj, Random random, int count) {
+        // Mostly nearby elements, sometimes any element defined so far
+        final int index = random.nextInt(4) == 0 ? random.nextInt(count) : count - 1 - random.nextInt(Math.min(count, 60));
+        if (random.nextBoolean()) {
+            obj.append(index - count);
+        } else {
+            obj.append(index + 1);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,105 @@
+package de.coxcopi.mesh;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks which corners VertexWelder merges into one vertex and that the indices point at the right ones.
+ */
+class VertexWelderTest {
+
+    private static final String ATTRIBUTES = """
+            v 0 0 0
+            v 1 0 0
+            v 0 1 0
+            v 1 1 0
+            v 5 5 5
+            vt 0 0
+            vt 1 0
+            vt 0 1
+            vn 0 0 1
+            vn 0 0 -1
+            """;
+
+    @Test
+    void mergesExactDuplicates() {
+        final MeshData mesh = weld(ATTRIBUTES + """
+                f 1/1/1 2/2/1 3/3/1
+                f 2/2/1 4/1/1 3/3/1
+                """);
+        // Position 5 is unused and dropped, corners 2/2/1 and 3/3/1 are shared
+        assertEquals(4, mesh.getVertexCount());
+        assertArrayEquals(new int[]{0, 1, 2, 1, 3, 2}, mesh.indices);
+        assertArrayEquals(new float[]{
+                0, 0, 0, 0, 0, 1, 0, 0,
+                1, 0, 0, 0, 0, 1, 1, 0,
+                0, 1, 0, 0, 0, 1, 0, 1,
+                1, 1, 0, 0, 0, 1, 0, 0
+        }, mesh.vertices);
+    }
+
+    @Test
+    void keepsDifferentUvsSeparate() {
+        final MeshData mesh = weld(ATTRIBUTES + """
+                f 1/1/1 2/2/1 3/3/1
+                f 1/2/1 2/2/1 3/1/1
+                """);
+        assertEquals(5, mesh.getVertexCount());
+        assertArrayEquals(new int[]{0, 1, 2, 3, 1, 4}, mesh.indices);
+        assertVertex(mesh, 3, 0, 0, 0, 0, 0, 1, 1, 0);
+        assertVertex(mesh, 4, 0, 1, 0, 0, 0, 1, 0, 0);
+    }
+
+    @Test
+    void keepsDifferentNormalsSeparate() {
+        final MeshData mesh = weld(ATTRIBUTES + """
+                f 1/1/1 2/1/1 3/1/1
+                f 1/1/2 3/1/2 2/1/2
+                """);
+        assertEquals(6, mesh.getVertexCount());
+        assertArrayEquals(new int[]{0, 1, 2, 3, 4, 5}, mesh.indices);
+        assertVertex(mesh, 3, 0, 0, 0, 0, 0, -1, 0, 0);
+    }
+
+    @Test
+    void missingAttributesAreZero() {
+        final MeshData mesh = weld(ATTRIBUTES + """
+                f 1 2 3
+                f 1//1 2 3/1
+                f 3 2 1
+                """);
+        // Corners are welded by index, so "3" and "3/1" stay separate even though vt 1 is (0, 0) like a missing one
+        assertEquals(5, mesh.getVertexCount());
+        assertArrayEquals(new int[]{0, 1, 2, 3, 1, 4, 2, 1, 0}, mesh.indices);
+        assertVertex(mesh, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+        assertVertex(mesh, 3, 0, 0, 0, 0, 0, 1, 0, 0);
+    }
+
+    @Test
+    void remapsIndicesOfSkippedTriangles() {
+        final MeshData mesh = weld(ATTRIBUTES + """
+                f 5/1/1 1/1/1 2/1/1
+                f 1/1/1 2/1/1 9/1/1
+                f 2/1/1 5/1/1 1/1/1
+                """);
+        // The second triangle has an invalid position and is skipped without affecting the others
+        assertEquals(2, mesh.getFaceCount());
+        assertArrayEquals(new int[]{0, 1, 2, 2, 0, 1}, mesh.indices);
+        assertVertex(mesh, 0, 5, 5, 5, 0, 0, 1, 0, 0);
+    }
+
+    private static MeshData weld(String obj) {
+        return VertexWelder.weld(ObjParser.parse(ByteBuffer.wrap(obj.getBytes(StandardCharsets.US_ASCII))));
+    }
+
+    private static void assertVertex(MeshData mesh, int vertex, float... expected) {
+        final float[] actual = new float[MeshData.VERTEX_STRIDE];
+        System.arraycopy(mesh.vertices, vertex * MeshData.VERTEX_STRIDE, actual, 0, actual.length);
+        assertArrayEquals(expected, actual, "Vertex " + vertex);
+    }
+}
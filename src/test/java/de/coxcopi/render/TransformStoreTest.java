@@ -0,0 +1,176 @@
+package de.coxcopi.render;
+
+import de.coxcopi.util.math.Matrix4;
+import de.coxcopi.util.math.Vector3;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the hierarchy bookkeeping of TransformStore (freeing parents, reusing handles, cycle checks)
+ * and that world matrices are parent.world * local across several levels.
+ */
+class TransformStoreTest {
+
+    private static final double EPSILON = 1e-5;
+
+    private TransformStore store;
+
+    @BeforeEach
+    void createStore() {
+        // Small, so that the hierarchy tests grow the store as well
+        store = new TransformStore(2);
+    }
+
+    @AfterEach
+    void destroyStore() {
+        store.destroy();
+    }
+
+    @Test
+    void worldIsParentWorldTimesLocal() {
+        final int root = store.allocate();
+        final int child = store.allocate(root);
+        final int grandchild = store.allocate(child);
+        final int greatGrandchild = store.allocate(grandchild);
+        final Matrix4 rootLocal = transform(1, 2, 3, 0.3, 2);
+        final Matrix4 childLocal = transform(-4, 0, 1, 1.1, 0.5);
+        final Matrix4 grandchildLocal = transform(0, 5, -2, -0.7, 1);
+        final Matrix4 greatGrandchildLocal = transform(2, 2, 2, 2.0, 3);
+        // Set in reverse order, so that the update order can't just follow the order of the calls
+        store.setLocal(greatGrandchild, greatGrandchildLocal);
+        store.setLocal(grandchild, grandchildLocal);
+        store.setLocal(child, childLocal);
+        store.setLocal(root, rootLocal);
+        store.updateWorldMatrices();
+
+        final Matrix4 expected = new Matrix4(rootLocal);
+        assertMatrixEquals(expected, store.getWorld(root, new Matrix4()));
+        Matrix4.multiply(expected, childLocal, expected);
+        assertMatrixEquals(expected, store.getWorld(child, new Matrix4()));
+        Matrix4.multiply(expected, grandchildLocal, expected);
+        assertMatrixEquals(expected, store.getWorld(grandchild, new Matrix4()));
+        Matrix4.multiply(expected, greatGrandchildLocal, expected);
+        assertMatrixEquals(expected, store.getWorld(greatGrandchild, new Matrix4()));
+    }
+
+    @Test
+    void changesPropagateToChildren() {
+        final int root = store.allocate();
+        final int child = store.allocate(root);
+        store.setLocal(child, transform(1, 0, 0, 0, 1));
+        store.updateWorldMatrices();
+        store.translateLocal(root, 0, 10, 0);
+        store.updateWorldMatrices();
+        assertMatrixEquals(transform(1, 10, 0, 0, 1), store.getWorld(child, new Matrix4()));
+    }
+
+    @Test
+    void freeingParentOrphansChildren() {
+        final int parent = store.allocate();
+        final int first = store.allocate(parent);
+        final int second = store.allocate(parent);
+        final int grandchild = store.allocate(first);
+        store.setLocal(parent, transform(5, 5, 5, 0, 1));
+        store.setLocal(first, transform(1, 0, 0, 0, 1));
+        store.updateWorldMatrices();
+
+        store.free(parent);
+        assertFalse(store.isAllocated(parent));
+        assertEquals(TransformStore.NO_PARENT, store.getParent(first));
+        assertEquals(TransformStore.NO_PARENT, store.getParent(second));
+        // Only direct children lose their parent
+        assertEquals(first, store.getParent(grandchild));
+        store.updateWorldMatrices();
+        assertMatrixEquals(transform(1, 0, 0, 0, 1), store.getWorld(first, new Matrix4()));
+        assertMatrixEquals(transform(1, 0, 0, 0, 1), store.getWorld(grandchild, new Matrix4()));
+    }
+
+    @Test
+    void freedHandleIsReusedWithoutOldChildren() {
+        final int parent = store.allocate();
+        final int child = store.allocate(parent);
+        store.free(parent);
+        final int reused = store.allocate();
+        assertEquals(parent, reused);
+        assertTrue(store.isAllocated(reused));
+        assertEquals(TransformStore.NO_PARENT, store.getParent(reused));
+        assertEquals(TransformStore.NO_PARENT, store.getParent(child));
+
+        // The old child must not be linked to the new slot, so freeing it must not touch child
+        final int newChild = store.allocate(reused);
+        store.free(reused);
+        assertEquals(TransformStore.NO_PARENT, store.getParent(newChild));
+        assertTrue(store.isAllocated(child));
+        assertThrows(IllegalArgumentException.class, () -> store.getParent(reused));
+    }
+
+    @Test
+    void reparentingMovesChildBetweenParents() {
+        final int a = store.allocate();
+        final int b = store.allocate();
+        final int first = store.allocate(a);
+        final int second = store.allocate(a);
+        final int third = store.allocate(a);
+        store.setParent(second, b);
+        store.setLocal(b, transform(0, 0, 7, 0, 1));
+        store.free(a);
+        assertEquals(TransformStore.NO_PARENT, store.getParent(first));
+        assertEquals(TransformStore.NO_PARENT, store.getParent(third));
+        assertEquals(b, store.getParent(second));
+        store.updateWorldMatrices();
+        assertMatrixEquals(transform(0, 0, 7, 0, 1), store.getWorld(second, new Matrix4()));
+    }
+
+    @Test
+    void setParentRejectsCycles() {
+        final int root = store.allocate();
+        final int child = store.allocate(root);
+        final int grandchild = store.allocate(child);
+        assertThrows(IllegalArgumentException.class, () -> store.setParent(root, grandchild));
+        assertThrows(IllegalArgumentException.class, () -> store.setParent(child, child));
+        // The failed calls must not have changed the hierarchy
+        assertEquals(TransformStore.NO_PARENT, store.getParent(root));
+        assertEquals(root, store.getParent(child));
+        assertEquals(child, store.getParent(grandchild));
+    }
+
+    @Test
+    void freeingManyChildrenIsFast() {
+        final int parent = store.allocate();
+        final int[] children = new int[100000];
+        for (int i = 0; i < children.length; i++) {
+            children[i] = store.allocate(parent);
+        }
+        // Scanning all slots on every free() made this quadratic
+        final long start = System.nanoTime();
+        for (int child : children) {
+            store.free(child);
+        }
+        store.free(parent);
+        assertTrue(System.nanoTime() - start < 1_000_000_000L, "Freeing took longer than a second.");
+    }
+
+    private static Matrix4 transform(double x, double y, double z, double angle, double scale) {
+        final Matrix4 matrix = Matrix4.transform();
+        matrix.translate(new Vector3(x, y, z));
+        matrix.rotate(new Vector3(1, 2, 3), angle);
+        matrix.scale(scale);
+        return matrix;
+    }
+
+    private static void assertMatrixEquals(Matrix4 expected, Matrix4 actual) {
+        for (int column = 0; column < 4; column++) {
+            for (int row = 0; row < 4; row++) {
+                final double e = expected.getValue(column, row);
+                assertEquals(e, actual.getValue(column, row), EPSILON * Math.max(1, Math.abs(e)),
+                        "Value at column " + column + ", row " + row + " of " + actual);
+            }
+        }
+    }
+}
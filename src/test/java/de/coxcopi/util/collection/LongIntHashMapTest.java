@@ -0,0 +1,111 @@
+package de.coxcopi.util.collection;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks LongIntHashMap against java.util.HashMap, including the separately stored key 0, negative
+ * keys and keys that only differ in their high bits, across several rehashes.
+ */
+class LongIntHashMapTest {
+
+    private static final int MISSING = -12345;
+
+    @Test
+    void zeroKey() {
+        final LongIntHashMap map = new LongIntHashMap();
+        assertFalse(map.containsKey(0));
+        assertEquals(MISSING, map.get(0, MISSING));
+        assertEquals(7, map.getOrPut(0, 7));
+        assertEquals(7, map.getOrPut(0, 8));
+        assertTrue(map.containsKey(0));
+        assertEquals(1, map.size());
+        map.put(0, 0);
+        assertEquals(0, map.get(0, MISSING));
+        assertEquals(1, map.size());
+        map.clear();
+        assertFalse(map.containsKey(0));
+        assertEquals(MISSING, map.get(0, MISSING));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    void negativeKeys() {
+        final LongIntHashMap map = new LongIntHashMap();
+        map.put(-1, 1);
+        map.put(Long.MIN_VALUE, 2);
+        map.put(Long.MAX_VALUE, 3);
+        map.put(1, 4);
+        assertEquals(1, map.get(-1, MISSING));
+        assertEquals(2, map.get(Long.MIN_VALUE, MISSING));
+        assertEquals(3, map.get(Long.MAX_VALUE, MISSING));
+        assertEquals(4, map.get(1, MISSING));
+        assertEquals(MISSING, map.get(-2, MISSING));
+        assertEquals(4, map.size());
+    }
+
+    @Test
+    void missingKeys() {
+        final LongIntHashMap map = new LongIntHashMap();
+        for (long key = 1; key <= 1000; key++) {
+            map.put(key, (int) key);
+        }
+        for (long key = 1001; key <= 2000; key++) {
+            assertEquals(MISSING, map.get(key, MISSING));
+            assertEquals(MISSING, map.get(-key, MISSING));
+            assertFalse(map.containsKey(key));
+        }
+        assertEquals(MISSING, map.get(0, MISSING));
+    }
+
+    @Test
+    void growsAndMatchesHashMap() {
+        final Random random = new Random(17);
+        // Starts at the minimum capacity, so it is rehashed many times
+        final LongIntHashMap map = new LongIntHashMap(1);
+        final Map<Long, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 100000; i++) {
+            final long key = switch (i % 4) {
+                // Packed index pairs like VertexWelder's, which only differ in a few bits
+                case 0 -> ((long) random.nextInt(200) << 32) | random.nextInt(200);
+                // Only the high bits differ
+                case 1 -> (long) random.nextInt(1000) << 40;
+                case 2 -> -random.nextInt(1000);
+                default -> random.nextLong();
+            };
+            final int value = random.nextInt();
+            if (random.nextBoolean()) {
+                map.put(key, value);
+                expected.put(key, value);
+            } else {
+                final Integer previous = expected.putIfAbsent(key, value);
+                assertEquals(previous == null ? value : previous, map.getOrPut(key, value));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+            assertEquals((int) entry.getValue(), map.get(entry.getKey(), MISSING), "Key " + entry.getKey());
+        }
+    }
+
+    @Test
+    void clearKeepsWorking() {
+        final LongIntHashMap map = new LongIntHashMap();
+        for (long key = -500; key < 500; key++) {
+            map.put(key, (int) key * 2);
+        }
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertEquals(MISSING, map.get(-3, MISSING));
+        map.put(-3, 5);
+        assertEquals(5, map.get(-3, MISSING));
+        assertEquals(1, map.size());
+    }
+}
@@ -0,0 +1,149 @@
+package de.coxcopi.util.math;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that M * inverse(M) is the identity for general and projection matrices, and that the
+ * affine inverse and the normal matrix agree with the general inverse for affine transformations.
+ */
+class Matrix4Test {
+
+    private static final int ITERATIONS = 1000;
+    private static final double EPSILON = 1e-9;
+
+    private final Random random = new Random(23);
+
+    @Test
+    void invertGivesIdentity() {
+        for (int n = 0; n < ITERATIONS; n++) {
+            final Matrix4 matrix = new Matrix4();
+            for (int i = 0; i < 16; i++) {
+                matrix.m[i] = random.nextDouble() * 2 - 1;
+            }
+            final Matrix4 inverse = matrix.inverted();
+            if (inverse == null) {
+                continue;
+            }
+            // Badly conditioned random matrices lose too much precision for a fixed tolerance
+            if (maxAbs(inverse) > 1e4) {
+                continue;
+            }
+            assertIdentity(Matrix4.multiply(matrix, inverse, new Matrix4()));
+            assertIdentity(Matrix4.multiply(inverse, matrix, new Matrix4()));
+        }
+    }
+
+    @Test
+    void invertProjection() {
+        final Matrix4[] projections = {
+                Matrix4.perspective(60, 16.0 / 9.0, 0.1, 100),
+                Matrix4.perspective(-1, 2, 1, -0.5, 0.5, 20)
+        };
+        for (Matrix4 projection : projections) {
+            final Matrix4 viewProjection = Matrix4.multiply(projection,
+                    Matrix4.lookAt(new Vector3(1, 2, 3), new Vector3(0, 0, 0), new Vector3(0, 1, 0)), new Matrix4());
+            for (Matrix4 matrix : new Matrix4[]{projection, viewProjection}) {
+                final Matrix4 inverse = matrix.inverted();
+                assertNotNull(inverse);
+                assertIdentity(Matrix4.multiply(matrix, inverse, new Matrix4()));
+            }
+        }
+    }
+
+    @Test
+    void invertSingularKeepsMatrix() {
+        final Matrix4 matrix = Matrix4.transform();
+        matrix.scale(new Vector3(1, 0, 1));
+        matrix.translate(new Vector3(1, 2, 3));
+        final Matrix4 copy = new Matrix4(matrix);
+        assertFalse(matrix.invert());
+        assertEquals(copy, matrix);
+        assertNull(matrix.inverted());
+        assertFalse(matrix.invertAffine());
+        assertEquals(copy, matrix);
+        assertNull(matrix.invertedAffine());
+    }
+
+    @Test
+    void invertAffineMatchesInvert() {
+        for (int n = 0; n < ITERATIONS; n++) {
+            final Matrix4 matrix = randomAffine();
+            final Matrix4 inverse = matrix.inverted();
+            final Matrix4 affineInverse = new Matrix4(matrix);
+            assertTrue(affineInverse.invertAffine());
+            assertMatrixEquals(inverse, affineInverse);
+            assertIdentity(Matrix4.multiply(matrix, affineInverse, new Matrix4()));
+        }
+    }
+
+    @Test
+    void normalMatrixIsTransposedInverse() {
+        for (int n = 0; n < ITERATIONS; n++) {
+            final Matrix4 matrix = randomAffine();
+            final Matrix4 expected = matrix.invertedAffine().transposed();
+            // Only the upper 3x3 part is the normal matrix, the rest is the identity
+            for (int i = 0; i < 3; i++) {
+                expected.setValue(i, 3, 0);
+                expected.setValue(3, i, 0);
+            }
+            assertMatrixEquals(expected, matrix.getNormalMatrix(new Matrix4()));
+            // dest may be the matrix itself
+            assertMatrixEquals(expected, matrix.getNormalMatrix(matrix));
+        }
+    }
+
+    /**
+     * Returns a random combination of translations, rotations and (non-uniform, possibly negative) scales.
+     */
+    private Matrix4 randomAffine() {
+        final Matrix4 matrix = Matrix4.transform();
+        for (int step = 0; step < 4; step++) {
+            matrix.translate(new Vector3(value(10), value(10), value(10)));
+            matrix.rotate(new Vector3(value(1), value(1), value(1) + 2), value(Math.PI));
+            matrix.scale(new Vector3(scale(), scale(), scale()));
+        }
+        return matrix;
+    }
+
+    private double value(double range) {
+        return (random.nextDouble() * 2 - 1) * range;
+    }
+
+    /**
+     * Returns a scale with a magnitude between 0.25 and 4, negative in one out of five cases.
+     */
+    private double scale() {
+        final double scale = Math.pow(2, value(2));
+        return random.nextInt(5) == 0 ? -scale : scale;
+    }
+
+    private static double maxAbs(Matrix4 matrix) {
+        double max = 0;
+        for (double value : matrix.m) {
+            max = Math.max(max, Math.abs(value));
+        }
+        return max;
+    }
+
+    private static void assertIdentity(Matrix4 matrix) {
+        assertMatrixEquals(Matrix4.transform(), matrix);
+    }
+
+    private static void assertMatrixEquals(Matrix4 expected, Matrix4 actual) {
+        final double tolerance = EPSILON * Math.max(1, Math.max(maxAbs(expected), maxAbs(actual)));
+        for (int column = 0; column < 4; column++) {
+            for (int row = 0; row < 4; row++) {
+                assertEquals(expected.getValue(column, row), actual.getValue(column, row), tolerance,
+                        "Value at column " + column + ", row " + row + " of " + actual);
+            }
+        }
+    }
+}
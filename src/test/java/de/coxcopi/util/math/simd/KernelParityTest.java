@@ -0,0 +1,197 @@
+package de.coxcopi.util.math.simd;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Checks that VectorKernels produces bit-identical results to ScalarKernels for every kernel, with
+ * random counts (so that the scalar tails of all vector widths are covered), random offsets and with
+ * dest aliasing the inputs wherever BatchTransforms allows it. Values outside the written range must
+ * stay untouched.
+ * <p>
+ * NOTE: Needs --add-modules jdk.incubator.vector (see the surefire configuration), the tests are skipped otherwise.
+ */
+class KernelParityTest {
+
+    private static final int ITERATIONS = 200;
+    /**
+     * Exceeds three vectors of the widest species (16 lanes), so every count has a few full vectors and a tail.
+     */
+    private static final int MAX_COUNT = 53;
+    private static final int MAX_OFFSET = 7;
+    private static final float PADDING = Float.NaN;
+
+    private final Random random = new Random(42);
+
+    @BeforeAll
+    static void requireVectorModule() {
+        assumeTrue(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent(),
+                "jdk.incubator.vector is not present, the vectorized kernels can't be tested");
+    }
+
+    @Test
+    void multiplyMatrices() {
+        for (int n = 0; n < ITERATIONS; n++) {
+            final int count = random.nextInt(MAX_COUNT);
+            final int aOffset = offset(), bOffset = offset(), destOffset = offset();
+            final float[] a = values(aOffset, count * 16);
+            final float[] b = values(bOffset, count * 16);
+            final float[] expected = padded(destOffset, count * 16);
+            final float[] actual = expected.clone();
+            ScalarKernels.multiplyMatrices(a, aOffset, b, bOffset, expected, destOffset, count);
+            VectorKernels.multiplyMatrices(a, aOffset, b, bOffset, actual, destOffset, count);
+            assertArrayEquals(expected, actual, "count " + count);
+        }
+    }
+
+    @Test
+    void multiplyMatricesInPlace() {
+        for (int n = 0; n < ITERATIONS; n++) {
+            final int count = random.nextInt(MAX_COUNT);
+            final int offset = offset(), otherOffset = offset();
+            final float[] other = values(otherOffset, count * 16);
+            final float[] a = values(offset, count * 16);
+            // dest = a
+            float[] expected = a.clone(), actual = a.clone();
+            ScalarKernels.multiplyMatrices(expected, offset, other, otherOffset, expected, offset, count);
+            VectorKernels.multiplyMatrices(actual, offset, other, otherOffset, actual, offset, count);
+            assertArrayEquals(expected, actual, "dest = a, count " + count);
+            // dest = b
+            expected = a.clone();
+            actual = a.clone();
+            ScalarKernels.multiplyMatrices(other, otherOffset, expected, offset, expected, offset, count);
+            VectorKernels.multiplyMatrices(other, otherOffset, actual, offset, actual, offset, count);
+            assertArrayEquals(expected, actual, "dest = b, count " + count);
+        }
+    }
+
+    @Test
+    void premultiplyMatrices() {
+        for (int n = 0; n < ITERATIONS; n++) {
+            final int count = random.nextInt(MAX_COUNT);
+            final int leftOffset = offset(), bOffset = offset(), destOffset = offset();
+            final float[] left = values(leftOffset, 16);
+            final float[] b = values(bOffset, count * 16);
+            final float[] expected = padded(destOffset, count * 16);
+            final float[] actual = expected.clone();
+            ScalarKernels.premultiplyMatrices(left, leftOffset, b, bOffset, expected, destOffset, count);
+            VectorKernels.premultiplyMatrices(left, leftOffset, b, bOffset, actual, destOffset, count);
+            assertArrayEquals(expected, actual, "count " + count);
+            // dest = b
+            final float[] expectedInPlace = b.clone(), actualInPlace = b.clone();
+            ScalarKernels.premultiplyMatrices(left, leftOffset, expectedInPlace, bOffset, expectedInPlace, bOffset, count);
+            VectorKernels.premultiplyMatrices(left, leftOffset, actualInPlace, bOffset, actualInPlace, bOffset, count);
+            assertArrayEquals(expectedInPlace, actualInPlace, "dest = b, count " + count);
+        }
+    }
+
+    @Test
+    void transformPoints() {
+        for (int n = 0; n < ITERATIONS; n++) {
+            final int count = random.nextInt(MAX_COUNT);
+            final int matrixOffset = offset(), srcOffset = offset(), destOffset = offset();
+            final float[] matrix = values(matrixOffset, 16);
+            final float[] src = values(srcOffset, count * 3);
+            final float[] expected = padded(destOffset, count * 3);
+            final float[] actual = expected.clone();
+            ScalarKernels.transformPoints(matrix, matrixOffset, src, srcOffset, expected, destOffset, count);
+            VectorKernels.transformPoints(matrix, matrixOffset, src, srcOffset, actual, destOffset, count);
+            assertArrayEquals(expected, actual, "count " + count);
+            // dest = src
+            final float[] expectedInPlace = src.clone(), actualInPlace = src.clone();
+            ScalarKernels.transformPoints(matrix, matrixOffset, expectedInPlace, srcOffset, expectedInPlace, srcOffset, count);
+            VectorKernels.transformPoints(matrix, matrixOffset, actualInPlace, srcOffset, actualInPlace, srcOffset, count);
+            assertArrayEquals(expectedInPlace, actualInPlace, "dest = src, count " + count);
+        }
+    }
+
+    @Test
+    void transformNormals() {
+        for (int n = 0; n < ITERATIONS; n++) {
+            final int count = random.nextInt(MAX_COUNT);
+            final int matrixOffset = offset(), srcOffset = offset(), destOffset = offset();
+            final float[] matrix = values(matrixOffset, 16);
+            final float[] src = values(srcOffset, count * 3);
+            final float[] expected = padded(destOffset, count * 3);
+            final float[] actual = expected.clone();
+            ScalarKernels.transformNormals(matrix, matrixOffset, src, srcOffset, expected, destOffset, count);
+            VectorKernels.transformNormals(matrix, matrixOffset, src, srcOffset, actual, destOffset, count);
+            assertArrayEquals(expected, actual, "count " + count);
+            // dest = src
+            final float[] expectedInPlace = src.clone(), actualInPlace = src.clone();
+            ScalarKernels.transformNormals(matrix, matrixOffset, expectedInPlace, srcOffset, expectedInPlace, srcOffset, count);
+            VectorKernels.transformNormals(matrix, matrixOffset, actualInPlace, srcOffset, actualInPlace, srcOffset, count);
+            assertArrayEquals(expectedInPlace, actualInPlace, "dest = src, count " + count);
+        }
+    }
+
+    @Test
+    void dot() {
+        // Dest must not overlap a or b, so there is no in-place variant
+        for (int n = 0; n < ITERATIONS; n++) {
+            final int count = random.nextInt(MAX_COUNT);
+            final int aOffset = offset(), bOffset = offset(), destOffset = offset();
+            final float[] a = values(aOffset, count * 3);
+            final float[] b = values(bOffset, count * 3);
+            final float[] expected = padded(destOffset, count);
+            final float[] actual = expected.clone();
+            ScalarKernels.dot(a, aOffset, b, bOffset, expected, destOffset, count);
+            VectorKernels.dot(a, aOffset, b, bOffset, actual, destOffset, count);
+            assertArrayEquals(expected, actual, "count " + count);
+        }
+    }
+
+    @Test
+    void cross() {
+        for (int n = 0; n < ITERATIONS; n++) {
+            final int count = random.nextInt(MAX_COUNT);
+            final int aOffset = offset(), bOffset = offset(), destOffset = offset();
+            final float[] a = values(aOffset, count * 3);
+            final float[] b = values(bOffset, count * 3);
+            final float[] expected = padded(destOffset, count * 3);
+            final float[] actual = expected.clone();
+            ScalarKernels.cross(a, aOffset, b, bOffset, expected, destOffset, count);
+            VectorKernels.cross(a, aOffset, b, bOffset, actual, destOffset, count);
+            assertArrayEquals(expected, actual, "count " + count);
+            // dest = a
+            float[] expectedInPlace = a.clone(), actualInPlace = a.clone();
+            ScalarKernels.cross(expectedInPlace, aOffset, b, bOffset, expectedInPlace, aOffset, count);
+            VectorKernels.cross(actualInPlace, aOffset, b, bOffset, actualInPlace, aOffset, count);
+            assertArrayEquals(expectedInPlace, actualInPlace, "dest = a, count " + count);
+            // dest = b
+            expectedInPlace = b.clone();
+            actualInPlace = b.clone();
+            ScalarKernels.cross(a, aOffset, expectedInPlace, bOffset, expectedInPlace, bOffset, count);
+            VectorKernels.cross(a, aOffset, actualInPlace, bOffset, actualInPlace, bOffset, count);
+            assertArrayEquals(expectedInPlace, actualInPlace, "dest = b, count " + count);
+        }
+    }
+
+    private int offset() {
+        return random.nextInt(MAX_OFFSET + 1);
+    }
+
+    /**
+     * Returns an array with length random values starting at offset. The values before offset and a few after
+     * the last one are padding, so that reads and writes outside the range show up as differences.
+     */
+    private float[] values(int offset, int length) {
+        final float[] array = padded(offset, length);
+        for (int i = offset; i < offset + length; i++) {
+            array[i] = random.nextFloat() * 200 - 100;
+        }
+        return array;
+    }
+
+    private float[] padded(int offset, int length) {
+        final float[] array = new float[offset + length + MAX_OFFSET];
+        Arrays.fill(array, PADDING);
+        return array;
+    }
+}
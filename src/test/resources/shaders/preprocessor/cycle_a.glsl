@@ -0,0 +1,4 @@
+#shader vertex
+#version 330 core
+#include "include/cycle_b.glsl"
+void main() {}
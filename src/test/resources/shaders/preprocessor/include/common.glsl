@@ -0,0 +1,4 @@
+#ifndef COMMON_GLSL
+#define COMMON_GLSL
+#include "math.glsl"
+#endif
@@ -0,0 +1 @@
+vec4 transform(vec4 v) { return v; }
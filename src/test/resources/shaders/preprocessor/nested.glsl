@@ -0,0 +1,10 @@
+#shader vertex
+#version 330 core
+#include "include/common.glsl"
+void main() { gl_Position = transform(vec4(0.0)); }
+
+#shader fragment
+#version 330 core
+#include "include/common.glsl"
+out vec4 color;
+void main() { color = vec4(1.0); }